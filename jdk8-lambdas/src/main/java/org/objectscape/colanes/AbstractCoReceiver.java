@@ -1,5 +1,7 @@
 package org.objectscape.colanes;
 
+import org.objectscape.colanes.timer.Timeout;
+
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -26,7 +28,7 @@ public class AbstractCoReceiver implements CoReceiver {
         lane.run(runnable);
     }
 
-    protected void runAfter(long duration, TimeUnit unit, Runnable runnable) {
-        lane.runAfter(duration, unit, runnable);
+    protected Timeout runAfter(long duration, TimeUnit unit, Runnable runnable) {
+        return lane.runAfter(duration, unit, runnable);
     }
 }
@@ -17,16 +17,26 @@
 
 package org.objectscape.colanes;
 
-import org.objectscape.colanes.util.CallerMustSynchronize;
+import org.objectscape.colanes.mailbox.Discardable;
+import org.objectscape.colanes.mailbox.EnqueueStatus;
+import org.objectscape.colanes.mailbox.MailboxFullException;
 import org.objectscape.colanes.util.Signature;
 
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 /**
- * Abstract class for all Handback classes which defines common attributes and functionality. As a
- * <tt>Handback</tt> is exposed to all threads in the JVM it has to be made thread-safe. This is
- * achieved through the use of plain synchronized blocks. There is no potential for deadlocks in this case
- * as all operations that require synchronization are restricted to internal Handback methods that
- * are atomic similar to <code>java.util.Vector</code> where no atomic method call depends on another
- * atomic (this could lead to a cycle if not the case).
+ * Abstract class for all Handback classes which defines common attributes and functionality. A Handback
+ * is built by the thread that obtained it and passes through the states building, enqueued, running and
+ * done, or rejected if the lane did not accept it, which are kept in a single atomic state word. While building, the attributes of the Handback are
+ * set by its builder methods, which throw an IllegalStateException once the Handback has been enqueued.
+ * Enqueuing the Handback changes the state word atomically, which makes sure it is enqueued only once
+ * and publishes the attributes set before to the thread executing the Handback on its lane. From then on
+ * the attributes are effectively immutable, so that no locking is required when the Handback is executed.
+ * Threads other than the builder are guaranteed to see the attributes once <code>isEnqueued()</code> has
+ * returned true. A Handback can be cancelled from any state but done, which is again a change of the
+ * state word, so that the lane finds out by the same atomic operation it uses to start the Handback.
  *
  * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
  *
@@ -34,6 +44,39 @@ import org.objectscape.colanes.util.Signature;
 public abstract class AbstractHandback
 {
 
+    /**
+     * The Handback is being built and has not yet been enqueued.
+     */
+    protected static final int Building = 0;
+
+    /**
+     * The lambda of the Handback has been handed to its lane, but has not yet been started.
+     */
+    protected static final int Enqueued = 1;
+
+    /**
+     * The lambda of the Handback is being executed by its lane.
+     */
+    protected static final int Running = 2;
+
+    /**
+     * The lambda of the Handback has been executed or has been discarded as its deadline had passed.
+     */
+    protected static final int Done = 3;
+
+    /**
+     * The lambda of the Handback will never be executed as the lane did not accept it or dropped it.
+     */
+    protected static final int Rejected = 4;
+
+    /**
+     * The Handback has been cancelled. Its lambda is skipped by the lane or, if it was already running,
+     * the callback and whenDone lambdas are not executed.
+     */
+    protected static final int Cancelled = 5;
+
+    private static final AtomicIntegerFieldUpdater<AbstractHandback> StateUpdater = AtomicIntegerFieldUpdater.newUpdater(AbstractHandback.class, "state");
+
     /**
      * The <code>CoLane</code> of the lane, the Handback refers to.
      */
@@ -56,12 +99,10 @@ public abstract class AbstractHandback
     protected Signature sender;
 
     /**
-     * Used to mark a Handback as enqueued, e.g. the <code>Handback.runAsync()</code> method has been
-     * called. Depending on the kind of Handback (that is subclass of <code>AbstractHandback)</code>
-     * this attribute is used to determine whether invoking specific operations are still valid or no longer
-     * allowed (such as changing the callback() method).
+     * The lane the whenDone lambdas are delivered to. Unless set explicitly it is the lane the Handback
+     * was enqueued from, or the lane of the Handback if it was not enqueued from a lane.
      */
-    protected boolean enqueued = false;
+    protected CoLane replyTo;
 
     /**
      * Specify whether Handback attributes sender, callback, whenDone, and additional ones defined in subclasses
@@ -70,10 +111,25 @@ public abstract class AbstractHandback
     protected boolean allowOverwrite = true;
 
     /**
-     * Lock object used by synchronized blocks to synchronize access to attributes that effectively will be
-     * shared data in case the Handback is exposed to several threads.
+     * Time after enqueuing within which the Handback must be started or 0 if it has no deadline.
+     */
+    private long timeoutNanos = 0;
+
+    /**
+     * The <code>System.nanoTime()</code> after which the Handback is discarded instead of being executed.
+     * Set when the Handback is enqueued.
+     */
+    private long deadline = 0;
+
+    /**
+     * One of <tt>Building</tt>, <tt>Enqueued</tt>, <tt>Running</tt>, <tt>Done</tt>, <tt>Rejected</tt> and <tt>Cancelled</tt>.
+     */
+    private volatile int state = Building;
+
+    /**
+     * The lambda enqueued on the lane, created once so that enqueuing does not allocate.
      */
-    protected Object lock = new Object();
+    private final Runnable task = new Task();
 
     /**
      * Creates a new <code>AbstractHandback</code> object
@@ -115,11 +171,9 @@ public abstract class AbstractHandback
      * @param callback the callback lambda
      */
     protected void setCallback(Runnable callback) {
-        synchronized (lock) {
-            checkNotAlreadyEnqueued();
-            checkAllowOverwrite(this.callback, "callback");
-            this.callback = callback;
-        }
+        checkNotAlreadyEnqueued();
+        checkAllowOverwrite(this.callback, "callback");
+        this.callback = callback;
     }
 
     protected final void checkAllowOverwrite(Object attribute, String attributeName) {
@@ -133,11 +187,33 @@ public abstract class AbstractHandback
      * @param whenDone
      */
     protected void setWhenDone(Runnable whenDone) {
-        synchronized (lock) {
-            checkNotAlreadyEnqueued();
-            checkAllowOverwrite(this.whenDone, "whenDone");
-            this.whenDone = whenDone;
-        }
+        checkNotAlreadyEnqueued();
+        checkAllowOverwrite(this.whenDone, "whenDone");
+        this.whenDone = whenDone;
+    }
+
+    /**
+     * Set the time after enqueuing within which the lane must start the Handback. A Handback that is
+     * still in the mailbox of the lane when its deadline has passed is discarded without being executed
+     * once the lane dequeues it, as the caller has already given up on it. Throws an IllegalStateException
+     * if the lambda of the Handback is already enqueued.
+     *
+     * @param timeout the time the Handback may wait in the mailbox of the lane
+     * @param unit the time unit of <tt>timeout</tt>
+     */
+    protected void setDeadline(long timeout, TimeUnit unit) {
+        checkNotAlreadyEnqueued();
+        if(timeout <= 0)
+            throw new IllegalArgumentException("timeout must be positive");
+        timeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * Remove the deadline of the Handback so that it is always executed.
+     */
+    protected final void clearDeadline() {
+        timeoutNanos = 0;
+        deadline = 0;
     }
 
     /**
@@ -147,9 +223,7 @@ public abstract class AbstractHandback
      * @return the sender's lane Signature or null if none
      */
     public Signature sender() {
-        synchronized (lock) {
-            return sender;
-        }
+        return sender;
     }
 
     /**
@@ -158,39 +232,210 @@ public abstract class AbstractHandback
      * @return the whenDone object or null if none was setAndGet
      */
     public Runnable whenDone() {
-        synchronized (lock) {
-            return whenDone;
-        }
+        return whenDone;
+    }
+
+    /**
+     * Set the lane the whenDone lambdas are delivered to. Throws an IllegalStateException if the lambda
+     * of the Handback is already enqueued.
+     *
+     * @param replyTo the lane to execute the whenDone lambdas or null to deliver them to the lane the
+     *                Handback is enqueued from
+     */
+    protected void setReplyTo(CoLane replyTo) {
+        checkNotAlreadyEnqueued();
+        checkAllowOverwrite(this.replyTo, "replyTo");
+        this.replyTo = replyTo;
     }
 
     /**
-     * Add the lambda defined in the <code>CoLane</code> to the HawtDispatch lane which is
-     * known to the <code>CoLane</code> referenced by the <tt>lane</tt> attribute. This method
+     * Return the lane the whenDone lambdas are delivered to. Only to be relied on once the Handback has
+     * been enqueued, as it may be captured when the Handback is enqueued.
+     *
+     * @return the lane the whenDone lambdas are executed on
+     */
+    public CoLane replyTo() {
+        return replyTo != null ? replyTo : lane;
+    }
+
+    /**
+     * Add the lambda defined in the <code>CoLane</code> to the mailbox of the <code>CoLane</code>
+     * referenced by the <tt>lane</tt> attribute, which hands it to its <code>LaneExecutor</code>. This method
      * is a template methad that is supposed to be used by all subclasses of <code>AbstractHandback</code>
      */
     protected void enqueue()
     {
-        synchronized (lock)
-        {
-            checkValidBeforeEnqueue();
-            checkNotAlreadyEnqueued();
-            enqueued = true;
-
-            lane.run(() ->
-                    {
-                        lane.sender(sender);
-                        invokeFunction();
-                        invokeCallback();
-                        invokeWhenDone();
-                        lane.sender((Signature) null);
-                    });
+        Runnable runnable = prepareEnqueue();
+        if(runnable == null)
+            return;
+        EnqueueStatus status;
+        try {
+            status = lane.run(runnable);
+        }
+        catch (RuntimeException e) {
+            // e.g. a MailboxFullException with OverflowPolicy.FAIL
+            rejected(EnqueueStatus.REJECTED);
+            throw e;
+        }
+        if(!status.isEnqueued())
+            rejected(status);
+    }
+
+    /**
+     * Mark the Handback as enqueued and return the lambda that executes it on its lane. Used by
+     * <code>enqueue()</code> and by <code>HandbackBatch</code> that enqueues the lambdas of several
+     * Handbacks at once. A Handback that has been cancelled before being enqueued is not enqueued.
+     *
+     * @return the lambda to be enqueued on the lane or null if the Handback has been cancelled
+     */
+    Runnable prepareEnqueue()
+    {
+        if(!checkEnqueueable())
+            return null;
+        if(replyTo == null)
+            replyTo = CoLane.current();
+        if(timeoutNanos > 0)
+            deadline = System.nanoTime() + timeoutNanos;
+        // only fails if the Handback has been cancelled in the meantime
+        if(!StateUpdater.compareAndSet(this, Building, Enqueued))
+            return null;
+        return task;
+    }
+
+    /**
+     * Check that the Handback can be enqueued without changing its state, which lets <code>HandbackBatch</code>
+     * check all its Handbacks before enqueuing any of them.
+     *
+     * @return false if the Handback has been cancelled and is not to be enqueued
+     */
+    boolean checkEnqueueable()
+    {
+        int current = state;
+        if(current == Cancelled)
+            return false;
+        if(current != Building)
+            throw new IllegalStateException("lambda already enqueued");
+        checkValidBeforeEnqueue();
+        return true;
+    }
+
+    /**
+     * Executed on the lane. The Handback is done before whenDone is enqueued, so that a whenDone
+     * lambda executed on another thread does not find the Handback still running. A Handback whose
+     * deadline has passed or that has been cancelled is discarded.
+     */
+    private void execute() {
+        if(timeoutNanos > 0 && System.nanoTime() - deadline > 0) {
+            if(StateUpdater.compareAndSet(this, Enqueued, Done)) {
+                lane.droppedExpired();
+                expired();
+            }
+            return;
+        }
+        if(!StateUpdater.compareAndSet(this, Enqueued, Running))
+            return;
+        boolean done;
+        boolean completed = false;
+        try {
+            lane.sender(sender);
+            invokeFunction();
+            if(state == Running)
+                invokeCallback();
+            completed = true;
         }
+        finally {
+            lane.sender((Signature) null);
+            // fails if the Handback has been cancelled while running
+            done = StateUpdater.compareAndSet(this, Running, Done);
+            if(done && !completed)
+                terminatedExceptionally();
+        }
+        if(done)
+            invokeWhenDone();
+    }
+
+    /**
+     * Cancel the Handback. If it has not been started yet its lambda is skipped by the lane, if it is
+     * running the callback and whenDone lambdas are not executed any more. A Handback cancelled before
+     * it has been enqueued is not enqueued by <code>runAsync()</code>.
+     *
+     * @return true if the Handback was cancelled, false if it was already done or cancelled
+     */
+    public boolean cancel() {
+        while(true) {
+            int current = state;
+            if(current >= Done)
+                return false;
+            if(StateUpdater.compareAndSet(this, current, Cancelled)) {
+                cancelled();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Called for Handbacks the mailbox of the lane did not accept, also by <code>HandbackBatch</code>.
+     *
+     * @param status the status answered by the mailbox
+     */
+    void rejected(EnqueueStatus status) {
+        if(StateUpdater.compareAndSet(this, Enqueued, Rejected))
+            notEnqueued(status);
+    }
+
+    CoLane lane() {
+        return lane;
+    }
+
+    /**
+     * Called in case the mailbox dropped the lambda of the Handback after having accepted it.
+     */
+    private void discarded() {
+        rejected(EnqueueStatus.DROPPED);
+    }
+
+    /**
+     * Called in case the mailbox of the lane did not accept the lambda of the Handback, which
+     * then will never be executed.
+     *
+     * @param status the status answered by the mailbox
+     */
+    protected void notEnqueued(EnqueueStatus status) {
+    }
+
+    /**
+     * Answer the exception a Handback whose lambda was not enqueued fails with: a RejectedExecutionException
+     * if the lane has been shut down, otherwise a MailboxFullException.
+     */
+    static RuntimeException notEnqueuedException(EnqueueStatus status) {
+        if(status == EnqueueStatus.SHUT_DOWN)
+            return new RejectedExecutionException("lane shut down");
+        return new MailboxFullException("lambda not enqueued: " + status);
+    }
+
+    /**
+     * Called on the lane once the Handback is done in case its lambda or callback threw an exception,
+     * which is passed on to the lane. The whenDone lambdas are not executed in that case.
+     */
+    protected void terminatedExceptionally() {
+    }
+
+    /**
+     * Called by the thread that cancelled the Handback.
+     */
+    protected void cancelled() {
+    }
+
+    /**
+     * Called on the lane in case the Handback was discarded as its deadline had passed before the lane
+     * got to it. Neither the lambda nor the callback and whenDone lambdas of the Handback are executed.
+     */
+    protected void expired() {
     }
 
     /**
      * Called from subclasses to invoke the callback lambda.
      */
-    @CallerMustSynchronize
     protected void invokeCallback() {
         if(callback != null)
             callback.run();
@@ -199,16 +444,26 @@ public abstract class AbstractHandback
     /**
      * Called from subclasses to invoke the whenDone lambda.
      */
-    @CallerMustSynchronize
     protected void invokeWhenDone() {
         if(whenDone != null)
-            lane.run(whenDone);
+            deliverWhenDone(whenDone);
+    }
+
+    /**
+     * Deliver a whenDone lambda to the reply-to lane. If that lane does not accept it, e.g. because it has
+     * been shut down or its mailbox is full, the lambda is executed right away on the lane of the Handback
+     * instead, so that the reply is not lost and the sender waiting for it does not hang.
+     *
+     * @param whenDone the whenDone lambda to be delivered
+     */
+    protected void deliverWhenDone(Runnable whenDone) {
+        if(!replyTo().run(whenDone).isEnqueued())
+            whenDone.run();
     }
 
     /**
      * Check whether the <code>Handback</code> is valid and can be enqueued.
      */
-    @CallerMustSynchronize
     protected void checkValidBeforeEnqueue() {
         if(lane == null)
             throw new NullPointerException("handback not attached to a lane");
@@ -217,7 +472,6 @@ public abstract class AbstractHandback
     /**
      * Require all subclasses to implement an invokeFunction() method as needed for their purposes.
      */
-    @CallerMustSynchronize
     protected abstract void invokeFunction();
 
     /**
@@ -227,17 +481,58 @@ public abstract class AbstractHandback
      * @return
      */
     public boolean isEnqueued() {
-        synchronized (lock) {
-            return enqueued;
-        }
+        int current = state;
+        // neither a rejected nor a cancelled Handback may have been enqueued
+        return current == Enqueued || current == Running || current == Done;
+    }
+
+    /**
+     * Answer whether the lane did not accept the lambda of the Handback or dropped it, so that it
+     * will never be executed.
+     *
+     * @return true if the Handback has been rejected
+     */
+    public boolean isRejected() {
+        return state == Rejected;
+    }
+
+    /**
+     * Answer whether the lambda of the Handback has been executed or will never be executed as
+     * the lane did not accept it or the Handback has been cancelled.
+     *
+     * @return true if the Handback is done
+     */
+    public boolean isDone() {
+        return state >= Done;
+    }
+
+    public boolean isCancelled() {
+        return state == Cancelled;
+    }
+
+    /**
+     * Return the current state, which is one of <tt>Building</tt>, <tt>Enqueued</tt>, <tt>Running</tt>, <tt>Done</tt>,
+     * <tt>Rejected</tt> and <tt>Cancelled</tt>.
+     *
+     * @return the state of the Handback
+     */
+    protected final int state() {
+        return state;
+    }
+
+    /**
+     * Return the Handback to the building state so that it can be used once more. Only to be called
+     * once the Handback is done.
+     */
+    protected final void resetState() {
+        state = Building;
     }
 
     /**
      * Check that the lambda of the Handback has not already been enqueued.
      */
-    @CallerMustSynchronize
     protected void checkNotAlreadyEnqueued() {
-        if(enqueued)
+        if(state != Building)
             throw new IllegalStateException("lambda already enqueued");
     }
 
@@ -247,18 +542,42 @@ public abstract class AbstractHandback
      * @param coReceiver
      */
     protected void setSender(CoReceiver coReceiver) {
-        synchronized (lock) {
-            checkNotAlreadyEnqueued();
-            checkAllowOverwrite(sender, "sender");
-            sender = coReceiver.getSignature();
-        }
+        checkNotAlreadyEnqueued();
+        checkAllowOverwrite(sender, "sender");
+        sender = coReceiver.getSignature();
+    }
+
+    /**
+     * Set the <code>Signature</code> of the coReceiver that invoked the Handback. Allows a coReceiver to
+     * pass the same <code>Signature</code> with every request instead of creating a new one each time.
+     *
+     * @param signature
+     */
+    protected void setSender(Signature signature) {
+        checkNotAlreadyEnqueued();
+        checkAllowOverwrite(sender, "sender");
+        sender = signature;
     }
 
     public void setNamedSender(CoReceiver coReceiver) {
-        synchronized (lock) {
-            checkNotAlreadyEnqueued();
-            checkAllowOverwrite(sender, "sender");
-            sender = coReceiver.getNamedSignature();
+        checkNotAlreadyEnqueued();
+        checkAllowOverwrite(sender, "sender");
+        sender = coReceiver.getNamedSignature();
+    }
+
+    /**
+     * The lambda of the Handback enqueued on its lane.
+     */
+    private final class Task implements Discardable {
+
+        @Override
+        public void run() {
+            execute();
+        }
+
+        @Override
+        public void discarded() {
+            AbstractHandback.this.discarded();
         }
     }
 
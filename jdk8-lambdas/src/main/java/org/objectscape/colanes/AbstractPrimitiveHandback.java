@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import org.objectscape.colanes.mailbox.EnqueueStatus;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Abstract class of the Handbacks that answer a primitive result, which is kept in an unboxed field of
+ * the subclass instead of a <code>CompletableFuture</code>. Once the result has been stored the subclass
+ * calls <code>completed()</code>, which publishes the result with a single volatile write. Threads waiting
+ * for the result only take the monitor of the Handback if the result is not yet available, so that
+ * delivering the result does not lock unless a thread is actually waiting for it.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public abstract class AbstractPrimitiveHandback extends AbstractHandback {
+
+    private static final int Pending = 0;
+    private static final int Completed = 1;
+    private static final int Failed = 2;
+    private static final int Cancelled = 3;
+
+    private static final AtomicIntegerFieldUpdater<AbstractPrimitiveHandback> CompletionUpdater = AtomicIntegerFieldUpdater.newUpdater(AbstractPrimitiveHandback.class, "completion");
+    private static final AtomicIntegerFieldUpdater<AbstractPrimitiveHandback> WaitersUpdater = AtomicIntegerFieldUpdater.newUpdater(AbstractPrimitiveHandback.class, "waiters");
+
+    /**
+     * One of <tt>Pending</tt>, <tt>Completed</tt>, <tt>Failed</tt> and <tt>Cancelled</tt>. Changed once after
+     * the result or the failure has been stored.
+     */
+    private volatile int completion = Pending;
+
+    /**
+     * Number of threads waiting for the result.
+     */
+    private volatile int waiters = 0;
+
+    private Throwable failure = null;
+
+    public AbstractPrimitiveHandback() {
+        super();
+    }
+
+    public AbstractPrimitiveHandback(boolean allowOverwrite) {
+        super(allowOverwrite);
+    }
+
+    public AbstractPrimitiveHandback(CoLane lane) {
+        super(lane);
+    }
+
+    public AbstractPrimitiveHandback(CoLane lane, boolean allowOverwrite) {
+        super(lane, allowOverwrite);
+    }
+
+    /**
+     * Called by subclasses once the result has been stored.
+     */
+    protected final void completed() {
+        complete(Completed);
+    }
+
+    /**
+     * Called by subclasses if the result could not be obtained.
+     *
+     * @param failure the exception thrown when obtaining the result
+     */
+    protected final void failed(Throwable failure) {
+        if(completion != Pending)
+            return;
+        this.failure = failure;
+        complete(Failed);
+    }
+
+    /**
+     * Only the first completion counts, e.g. a result obtained after the Handback has been cancelled
+     * while running is ignored.
+     */
+    private void complete(int completion) {
+        if(!CompletionUpdater.compareAndSet(this, Pending, completion))
+            return;
+        if(waiters > 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    @Override
+    protected void notEnqueued(EnqueueStatus status) {
+        failed(notEnqueuedException(status));
+    }
+
+    @Override
+    protected void cancelled() {
+        complete(Cancelled);
+    }
+
+    @Override
+    protected void expired() {
+        failed(new TimeoutException("deadline passed before lambda was started"));
+    }
+
+    /**
+     * Answer whether the result is available or the Handback has failed.
+     *
+     * @return true if the result has been obtained or the Handback has failed
+     */
+    public boolean isCompleted() {
+        return completion != Pending;
+    }
+
+    public boolean isCompletedExceptionally() {
+        return completion >= Failed;
+    }
+
+    /**
+     * Wait till the result has been obtained.
+     *
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException if the result could not be obtained
+     */
+    protected final void await() throws InterruptedException, ExecutionException {
+        if(completion == Pending) {
+            WaitersUpdater.incrementAndGet(this);
+            try {
+                synchronized (this) {
+                    while(completion == Pending)
+                        wait();
+                }
+            }
+            finally {
+                WaitersUpdater.decrementAndGet(this);
+            }
+        }
+        checkNotFailed();
+    }
+
+    /**
+     * Wait at most the given time till the result has been obtained.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of <tt>timeout</tt>
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException if the result could not be obtained
+     * @throws TimeoutException if the result has not been obtained in time
+     */
+    protected final void await(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if(completion == Pending) {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            WaitersUpdater.incrementAndGet(this);
+            try {
+                synchronized (this) {
+                    while(completion == Pending) {
+                        long remaining = deadline - System.nanoTime();
+                        if(remaining <= 0)
+                            throw new TimeoutException();
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    }
+                }
+            }
+            finally {
+                WaitersUpdater.decrementAndGet(this);
+            }
+        }
+        checkNotFailed();
+    }
+
+    private void checkNotFailed() throws ExecutionException {
+        if(completion == Failed)
+            throw new ExecutionException(failure);
+        if(completion == Cancelled)
+            throw new CancellationException("handback cancelled");
+    }
+
+}
@@ -17,17 +17,48 @@
 
 package org.objectscape.colanes;
 
-import org.fusesource.hawtdispatch.Dispatch;
 import org.fusesource.hawtdispatch.DispatchQueue;
+import org.objectscape.colanes.executor.HawtDispatchLaneExecutor;
+import org.objectscape.colanes.executor.LaneExecutor;
+import org.objectscape.colanes.mailbox.BoundedMailbox;
+import org.objectscape.colanes.mailbox.Discardable;
+import org.objectscape.colanes.mailbox.EnqueueStatus;
+import org.objectscape.colanes.mailbox.Mailbox;
+import org.objectscape.colanes.mailbox.OverflowPolicy;
+import org.objectscape.colanes.mailbox.PriorityMailbox;
+import org.objectscape.colanes.mailbox.RingBufferMailbox;
+import org.objectscape.colanes.mailbox.UnboundedMailbox;
+import org.objectscape.colanes.metrics.LaneMetrics;
+import org.objectscape.colanes.registry.Registry;
+import org.objectscape.colanes.timer.HashedTimerWheel;
+import org.objectscape.colanes.timer.Timeout;
 import org.objectscape.colanes.util.Signature;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * This class is an envelope around the HawtDispatch <code>DispatchQueue</code> class. It hides
- * the creation of a HawtDispatch <code>DispatchQueue</code> object from the user and provides
- * convenience methods to obtain a Handback that knows the HawtDispatch <code>DispatchQueue</code>
- * it is associated with.
+ * This class hides the threads the lambdas of a lane are executed by from the user and provides
+ * convenience methods to obtain a Handback that knows the <code>CoLane</code> it is associated with.
+ *
+ * The threads are obtained from a <code>LaneExecutor</code>. Unless one is passed to the constructor
+ * the <code>LaneExecutor</code> of the default <code>Registry</code> is used, which by default is
+ * backed by the HawtDispatch global queue. Whenever lambdas are pending and the lane is not already
+ * scheduled, the lane hands a drain task to its <code>LaneExecutor</code> that executes the pending
+ * lambdas. As at most one drain task is scheduled at a time, the lambdas of a lane are never executed
+ * concurrently.
  *
  * Every lane needs to defines a <code>CoLane</code> that stores and executes the lambdas
  * that are invoked on it asynchronously in the order they were added to the <code>CoLane</code>.
@@ -36,25 +67,269 @@ import java.util.concurrent.TimeUnit;
  */
 public class CoLane {
 
+    /**
+     * The lane whose lambdas the current thread is executing.
+     */
+    private static final ThreadLocal<CoLane> Current = new ThreadLocal<>();
+
+    /**
+     * Cache of <tt>Current</tt> that lets <code>current()</code> do without the ThreadLocal lookup on the
+     * hot path. The lanes being executed are stored by the id of the executing thread, every slot
+     * <tt>CurrentStride</tt> entries apart so that threads do not share cache lines. An entry is only
+     * trusted if the lane names the current thread as its <tt>executingThread</tt>, which only the
+     * executing thread itself sets.
+     */
+    private static final int CurrentSlots = 256;
+    private static final int CurrentStride = 16;
+    private static final CoLane[] CurrentByThread = new CoLane[CurrentSlots * CurrentStride];
+
+    /**
+     * Notified at the end of every drain task while threads wait in <code>awaitQuiescence()</code>.
+     * <tt>IdleEpoch</tt> is incremented on every notification so that no notification is missed.
+     */
+    private static final Object IdleMonitor = new Object();
+    private static volatile int QuiescenceWaiters = 0;
+    private static long IdleEpoch = 0;
+
+    private static final Object[] NoLaneLocals = new Object[0];
+
     /**
      *
      */
-    private DispatchQueue queue = null;
+    private String label = null;
+    private LaneExecutor executor = null;
     private Signature sender = null;
 
+    /**
+     * Lambdas enqueued on the lane that have not yet been executed.
+     */
+    private volatile Mailbox mailbox = new UnboundedMailbox();
+
+    /**
+     * Set when the first lambda is enqueued. From then on the lane can no longer be configured.
+     */
+    private volatile boolean started = false;
+
+    /**
+     * True while a drain task for this lane is handed to the executor or running.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    /**
+     * Number of times <code>suspend()</code> has been called without a matching <code>resume()</code>.
+     */
+    private final AtomicInteger suspended = new AtomicInteger(0);
+
+    /**
+     * Set by <code>shutdown()</code>, after which no lambdas are accepted any more.
+     */
+    private volatile boolean shutdown = false;
+
+    /**
+     * Number of threads currently enqueuing lambdas. Incremented before <tt>shutdown</tt> is checked, so
+     * that a lane is only terminated once every lambda accepted before the shutdown has been enqueued.
+     */
+    private final AtomicInteger submitters = new AtomicInteger(0);
+
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    /**
+     * Set by the thread terminating the lane, guarded by <tt>terminated</tt>.
+     */
+    private boolean terminating = false;
+
+    /**
+     * Number of drain tasks started, which tells <code>awaitQuiescence()</code> whether the lane has done
+     * any work between two checks. Only incremented by the thread draining the lane.
+     */
+    private volatile long drainCount = 0;
+
+    /**
+     * Metrics of the lane or null if metrics are disabled, which is the default. Only set before
+     * the lane is started.
+     */
+    private LaneMetrics metrics = null;
+
+    /**
+     * Maximum number of lambdas run from the lane on itself that are executed inline in a row
+     * without polling the mailbox or 0 if lambdas are never executed inline, which is the default.
+     */
+    private int maxInlineDepth = 0;
+
+    /**
+     * The thread currently draining the lane. Only maintained if <tt>maxInlineDepth</tt> is greater than 0.
+     */
+    private volatile Thread drainingThread = null;
+
+    /**
+     * Lambdas run from the lane on itself that are executed before the mailbox is polled again.
+     * Only accessed by the thread draining the lane.
+     */
+    private ArrayDeque<Runnable> inlined = null;
+    private int inlineDepth = 0;
+
+    /**
+     * Maximum number of lambdas and time a drain task executes before it hands the thread back to the
+     * executor, already multiplied by the weight of the lane. Only set before the lane is started.
+     */
+    private int maxTasksPerTurn = Integer.MAX_VALUE;
+    private long maxNanosPerTurn = Long.MAX_VALUE;
+
+    /**
+     * The drain budget and the weight as configured, which make up <tt>maxTasksPerTurn</tt> and
+     * <tt>maxNanosPerTurn</tt>.
+     */
+    private int budgetTasks = Integer.MAX_VALUE;
+    private long budgetNanos = Long.MAX_VALUE;
+    private int weight = 1;
+
+    /**
+     * Number of drain tasks that ended as the drain budget was used up while lambdas were still pending.
+     * Only incremented by the thread draining the lane.
+     */
+    private volatile long yieldCount = 0;
+
+    /**
+     * The watchdog the lane is watched by or null if the lane is not watched, which is the default.
+     * Only set before the lane is started.
+     */
+    private LaneWatchdog watchdog = null;
+
+    /**
+     * Whether lambdas remember the call site they were enqueued from to be reported as part of a stall.
+     */
+    private boolean captureCallSites = false;
+
+    private static final AtomicLongFieldUpdater<CoLane> RunningSequenceUpdater =
+            AtomicLongFieldUpdater.newUpdater(CoLane.class, "runningSequence");
+
+    /**
+     * The lambda being executed, the thread executing it and the time it was started, published for the
+     * watchdog. <tt>runningSequence</tt> is incremented before and after every lambda and written after the
+     * other fields, so that it is odd while a lambda is executing and changes whenever the lambda does.
+     * It is written with <code>lazySet()</code>, which orders it after the other fields without the cost of
+     * a full fence, as the watchdog can do with seeing it slightly late. Only maintained if the lane is watched.
+     */
+    private Runnable runningTask = null;
+    private Thread runningThread = null;
+    private long runningSince = 0;
+    private volatile long runningSequence = 0;
+
+    /**
+     * The <tt>runningSequence</tt> of the last lambda reported as stalled. Only accessed by the watchdog thread.
+     */
+    private long stalledSequence = 0;
+
+    private final AtomicLong stallCount = new AtomicLong();
+
+    /**
+     * Number of Handbacks discarded as their deadline had passed when the lane got to them.
+     */
+    private final AtomicLong expiredCount = new AtomicLong();
+
+    /**
+     * Lambdas run with <code>runCoalesced()</code> that are still pending by their key. Created when
+     * <code>runCoalesced()</code> is called for the first time.
+     */
+    private volatile ConcurrentHashMap<Object, CoalescedRunnable> coalesced = null;
+
+    /**
+     * Number of executions saved by <code>runCoalesced()</code>.
+     */
+    private final LongAdder coalescedCount = new LongAdder();
+
+    /**
+     * Recycled Handbacks handed out by <code>getPooledHandback()</code> or null if pooling is disabled.
+     */
+    private HandbackPool handbackPool = null;
+
+    /**
+     * The thread executing the lambdas of the lane unless it is executing those of another lane on top.
+     * Only ever set to itself by the executing thread, see <tt>CurrentByThread</tt>.
+     */
+    private Thread executingThread = null;
+
+    /**
+     * Values of the <code>LaneLocal</code>s of the lane indexed by the index of the <code>LaneLocal</code>,
+     * null if not set. Only accessed by lambdas executing on the lane.
+     */
+    private Object[] laneLocals = NoLaneLocals;
+
+    /**
+     * The <code>LaneLocal</code>s with a disposer the lane has had values of, indexed like <tt>laneLocals</tt>,
+     * whose values are disposed of once the lane has terminated. Null till the first one is set.
+     */
+    private LaneLocal<?>[] disposedLaneLocals = null;
+
+    private final Runnable drain = () -> { drain(); };
+
     public CoLane() {
-        super();
-        queue = Dispatch.createQueue();
+        this(Registry.getDefault().getLaneExecutor());
     }
 
     public CoLane(String label) {
-        super();
-        queue = Dispatch.createQueue(label);
+        this(label, Registry.getDefault().getLaneExecutor());
     }
 
     public CoLane(DispatchQueue queue) {
+        this(queue.getLabel(), new HawtDispatchLaneExecutor(queue));
+    }
+
+    public CoLane(LaneExecutor executor) {
+        this(null, executor);
+    }
+
+    public CoLane(String label, LaneExecutor executor) {
         super();
-        this.queue = queue;
+        if(executor == null)
+            throw new NullPointerException("executor null");
+        this.label = label;
+        this.executor = executor;
+        Registry.getDefault().trackLane(this);
+    }
+
+    /**
+     * Answer the lane whose lambdas are being executed by the current thread. Handbacks enqueued from
+     * a lane remember it to deliver their whenDone lambdas to it.
+     *
+     * @return the lane of the current thread or null if the current thread is not executing a lane
+     */
+    public static CoLane current() {
+        Thread thread = Thread.currentThread();
+        CoLane lane = CurrentByThread[currentSlot(thread)];
+        if(lane != null && lane.executingThread == thread)
+            return lane;
+        return Current.get();
+    }
+
+    private static int currentSlot(Thread thread) {
+        return ((int) thread.getId() & (CurrentSlots - 1)) * CurrentStride;
+    }
+
+    /**
+     * Make this lane the current lane of the current thread.
+     *
+     * @return the previous lane of the current thread to be passed to <code>exitCurrent()</code>
+     */
+    protected final CoLane enterCurrent() {
+        Thread thread = Thread.currentThread();
+        CoLane previous = Current.get();
+        Current.set(this);
+        if(previous != null)
+            previous.executingThread = null;
+        executingThread = thread;
+        CurrentByThread[currentSlot(thread)] = this;
+        return previous;
+    }
+
+    protected final void exitCurrent(CoLane previous) {
+        Thread thread = Thread.currentThread();
+        executingThread = null;
+        Current.set(previous);
+        if(previous != null)
+            previous.executingThread = thread;
+        // cleared so that the cache does not keep lanes no longer executed alive
+        CurrentByThread[currentSlot(thread)] = previous;
     }
 
     public Handback getHandback() {
@@ -65,6 +340,24 @@ public class CoLane {
         return new Handback(this, allowOverwrite);
     }
 
+    /**
+     * Answer a Handback from the pool of recycled Handbacks of the lane. The Handback goes back to the
+     * pool once it is done, or after its whenDone lambda has been executed if it has one, so that it
+     * must not be used any more after <code>runAsync()</code> has been called. If Handback pooling has not
+     * been enabled with <code>poolHandbacks()</code> a new Handback that is not pooled is answered.
+     *
+     * @return a Handback that is returned to the pool of the lane when done
+     */
+    public Handback getPooledHandback() {
+        HandbackPool pool = handbackPool;
+        if(pool == null)
+            return new Handback(this);
+        Handback handback = pool.acquire();
+        if(handback == null)
+            handback = new Handback(this, pool);
+        return handback;
+    }
+
     public <T> HandbackFutureCompletion<T> getHandbackFutureCompletion() {
         return new HandbackFutureCompletion<>(this);
     }
@@ -73,12 +366,625 @@ public class CoLane {
         return new HandbackFutureCompletion<>(this, allowOverwrite);
     }
 
-    public void run(Runnable runnable) {
-        queue.execute(runnable);
+    public IntHandback getIntHandback() {
+        return new IntHandback(this);
+    }
+
+    public IntHandback getIntHandback(boolean allowOverwrite) {
+        return new IntHandback(this, allowOverwrite);
+    }
+
+    public LongHandback getLongHandback() {
+        return new LongHandback(this);
+    }
+
+    public LongHandback getLongHandback(boolean allowOverwrite) {
+        return new LongHandback(this, allowOverwrite);
+    }
+
+    public DoubleHandback getDoubleHandback() {
+        return new DoubleHandback(this);
+    }
+
+    public DoubleHandback getDoubleHandback(boolean allowOverwrite) {
+        return new DoubleHandback(this, allowOverwrite);
+    }
+
+    /**
+     * Enqueue the <tt>runnable</tt> for execution on the lane. Unless the lane has been given a bounded
+     * mailbox the lambda is always enqueued. Otherwise the returned status tells whether it was enqueued
+     * or dropped according to the <code>OverflowPolicy</code> of the mailbox.
+     *
+     * @param runnable the lambda to be executed on the lane
+     * @return the status telling whether the lambda was enqueued
+     */
+    public EnqueueStatus run(Runnable runnable) {
+        if(runnable == null)
+            throw new NullPointerException("runnable null");
+        if(!started)
+            started = true;
+        if(!enterSubmit())
+            return EnqueueStatus.SHUT_DOWN;
+        try {
+            runnable = wrap(runnable, 0);
+            if(maxInlineDepth > 0 && runInline(runnable))
+                return EnqueueStatus.ENQUEUED;
+            EnqueueStatus status = mailbox.offer(runnable);
+            if(status.isEnqueued())
+                schedule();
+            return status;
+        }
+        finally {
+            exitSubmit();
+        }
+    }
+
+    /**
+     * Enqueue the <tt>runnable</tt> for execution on the lane with the given <tt>priority</tt>. Lambdas of a
+     * higher priority are executed before lambdas of a lower priority that are pending, lambdas of the same
+     * priority in the order they were enqueued. Requires the lane to be configured with <code>priorities()</code>,
+     * otherwise an IllegalStateException is thrown.
+     *
+     * @param runnable the lambda to be executed on the lane
+     * @param priority the priority from 0, which is the priority of <code>run(runnable)</code>, to
+     *                 <code>getPriorityCount() - 1</code>
+     * @return the status telling whether the lambda was enqueued
+     */
+    public EnqueueStatus run(Runnable runnable, int priority) {
+        if(runnable == null)
+            throw new NullPointerException("runnable null");
+        Mailbox mailbox = this.mailbox;
+        if(!(mailbox instanceof PriorityMailbox))
+            throw new IllegalStateException("lane not configured with priorities");
+        if(!started)
+            started = true;
+        if(!enterSubmit())
+            return EnqueueStatus.SHUT_DOWN;
+        try {
+            runnable = wrap(runnable, priority);
+            EnqueueStatus status = ((PriorityMailbox) mailbox).offer(runnable, priority);
+            if(status.isEnqueued())
+                schedule();
+            return status;
+        }
+        finally {
+            exitSubmit();
+        }
+    }
+
+    /**
+     * Enqueue the <tt>runnable</tt> with the highest priority of the lane, so that it is executed before all
+     * other pending lambdas, e.g. to suspend or reconfigure a receiver flooded with data lambdas. Requires
+     * the lane to be configured with <code>priorities()</code>, otherwise an IllegalStateException is thrown.
+     *
+     * @param runnable the lambda to be executed on the lane
+     * @return the status telling whether the lambda was enqueued
+     */
+    public EnqueueStatus runUrgent(Runnable runnable) {
+        return run(runnable, getPriorityCount() - 1);
+    }
+
+    private boolean enterSubmit() {
+        submitters.incrementAndGet();
+        if(!shutdown)
+            return true;
+        exitSubmit();
+        return false;
+    }
+
+    private void exitSubmit() {
+        if(submitters.decrementAndGet() == 0 && shutdown)
+            tryTerminate();
+    }
+
+    /**
+     * Wrap the lambda to remember its call site and enqueue time if enabled.
+     */
+    private Runnable wrap(Runnable runnable, int priority) {
+        if(captureCallSites)
+            runnable = new CallSiteRunnable(runnable);
+        if(metrics != null)
+            runnable = new TimedRunnable(runnable, priority);
+        return runnable;
+    }
+
+    /**
+     * Same as <code>runCoalesced(key, runnable, CoalescePolicy.REPLACE)</code>.
+     *
+     * @param key identifies lambdas of which only one needs to be executed
+     * @param runnable the lambda to be executed on the lane
+     * @return the status telling whether the lambda was enqueued or replaced a pending one
+     */
+    public EnqueueStatus runCoalesced(Object key, Runnable runnable) {
+        return runCoalesced(key, runnable, CoalescePolicy.REPLACE);
+    }
+
+    /**
+     * Enqueue the <tt>runnable</tt> for execution on the lane unless a lambda run with the same key is
+     * still pending, in which case either the pending lambda is replaced by the new one or the new one is
+     * dropped, depending on the <tt>policy</tt>. Meant for bursts of requests of which only one needs to be
+     * executed, e.g. requests to recompute a value. A pending lambda keeps its position in the mailbox when
+     * it is replaced. Once a lambda has been started, lambdas run with the same key are enqueued again.
+     * Not supported with a bounded mailbox that drops the oldest lambdas, as a dropped lambda would keep
+     * its key pending forever.
+     *
+     * @param key identifies lambdas of which only one needs to be executed
+     * @param runnable the lambda to be executed on the lane
+     * @param policy whether to replace the pending lambda or to drop the new one
+     * @return the status telling whether the lambda was enqueued, replaced a pending one or was dropped
+     */
+    public EnqueueStatus runCoalesced(Object key, Runnable runnable, CoalescePolicy policy) {
+        if(key == null)
+            throw new NullPointerException("key null");
+        if(runnable == null)
+            throw new NullPointerException("runnable null");
+        ConcurrentHashMap<Object, CoalescedRunnable> pending = coalesced();
+        while(true) {
+            CoalescedRunnable existing = pending.get(key);
+            if(existing != null) {
+                if(policy == CoalescePolicy.KEEP_PENDING && existing.runnable != null) {
+                    coalescedCount.increment();
+                    return EnqueueStatus.COALESCED;
+                }
+                if(policy == CoalescePolicy.REPLACE && existing.replace(runnable)) {
+                    coalescedCount.increment();
+                    return EnqueueStatus.REPLACED;
+                }
+                // already started, but not yet removed by the lane
+                pending.remove(key, existing);
+                continue;
+            }
+            CoalescedRunnable coalescedRunnable = new CoalescedRunnable(key, runnable, pending);
+            if(pending.putIfAbsent(key, coalescedRunnable) != null)
+                continue;
+            EnqueueStatus status = run(coalescedRunnable);
+            if(!status.isEnqueued())
+                pending.remove(key, coalescedRunnable);
+            return status;
+        }
+    }
+
+    private ConcurrentHashMap<Object, CoalescedRunnable> coalesced() {
+        ConcurrentHashMap<Object, CoalescedRunnable> pending = coalesced;
+        if(pending != null)
+            return pending;
+        Mailbox mailbox = this.mailbox;
+        if(mailbox instanceof BoundedMailbox && ((BoundedMailbox) mailbox).getOverflowPolicy() == OverflowPolicy.DROP_OLDEST)
+            throw new UnsupportedOperationException("coalescing not supported with mailboxes dropping the oldest lambdas");
+        synchronized (this) {
+            if(coalesced == null)
+                coalesced = new ConcurrentHashMap<>();
+            return coalesced;
+        }
+    }
+
+    /**
+     * Answer the number of lambdas run with <code>runCoalesced()</code> that were not executed as they
+     * replaced or were replaced by another lambda with the same key.
+     *
+     * @return the number of executions saved by coalescing
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    /**
+     * Add the lambda to the lambdas executed inline if it is run from the thread draining the lane
+     * and the mailbox is empty, so that FIFO order with lambdas already enqueued is preserved.
+     */
+    private boolean runInline(Runnable runnable) {
+        if(drainingThread != Thread.currentThread() || inlineDepth >= maxInlineDepth || !mailbox.isEmpty())
+            return false;
+        inlineDepth++;
+        inlined.add(runnable);
+        return true;
+    }
+
+    /**
+     * Enqueue all <tt>runnables</tt> for execution on the lane in the order of the collection. Unlike
+     * calling <code>run()</code> for every lambda the mailbox is updated in one operation, if supported
+     * by the mailbox, and the lane is scheduled only once. With a bounded mailbox the lambdas enqueued
+     * are the first ones of the collection up to the first one the mailbox did not accept.
+     *
+     * @param runnables the lambdas to be executed on the lane
+     * @return the number of lambdas enqueued
+     */
+    public int runAll(Collection<? extends Runnable> runnables) {
+        if(runnables.isEmpty())
+            return 0;
+        if(!started)
+            started = true;
+        if(!enterSubmit())
+            return 0;
+        try {
+            if(metrics != null || captureCallSites) {
+                List<Runnable> wrappedRunnables = new ArrayList<>(runnables.size());
+                for(Runnable runnable : runnables)
+                    wrappedRunnables.add(wrap(runnable, 0));
+                runnables = wrappedRunnables;
+            }
+            int count = mailbox.offerAll(runnables);
+            if(count > 0)
+                schedule();
+            return count;
+        }
+        finally {
+            exitSubmit();
+        }
+    }
+
+    /**
+     * Enqueue <tt>runnable</tt> on the lane once the given <tt>duration</tt> has elapsed. The delay is
+     * kept by the default <code>HashedTimerWheel</code>, so that scheduling and cancelling take constant
+     * time even with a large number of pending lambdas.
+     *
+     * @param duration the delay after which the lambda is enqueued
+     * @param unit the time unit of <tt>duration</tt>
+     * @param runnable the lambda to be executed on the lane
+     * @return handle to cancel the lambda before it is enqueued
+     */
+    public Timeout runAfter(long duration, TimeUnit unit, Runnable runnable) {
+        if(runnable == null)
+            throw new NullPointerException("runnable null");
+        return HashedTimerWheel.getDefault().schedule(() -> { run(runnable); }, duration, unit);
+    }
+
+    /**
+     * Enqueue <tt>runnable</tt> on the lane at a fixed rate, first after <tt>period</tt> has elapsed
+     * and then every <tt>period</tt>, until the returned handle is cancelled. If the lane is busy for
+     * longer than a period the lambda is enqueued nevertheless, so that periodic lambdas may pile up
+     * in the mailbox.
+     *
+     * @param period the time between two enqueues of the lambda
+     * @param unit the time unit of <tt>period</tt>
+     * @param runnable the lambda to be executed on the lane
+     * @return handle to stop the periodic execution
+     */
+    public Timeout runEvery(long period, TimeUnit unit, Runnable runnable) {
+        if(runnable == null)
+            throw new NullPointerException("runnable null");
+        return HashedTimerWheel.getDefault().scheduleAtFixedRate(() -> { run(runnable); }, period, period, unit);
+    }
+
+    /**
+     * Hand a drain task to the executor unless the lane is suspended or already scheduled. <tt>scheduled</tt>
+     * is read before it is set, so that enqueuing on a busy lane does not cost a compare-and-set. If the
+     * executor does not accept the drain task, e.g. as it has been shut down, <tt>scheduled</tt> is reset so
+     * that the next lambda enqueued tries again and the exception is passed on to the caller.
+     */
+    private void schedule() {
+        if(suspended.get() == 0 && !scheduled.get() && scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(drain);
+            }
+            catch (RuntimeException | Error e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Execute the pending lambdas till the mailbox is empty, the lane has been suspended or the drain
+     * budget is used up. Lambdas enqueued after the mailbox was found empty but before <tt>scheduled</tt>
+     * was reset, as well as those left over when the drain budget was used up, are picked up by scheduling
+     * the lane once more, which puts it behind the drain tasks of other lanes already handed to the executor.
+     */
+    private void drain() {
+        if(maxInlineDepth > 0) {
+            drainInline();
+            return;
+        }
+        drainCount++;
+        CoLane previous = enterCurrent();
+        try {
+            long startTime = maxNanosPerTurn == Long.MAX_VALUE ? 0 : System.nanoTime();
+            int executed = 0;
+            Runnable runnable = null;
+            while(suspended.get() == 0 && (runnable = mailbox.poll()) != null) {
+                executeNext(runnable);
+                if(budgetUsedUp(++executed, startTime)) {
+                    if(!mailbox.isEmpty())
+                        yieldCount++;
+                    break;
+                }
+            }
+        }
+        finally {
+            exitCurrent(previous);
+            scheduled.set(false);
+        }
+        if(!mailbox.isEmpty())
+            schedule();
+        drained();
+    }
+
+    /**
+     * Same as <code>drain()</code> for lanes that execute lambdas run on themselves inline. Inlined
+     * lambdas are executed before the mailbox is polled again.
+     */
+    private void drainInline() {
+        drainCount++;
+        drainingThread = Thread.currentThread();
+        CoLane previous = enterCurrent();
+        try {
+            long startTime = maxNanosPerTurn == Long.MAX_VALUE ? 0 : System.nanoTime();
+            int executed = 0;
+            while(suspended.get() == 0) {
+                Runnable runnable = inlined.poll();
+                if(runnable == null) {
+                    inlineDepth = 0;
+                    if((runnable = mailbox.poll()) == null)
+                        break;
+                }
+                executeNext(runnable);
+                if(budgetUsedUp(++executed, startTime)) {
+                    if(!mailbox.isEmpty() || !inlined.isEmpty())
+                        yieldCount++;
+                    break;
+                }
+            }
+        }
+        finally {
+            exitCurrent(previous);
+            drainingThread = null;
+            scheduled.set(false);
+        }
+        if(!mailbox.isEmpty() || !inlined.isEmpty())
+            schedule();
+        drained();
+    }
+
+    /**
+     * Called at the end of every drain task to terminate the lane if it has been shut down and to notify
+     * threads waiting for quiescence.
+     */
+    private void drained() {
+        if(shutdown)
+            tryTerminate();
+        if(QuiescenceWaiters > 0)
+            signalIdle();
+    }
+
+    private static void signalIdle() {
+        synchronized (IdleMonitor) {
+            IdleEpoch++;
+            IdleMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Terminate the lane if it is idle. May be called by the draining thread and the last submitter
+     * at the same time, of which only one may terminate the lane.
+     */
+    private void tryTerminate() {
+        synchronized (terminated) {
+            if(terminating || !isIdle())
+                return;
+            terminating = true;
+        }
+        // the lane stays idle as it is shut down, so that no lambda accesses the lane locals any more
+        disposeLaneLocals();
+        terminated.countDown();
+        if(watchdog != null)
+            watchdog.unwatch(this);
+        onTerminated();
+        if(QuiescenceWaiters > 0)
+            signalIdle();
+    }
+
+    /**
+     * Called once the lane has been shut down and has executed all pending lambdas, either by the thread
+     * that executed the last lambda or by the thread that completed the last enqueue. Subclasses owning
+     * resources release them here.
+     */
+    protected void onTerminated() {
+    }
+
+    /**
+     * Answer whether the lane has neither lambdas pending nor is executing any nor is being enqueued to.
+     * Lambdas to be executed inline are pending as well once a lane suspended while executing them. The
+     * inlined lambdas are only read after <tt>scheduled</tt> has been found reset by the drain task that
+     * added them.
+     */
+    boolean isIdle() {
+        return submitters.get() == 0 && !scheduled.get() && mailbox.isEmpty() && (inlined == null || inlined.isEmpty());
+    }
+
+    /**
+     * Answer a number that changes whenever the lane has started executing lambdas.
+     */
+    long activityStamp() {
+        return drainCount;
+    }
+
+    /**
+     * Stop accepting lambdas. Lambdas enqueued before are still executed, after which the lane is
+     * terminated. Lambdas run on the lane afterwards are not enqueued and <code>run()</code> answers
+     * <code>EnqueueStatus.SHUT_DOWN</code>, and Handbacks run on it fail. The <code>LaneExecutor</code> of the
+     * lane is not shut down as it may be shared with other lanes. A suspended lane is only terminated once
+     * it is resumed and has executed its pending lambdas.
+     */
+    public void shutdown() {
+        checkSupported("shutdown");
+        if(shutdown)
+            return;
+        shutdown = true;
+        tryTerminate();
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Answer whether the lane has been shut down and has executed all lambdas enqueued before.
+     *
+     * @return true if the lane is terminated
+     */
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    /**
+     * Wait till the lane has been shut down and all lambdas enqueued before have been executed.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of <tt>timeout</tt>
+     * @return true if the lane terminated, false if the timeout elapsed before
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    /**
+     * Wait till none of the given lanes has any lambdas pending or executing. As lambdas executed on one
+     * lane may enqueue lambdas on another one, the lanes are checked twice in a row, and only if no lane
+     * has started executing lambdas between the two checks the lanes are quiescent. Waiting threads are
+     * woken up whenever a drain task ends instead of polling. Lambdas held back by a timer, e.g. by
+     * <code>runAfter()</code>, are not taken into account. A lane suspended with lambdas pending is not
+     * quiescent, so that this method waits till the timeout elapses unless the lane is resumed.
+     *
+     * @param lanes the lanes to wait for
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of <tt>timeout</tt>
+     * @return true if the lanes became quiescent, false if the timeout elapsed before
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static boolean awaitQuiescence(Collection<? extends CoLane> lanes, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (IdleMonitor) {
+            QuiescenceWaiters++;
+        }
+        try {
+            while(true) {
+                long epoch;
+                synchronized (IdleMonitor) {
+                    epoch = IdleEpoch;
+                }
+                if(isQuiescent(lanes))
+                    return true;
+                synchronized (IdleMonitor) {
+                    while(IdleEpoch == epoch) {
+                        long remaining = deadline - System.nanoTime();
+                        if(remaining <= 0)
+                            return false;
+                        TimeUnit.NANOSECONDS.timedWait(IdleMonitor, remaining);
+                    }
+                }
+            }
+        }
+        finally {
+            synchronized (IdleMonitor) {
+                QuiescenceWaiters--;
+            }
+        }
+    }
+
+    private static boolean isQuiescent(Collection<? extends CoLane> lanes) {
+        long[] stamps = new long[lanes.size()];
+        int i = 0;
+        for(CoLane lane : lanes) {
+            stamps[i++] = lane.activityStamp();
+            if(!lane.isIdle())
+                return false;
+        }
+        i = 0;
+        for(CoLane lane : lanes) {
+            if(lane.activityStamp() != stamps[i++] || !lane.isIdle())
+                return false;
+        }
+        return true;
     }
 
-    public void runAfter(long duration, TimeUnit unit, Runnable runnable) {
-        queue.executeAfter(duration, unit, runnable);
+    /**
+     * Execute the next lambda taken from the mailbox, timed if metrics are enabled and published for the
+     * watchdog if the lane is watched.
+     */
+    private void executeNext(Runnable runnable) {
+        if(watchdog == null) {
+            if(metrics == null)
+                execute(runnable);
+            else
+                executeTimed(runnable);
+            return;
+        }
+        long sequence = runningSequence;
+        runningTask = runnable;
+        runningThread = Thread.currentThread();
+        runningSince = System.nanoTime();
+        RunningSequenceUpdater.lazySet(this, sequence + 1);
+        try {
+            if(metrics == null)
+                execute(runnable);
+            else
+                executeTimed(runnable);
+        }
+        finally {
+            runningTask = null;
+            RunningSequenceUpdater.lazySet(this, sequence + 2);
+        }
+    }
+
+    /**
+     * Called by the watchdog thread to check whether the lambda being executed has exceeded the
+     * threshold and has not yet been reported.
+     *
+     * @return the stall to be reported or null
+     */
+    LaneStall checkStalled(long thresholdNanos) {
+        long sequence = runningSequence;
+        if((sequence & 1) == 0 || sequence == stalledSequence)
+            return null;
+        Runnable task = runningTask;
+        Thread thread = runningThread;
+        long elapsedNanos = System.nanoTime() - runningSince;
+        if(elapsedNanos < thresholdNanos || task == null || thread == null)
+            return null;
+        StackTraceElement[] stackTrace = thread.getStackTrace();
+        // the lambda has completed while the stack trace was taken
+        if(runningSequence != sequence)
+            return null;
+        stalledSequence = sequence;
+        stallCount.incrementAndGet();
+        if(metrics != null)
+            metrics.recordStall();
+        if(task instanceof TimedRunnable)
+            task = ((TimedRunnable) task).runnable;
+        Throwable callSite = task instanceof CallSiteRunnable ? ((CallSiteRunnable) task).callSite : null;
+        return new LaneStall(this, elapsedNanos, thread, stackTrace, callSite);
+    }
+
+    private boolean budgetUsedUp(int executed, long startTime) {
+        if(executed >= maxTasksPerTurn)
+            return true;
+        return maxNanosPerTurn != Long.MAX_VALUE && System.nanoTime() - startTime >= maxNanosPerTurn;
+    }
+
+    /**
+     * Execute a single lambda. Exceptions are passed on to the uncaught exception handler of the
+     * current thread as done by HawtDispatch so that a failing lambda does not stop the lane.
+     */
+    protected final void execute(Runnable runnable) {
+        try {
+            runnable.run();
+        }
+        catch (Throwable e) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    private void executeTimed(Runnable runnable) {
+        if(!(runnable instanceof TimedRunnable)) {
+            execute(runnable);
+            return;
+        }
+        TimedRunnable timedRunnable = (TimedRunnable) runnable;
+        long startTime = System.nanoTime();
+        execute(timedRunnable.runnable);
+        metrics.recordExecution(timedRunnable.enqueueTime, startTime, System.nanoTime(), timedRunnable.priority);
     }
 
     public void sender(Signature sender) {
@@ -86,6 +992,7 @@ public class CoLane {
     }
 
     public <T extends CoReceiver> Signature<T> sender(Class<T> senderClass) {
+        Signature<?> sender = sender();
         if(sender.getActiveObjectClass().isAssignableFrom(senderClass)) {
             return (Signature<T>) sender;
         }
@@ -97,14 +1004,493 @@ public class CoLane {
     }
 
     public void suspend() {
-        queue.suspend();
+        checkSupported("suspend");
+        if(suspended.incrementAndGet() == 1 && metrics != null)
+            metrics.recordSuspendChanged();
     }
 
     public void resume() {
-        queue.resume();
+        checkSupported("suspend");
+        if(suspended.decrementAndGet() == 0) {
+            if(metrics != null)
+                metrics.recordSuspendChanged();
+            schedule();
+        }
     }
 
     public boolean isSuspended() {
-        return queue.isSuspended();
+        return suspended.get() > 0;
+    }
+
+    /**
+     * Replace the mailbox of the lane. Throws an IllegalStateException if lambdas have already been
+     * enqueued on the lane.
+     *
+     * @param mailbox the mailbox the lane stores its pending lambdas in
+     * @return this lane for convenience
+     */
+    public CoLane mailbox(Mailbox mailbox) {
+        if(mailbox == null)
+            throw new NullPointerException("mailbox null");
+        checkSupported("mailbox");
+        checkNotStarted();
+        this.mailbox = mailbox;
+        return this;
+    }
+
+    /**
+     * Limit the number of pending lambdas of the lane to <tt>capacity</tt>. Throws an IllegalStateException
+     * if lambdas have already been enqueued on the lane.
+     *
+     * @param capacity the maximum number of pending lambdas
+     * @param overflowPolicy what to do with lambdas enqueued while the mailbox is full
+     * @return this lane for convenience
+     */
+    public CoLane mailboxCapacity(int capacity, OverflowPolicy overflowPolicy) {
+        return mailbox(new BoundedMailbox(capacity, overflowPolicy));
+    }
+
+    /**
+     * Keep the pending lambdas of the lane in a <code>RingBufferMailbox</code> of <tt>capacity</tt> slots
+     * allocated up front, so that enqueuing a lambda allocates no queue node. Throws an IllegalStateException
+     * if lambdas have already been enqueued on the lane.
+     *
+     * @param capacity the number of slots, which must be a power of two
+     * @param overflowPolicy what to do with lambdas enqueued while the mailbox is full, which must not be
+     *                       <code>OverflowPolicy.DROP_OLDEST</code>
+     * @return this lane for convenience
+     */
+    public CoLane ringBuffer(int capacity, OverflowPolicy overflowPolicy) {
+        return mailbox(new RingBufferMailbox(capacity, overflowPolicy));
+    }
+
+    /**
+     * Same as <code>priorities(priorityCount, PriorityMailbox.DefaultMaxBypassed)</code>.
+     *
+     * @param priorityCount the number of priorities including the normal priority 0
+     * @return this lane for convenience
+     */
+    public CoLane priorities(int priorityCount) {
+        return priorities(priorityCount, PriorityMailbox.DefaultMaxBypassed);
+    }
+
+    /**
+     * Give the lane a <code>PriorityMailbox</code> with <tt>priorityCount</tt> priorities, so that lambdas
+     * can be enqueued with <code>run(runnable, priority)</code> and <code>runUrgent()</code>. So that lambdas
+     * of lower priorities are not starved, at most <tt>maxBypassed</tt> lambdas in a row are executed ahead
+     * of pending lambdas of lower priorities. Throws an IllegalStateException if lambdas have already been
+     * enqueued on the lane.
+     *
+     * @param priorityCount the number of priorities including the normal priority 0
+     * @param maxBypassed the maximum number of lambdas executed in a row ahead of lower priorities
+     * @return this lane for convenience
+     */
+    public CoLane priorities(int priorityCount, int maxBypassed) {
+        mailbox(new PriorityMailbox(priorityCount, maxBypassed));
+        if(metrics != null)
+            metrics = createMetrics();
+        return this;
+    }
+
+    /**
+     * Answer the number of priorities of the lane, which is 1 unless the lane has been configured
+     * with <code>priorities()</code>.
+     *
+     * @return the number of priorities
+     */
+    public int getPriorityCount() {
+        Mailbox mailbox = this.mailbox;
+        if(mailbox instanceof PriorityMailbox)
+            return ((PriorityMailbox) mailbox).getPriorityCount();
+        return 1;
+    }
+
+    /**
+     * Record the queueing delay and the service time of every lambda as well as the time the lane
+     * is suspended. Throws an IllegalStateException if lambdas have already been enqueued on the lane.
+     * Metrics are disabled by default, in which case the lane does not take any timestamps.
+     *
+     * @return this lane for convenience
+     */
+    public CoLane enableMetrics() {
+        checkSupported("metrics");
+        checkNotStarted();
+        if(metrics == null)
+            metrics = createMetrics();
+        return this;
+    }
+
+    private LaneMetrics createMetrics() {
+        return new LaneMetrics(label, this::getQueueDepth, this::isSuspended, getPriorityCount(), this::getQueueDepth);
+    }
+
+    /**
+     * Answer the metrics of the lane.
+     *
+     * @return the metrics or null if metrics have not been enabled
+     */
+    public LaneMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Execute lambdas that are run on the lane by a lambda executing on the same lane right after the
+     * current lambda without enqueuing them in the mailbox. This is only done while the mailbox is
+     * empty, so that lambdas already enqueued are still executed first. After <tt>maxDepth</tt> inlined
+     * lambdas in a row the next one is enqueued as usual to give lambdas enqueued in the meantime a
+     * chance. Throws an IllegalStateException if lambdas have already been enqueued on the lane.
+     *
+     * @param maxDepth the maximum number of lambdas executed inline in a row, 0 disables inlining
+     * @return this lane for convenience
+     */
+    public CoLane runInlineIfCurrent(int maxDepth) {
+        if(maxDepth < 0)
+            throw new IllegalArgumentException("maxDepth must not be negative");
+        checkSupported("inline execution");
+        checkNotStarted();
+        maxInlineDepth = maxDepth;
+        if(inlined == null)
+            inlined = new ArrayDeque<>();
+        return this;
+    }
+
+    /**
+     * Same as <code>drainBudget(maxTasks, Long.MAX_VALUE, TimeUnit.NANOSECONDS)</code>.
+     *
+     * @param maxTasks the maximum number of lambdas executed per turn
+     * @return this lane for convenience
+     */
+    public CoLane drainBudget(int maxTasks) {
+        return drainBudget(maxTasks, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Limit the number of lambdas a drain task of the lane executes and the time it spends executing them
+     * before it hands the thread back to the executor, whichever is reached first. If lambdas are still
+     * pending then the lane is scheduled again behind the lanes that are already waiting for a thread, so
+     * that a lane with a large backlog cannot hog a thread of the executor while other lanes wait. The
+     * budget is checked after every lambda, so that at least one lambda is executed per turn and a turn may
+     * take longer than <tt>maxTime</tt> by the time of the last lambda. Without a drain budget, which is the
+     * default, a drain task executes lambdas till the mailbox is empty. Throws an IllegalStateException if
+     * lambdas have already been enqueued on the lane.
+     *
+     * @param maxTasks the maximum number of lambdas executed per turn
+     * @param maxTime the maximum time spent executing lambdas per turn
+     * @param unit the time unit of <tt>maxTime</tt>
+     * @return this lane for convenience
+     */
+    public CoLane drainBudget(int maxTasks, long maxTime, TimeUnit unit) {
+        if(maxTasks <= 0)
+            throw new IllegalArgumentException("maxTasks must be positive");
+        if(maxTime <= 0)
+            throw new IllegalArgumentException("maxTime must be positive");
+        checkSupported("drain budget");
+        checkNotStarted();
+        budgetTasks = maxTasks;
+        budgetNanos = unit.toNanos(maxTime);
+        updateTurnBudget();
+        return this;
+    }
+
+    /**
+     * Multiply the drain budget of the lane by <tt>weight</tt>, so that lanes sharing the threads of an
+     * executor get turns of a length proportional to their weights and thus a share of the threads
+     * proportional to their weights while they all have lambdas pending. Only has an effect in combination
+     * with <code>drainBudget()</code>. The default weight is 1. Throws an IllegalStateException if lambdas
+     * have already been enqueued on the lane.
+     *
+     * @param weight the factor the drain budget is multiplied by
+     * @return this lane for convenience
+     */
+    public CoLane weight(int weight) {
+        if(weight <= 0)
+            throw new IllegalArgumentException("weight must be positive");
+        checkSupported("weight");
+        checkNotStarted();
+        this.weight = weight;
+        updateTurnBudget();
+        return this;
+    }
+
+    private void updateTurnBudget() {
+        maxTasksPerTurn = budgetTasks == Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) Math.min(Integer.MAX_VALUE, (long) budgetTasks * weight);
+        maxNanosPerTurn = budgetNanos == Long.MAX_VALUE || budgetNanos > Long.MAX_VALUE / weight ? Long.MAX_VALUE : budgetNanos * weight;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Answer the number of times a drain task of the lane handed the thread back to the executor as the
+     * drain budget was used up while lambdas were still pending.
+     *
+     * @return the number of turns ended by the drain budget
+     */
+    public long getYieldCount() {
+        return yieldCount;
+    }
+
+    /**
+     * Let the given watchdog report lambdas that execute on the lane for longer than its threshold.
+     * Throws an IllegalStateException if lambdas have already been enqueued on the lane.
+     *
+     * @param watchdog the watchdog to watch the lane
+     * @return this lane for convenience
+     */
+    public CoLane watchdog(LaneWatchdog watchdog) {
+        if(watchdog == null)
+            throw new NullPointerException("watchdog null");
+        checkSupported("watchdog");
+        checkNotStarted();
+        if(this.watchdog != null)
+            this.watchdog.unwatch(this);
+        this.watchdog = watchdog;
+        watchdog.watch(this);
+        return this;
+    }
+
+    public LaneWatchdog getWatchdog() {
+        return watchdog;
+    }
+
+    /**
+     * Remember the call site every lambda was enqueued from, which a <code>LaneWatchdog</code> reports
+     * when the lambda stalls. This takes a stack trace per lambda and is meant for finding slow lambdas
+     * rather than for production use. Throws an IllegalStateException if lambdas have already been
+     * enqueued on the lane.
+     *
+     * @return this lane for convenience
+     */
+    public CoLane captureCallSites() {
+        checkSupported("call site capturing");
+        checkNotStarted();
+        captureCallSites = true;
+        return this;
+    }
+
+    /**
+     * Answer the number of lambdas the watchdog of the lane has reported as stalled.
+     *
+     * @return the number of stalls
+     */
+    public long getStallCount() {
+        return stallCount.get();
+    }
+
+    /**
+     * Keep up to <tt>capacity</tt> Handbacks obtained with <code>getPooledHandback()</code> for reuse once
+     * they are done, so that requests sent through them do not allocate new Handbacks. Throws an
+     * IllegalStateException if lambdas have already been enqueued on the lane.
+     *
+     * @param capacity the maximum number of Handbacks kept for reuse
+     * @return this lane for convenience
+     */
+    public CoLane poolHandbacks(int capacity) {
+        checkSupported("Handback pooling");
+        checkNotStarted();
+        handbackPool = new HandbackPool(capacity);
+        return this;
+    }
+
+    /**
+     * Answer the value of the lane local with the given index or null if it has not been set.
+     */
+    Object getLaneLocal(int index) {
+        Object[] slots = laneLocals;
+        return index < slots.length ? slots[index] : null;
+    }
+
+    /**
+     * Store the value of the given lane local, growing the slots if required.
+     */
+    void setLaneLocal(LaneLocal<?> laneLocal, Object value) {
+        int index = laneLocal.getIndex();
+        Object[] slots = laneLocals;
+        if(index >= slots.length) {
+            if(value == null)
+                return;
+            slots = laneLocals = Arrays.copyOf(slots, Math.max(index + 1, slots.length * 2));
+        }
+        if(value != null && laneLocal.hasDisposer()) {
+            LaneLocal<?>[] disposed = disposedLaneLocals;
+            if(disposed == null || index >= disposed.length)
+                disposed = disposedLaneLocals = disposed == null ? new LaneLocal<?>[slots.length] : Arrays.copyOf(disposed, slots.length);
+            // registered once per lane local no matter how often its value is replaced
+            disposed[index] = laneLocal;
+        }
+        slots[index] = value;
+    }
+
+    /**
+     * Dispose of the values of lane locals with a disposer still set and release all slots.
+     */
+    private void disposeLaneLocals() {
+        Object[] slots = laneLocals;
+        LaneLocal<?>[] disposed = disposedLaneLocals;
+        laneLocals = NoLaneLocals;
+        disposedLaneLocals = null;
+        if(disposed == null)
+            return;
+        for(int index = 0; index < disposed.length; index++) {
+            LaneLocal<?> laneLocal = disposed[index];
+            Object value = slots[index];
+            if(laneLocal == null || value == null)
+                continue;
+            slots[index] = null;
+            execute(() -> { laneLocal.dispose(value); });
+        }
+    }
+
+    protected final void checkNotStarted() {
+        if(started)
+            throw new IllegalStateException("lane already started");
+    }
+
+    /**
+     * Called by every setting of the lane, such as <code>mailbox()</code>, <code>suspend()</code> or
+     * <code>shutdown()</code>, before it changes anything. Subclasses that do not support a setting throw
+     * an UnsupportedOperationException here instead of overriding the setting.
+     *
+     * @param setting the name of the setting
+     */
+    protected void checkSupported(String setting) {
+    }
+
+    /**
+     * Answer the number of lambdas pending in the mailbox of the lane. The lambda currently
+     * executed is not included.
+     *
+     * @return the number of pending lambdas
+     */
+    public int getQueueDepth() {
+        return mailbox.size();
+    }
+
+    /**
+     * Answer the number of lambdas of the given <tt>priority</tt> pending in the mailbox of the lane.
+     *
+     * @param priority the priority from 0 to <code>getPriorityCount() - 1</code>
+     * @return the number of pending lambdas of the priority
+     */
+    public int getQueueDepth(int priority) {
+        Mailbox mailbox = this.mailbox;
+        if(mailbox instanceof PriorityMailbox)
+            return ((PriorityMailbox) mailbox).size(priority);
+        if(priority != 0)
+            throw new IllegalArgumentException("priority " + priority + " not between 0 and 0");
+        return mailbox.size();
+    }
+
+    /**
+     * Answer the number of Handbacks the lane discarded without executing them as their deadline had
+     * passed by the time the lane got to them.
+     *
+     * @return the number of expired Handbacks dropped
+     */
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    void droppedExpired() {
+        expiredCount.incrementAndGet();
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public LaneExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Wraps a lambda run with <code>runCoalesced()</code>. The wrapped lambda can be replaced till the
+     * lane starts it, which takes it out atomically.
+     */
+    private static final class CoalescedRunnable implements Runnable {
+
+        private static final AtomicReferenceFieldUpdater<CoalescedRunnable, Runnable> RunnableUpdater =
+                AtomicReferenceFieldUpdater.newUpdater(CoalescedRunnable.class, Runnable.class, "runnable");
+
+        private final Object key;
+        private final ConcurrentHashMap<Object, CoalescedRunnable> pending;
+
+        /**
+         * The lambda to be executed or null once the lane has started it.
+         */
+        private volatile Runnable runnable;
+
+        private CoalescedRunnable(Object key, Runnable runnable, ConcurrentHashMap<Object, CoalescedRunnable> pending) {
+            this.key = key;
+            this.runnable = runnable;
+            this.pending = pending;
+        }
+
+        private boolean replace(Runnable replacement) {
+            while(true) {
+                Runnable current = runnable;
+                if(current == null)
+                    return false;
+                if(RunnableUpdater.compareAndSet(this, current, replacement))
+                    return true;
+            }
+        }
+
+        @Override
+        public void run() {
+            Runnable current = RunnableUpdater.getAndSet(this, null);
+            pending.remove(key, this);
+            if(current != null)
+                current.run();
+        }
+    }
+
+    /**
+     * Wraps a lambda enqueued on a lane that captures call sites to remember where it was enqueued from.
+     */
+    private static final class CallSiteRunnable implements Discardable {
+
+        private final Runnable runnable;
+        private final Throwable callSite = new Throwable("call site");
+
+        private CallSiteRunnable(Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            runnable.run();
+        }
+
+        @Override
+        public void discarded() {
+            Discardable.discard(runnable);
+        }
+    }
+
+    /**
+     * Wraps a lambda enqueued on a lane with metrics enabled to remember the time it was enqueued.
+     */
+    private static final class TimedRunnable implements Discardable {
+
+        private final Runnable runnable;
+        private final int priority;
+        private final long enqueueTime = System.nanoTime();
+
+        private TimedRunnable(Runnable runnable, int priority) {
+            this.runnable = runnable;
+            this.priority = priority;
+        }
+
+        @Override
+        public void run() {
+            runnable.run();
+        }
+
+        @Override
+        public void discarded() {
+            Discardable.discard(runnable);
+        }
     }
 }
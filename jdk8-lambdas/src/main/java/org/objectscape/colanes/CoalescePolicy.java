@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+/**
+ * Defines what <code>CoLane.runCoalesced()</code> does with a lambda if a lambda with the same key is
+ * still pending on the lane.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public enum CoalescePolicy {
+
+    /**
+     * Execute the new lambda instead of the pending one, which keeps the position of the pending one
+     * in the mailbox. Used when only the latest request matters, e.g. to recompute a value.
+     */
+    REPLACE,
+
+    /**
+     * Drop the new lambda and keep the pending one.
+     */
+    KEEP_PENDING
+
+}
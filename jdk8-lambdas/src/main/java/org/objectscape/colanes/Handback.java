@@ -17,9 +17,16 @@
 
 package org.objectscape.colanes;
 
-import org.objectscape.colanes.util.CallerMustSynchronize;
+import org.objectscape.colanes.mailbox.EnqueueStatus;
+import org.objectscape.colanes.util.Signature;
+
+import java.util.concurrent.TimeUnit;
 
 /**
+ * Handback that executes a <code>Runnable</code> on its lane. A Handback obtained from
+ * <code>CoLane.getPooledHandback()</code> is returned to the pool of its lane as soon as it is done, or
+ * after its whenDone lambda has been executed if it has one, as well as when the lane does not accept it
+ * or its lambda throws an exception, and must not be used any more after <code>runAsync()</code> has been called.
  *
  * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
  *
@@ -28,24 +35,54 @@ public class Handback extends AbstractHandback {
 
     protected Runnable runnable;
 
+    /**
+     * The pool the Handback is returned to when done or null if it is not pooled.
+     */
+    private final HandbackPool pool;
+
+    /**
+     * Executes the whenDone lambda of a pooled Handback and then returns the Handback to its pool.
+     */
+    private final Runnable recyclingWhenDone;
+
     public Handback() {
         super();
+        pool = null;
+        recyclingWhenDone = null;
     }
 
     public Handback(boolean allowOverwrite) {
         super(allowOverwrite);
+        pool = null;
+        recyclingWhenDone = null;
     }
 
     public Handback(CoLane queue) {
         super(queue);
+        pool = null;
+        recyclingWhenDone = null;
     }
 
     public Handback(CoLane queue, boolean allowOverwrite) {
         super(queue, allowOverwrite);
+        pool = null;
+        recyclingWhenDone = null;
+    }
+
+    Handback(CoLane queue, HandbackPool pool) {
+        super(queue);
+        this.pool = pool;
+        this.recyclingWhenDone = () -> {
+            try {
+                whenDone.run();
+            }
+            finally {
+                recycle();
+            }
+        };
     }
 
     @Override
-    @CallerMustSynchronize
     protected void checkValidBeforeEnqueue() {
         super.checkValidBeforeEnqueue();
         if(runnable == null)
@@ -53,9 +90,7 @@ public class Handback extends AbstractHandback {
     }
 
     public Runnable runnable() {
-        synchronized (lock) {
-            return runnable;
-        }
+        return runnable;
     }
 
     public Handback callback(Runnable callback) {
@@ -64,16 +99,13 @@ public class Handback extends AbstractHandback {
     }
 
     public Handback runnable(Runnable runnable) {
-        synchronized (lock) {
-            checkNotAlreadyEnqueued();
-            checkAllowOverwrite(runnable, "runnable");
-            this.runnable = runnable;
-            return this;
-        }
+        checkNotAlreadyEnqueued();
+        checkAllowOverwrite(this.runnable, "runnable");
+        this.runnable = runnable;
+        return this;
     }
 
     @Override
-    @CallerMustSynchronize
     protected void invokeFunction() {
         runnable.run();
     }
@@ -88,6 +120,21 @@ public class Handback extends AbstractHandback {
         return this;
     }
 
+    public Handback deadline(long timeout, TimeUnit unit) {
+        setDeadline(timeout, unit);
+        return this;
+    }
+
+    public Handback replyTo(CoLane replyTo) {
+        setReplyTo(replyTo);
+        return this;
+    }
+
+    public Handback sender(Signature signature) {
+        setSender(signature);
+        return this;
+    }
+
     public Handback namedSender(CoReceiver coReceiver) {
         setNamedSender(coReceiver);
         return this;
@@ -97,4 +144,62 @@ public class Handback extends AbstractHandback {
         enqueue();
         return this;
     }
+
+    public boolean isPooled() {
+        return pool != null;
+    }
+
+    @Override
+    protected void invokeWhenDone() {
+        if(pool == null) {
+            super.invokeWhenDone();
+            return;
+        }
+        if(whenDone == null)
+            recycle();
+        else
+            deliverWhenDone(recyclingWhenDone);
+    }
+
+    /**
+     * Cancel the Handback. Pooled Handbacks cannot be cancelled, as they may already have been reused
+     * for another request once <code>runAsync()</code> has been called.
+     *
+     * @return true if the Handback was cancelled, false if it was already done or cancelled or is pooled
+     */
+    @Override
+    public boolean cancel() {
+        if(pool != null)
+            return false;
+        return super.cancel();
+    }
+
+    @Override
+    protected void expired() {
+        if(pool != null)
+            recycle();
+    }
+
+    @Override
+    protected void terminatedExceptionally() {
+        if(pool != null)
+            recycle();
+    }
+
+    @Override
+    protected void notEnqueued(EnqueueStatus status) {
+        if(pool != null)
+            recycle();
+    }
+
+    private void recycle() {
+        runnable = null;
+        callback = null;
+        whenDone = null;
+        sender = null;
+        replyTo = null;
+        clearDeadline();
+        resetState();
+        pool.release(this);
+    }
 }
@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import org.objectscape.colanes.mailbox.EnqueueStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects Handbacks and enqueues them all at once when <code>runAsync()</code> is called. The Handbacks
+ * of every lane are passed to <code>CoLane.runAll()</code> so that the lane is updated and scheduled only
+ * once. Handbacks of the same lane are executed in the order they were added to the batch.
+ *
+ * A <code>HandbackBatch</code> is meant to be filled and run by a single thread. Like a Handback it
+ * can only be run once.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class HandbackBatch {
+
+    private final Map<CoLane, List<AbstractHandback>> handbacksByLane = new LinkedHashMap<>();
+    private boolean enqueued = false;
+
+    public HandbackBatch add(AbstractHandback handback) {
+        checkNotAlreadyEnqueued();
+        CoLane lane = handback.lane();
+        if(lane == null)
+            throw new NullPointerException("handback not attached to a lane");
+        List<AbstractHandback> handbacks = handbacksByLane.get(lane);
+        if(handbacks == null) {
+            handbacks = new ArrayList<>();
+            handbacksByLane.put(lane, handbacks);
+        }
+        handbacks.add(handback);
+        return this;
+    }
+
+    /**
+     * Enqueue the Handbacks of the batch. All Handbacks are checked before the first one is enqueued, so
+     * that an invalid Handback leaves the whole batch unchanged. Handbacks a lane does not accept are done
+     * and fail with the status of the lambda that was not accepted. If a lane throws, e.g. a mailbox with
+     * <code>OverflowPolicy.FAIL</code>, the Handbacks of the other lanes are enqueued nevertheless before the
+     * first exception thrown is passed on.
+     *
+     * @return this batch for convenience
+     */
+    public HandbackBatch runAsync() {
+        checkNotAlreadyEnqueued();
+        Set<AbstractHandback> checked = Collections.newSetFromMap(new IdentityHashMap<>());
+        for(List<AbstractHandback> handbacks : handbacksByLane.values())
+            for(AbstractHandback handback : handbacks) {
+                if(!checked.add(handback))
+                    throw new IllegalStateException("handback added to batch more than once");
+                handback.checkEnqueueable();
+            }
+        enqueued = true;
+
+        RuntimeException failure = null;
+        for(Map.Entry<CoLane, List<AbstractHandback>> entry : handbacksByLane.entrySet()) {
+            List<AbstractHandback> handbacks = entry.getValue();
+            List<Runnable> runnables = new ArrayList<>(handbacks.size());
+            List<AbstractHandback> enqueuedHandbacks = new ArrayList<>(handbacks.size());
+            for(AbstractHandback handback : handbacks) {
+                Runnable runnable = handback.prepareEnqueue();
+                // cancelled handbacks are left out
+                if(runnable != null) {
+                    runnables.add(runnable);
+                    enqueuedHandbacks.add(handback);
+                }
+            }
+            if(runnables.isEmpty())
+                continue;
+
+            RuntimeException laneFailure = enqueue(entry.getKey(), runnables, enqueuedHandbacks);
+            if(failure == null)
+                failure = laneFailure;
+        }
+        if(failure != null)
+            throw failure;
+        return this;
+    }
+
+    /**
+     * Enqueue the lambdas on the lane in one go. Those the lane did not accept are enqueued one by one to
+     * learn the status of the first one not accepted, which the Handbacks left over are rejected with.
+     *
+     * @return the exception thrown by the lane or null if none was thrown
+     */
+    private RuntimeException enqueue(CoLane lane, List<Runnable> runnables, List<AbstractHandback> handbacks) {
+        int count;
+        RuntimeException failure = null;
+        try {
+            count = lane.runAll(runnables);
+        }
+        catch (RuntimeException e) {
+            // lambdas already in the mailbox are skipped by the lane, as their Handbacks are done
+            count = 0;
+            failure = e;
+        }
+        EnqueueStatus status = failure != null ? EnqueueStatus.REJECTED : EnqueueStatus.ENQUEUED;
+        for(int i = count; i < handbacks.size(); i++) {
+            if(status.isEnqueued()) {
+                try {
+                    status = lane.run(runnables.get(i));
+                }
+                catch (RuntimeException e) {
+                    failure = e;
+                    status = EnqueueStatus.REJECTED;
+                }
+            }
+            if(!status.isEnqueued())
+                handbacks.get(i).rejected(status);
+        }
+        return failure;
+    }
+
+    public int size() {
+        int size = 0;
+        for(List<AbstractHandback> handbacks : handbacksByLane.values())
+            size += handbacks.size();
+        return size;
+    }
+
+    public boolean isEnqueued() {
+        return enqueued;
+    }
+
+    private void checkNotAlreadyEnqueued() {
+        if(enqueued)
+            throw new IllegalStateException("batch already enqueued");
+    }
+
+}
@@ -17,10 +17,12 @@
 
 package org.objectscape.colanes;
 
-import org.objectscape.colanes.util.CallerMustSynchronize;
+import org.objectscape.colanes.mailbox.EnqueueStatus;
+import org.objectscape.colanes.util.Signature;
 
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -31,7 +33,7 @@ import java.util.function.Supplier;
  */
 public class HandbackFutureCompletion<T> extends AbstractHandback
 {
-    private CompletableFuture<T> future = new CompletableFuture<>();
+    private final CompletableFuture<T> future = new HandbackFuture();
     private Supplier<T> supplier = null;
     private Consumer<T> callbackConsumer = null;
     private Consumer<T> whenDoneConsumer = null;
@@ -53,21 +55,17 @@ public class HandbackFutureCompletion<T> extends AbstractHandback
     }
 
     @Override
-    @CallerMustSynchronize
     protected void checkValidBeforeEnqueue() {
         super.checkValidBeforeEnqueue();
         if(supplier == null)
             throw new NullPointerException("supplier null");
-        checkNotAlreadyEnqueued();
     }
 
     public HandbackFutureCompletion<T> supplier(Supplier<T> supplier) {
-        synchronized (lock) {
-            checkNotAlreadyEnqueued();
-            checkAllowOverwrite(supplier, "supplier");
-            this.supplier = supplier;
-            return this;
-        }
+        checkNotAlreadyEnqueued();
+        checkAllowOverwrite(this.supplier, "supplier");
+        this.supplier = supplier;
+        return this;
     }
 
     public HandbackFutureCompletion<T> callback(Runnable callback) {
@@ -81,37 +79,37 @@ public class HandbackFutureCompletion<T> extends AbstractHandback
     }
 
     public HandbackFutureCompletion<T> callback(Consumer<T> callback) {
-        synchronized (lock) {
-            checkNotAlreadyEnqueued();
-            checkAllowOverwrite(callbackConsumer, "callbackConsumer");
-            this.callbackConsumer = callback;
-        }
+        checkNotAlreadyEnqueued();
+        checkAllowOverwrite(callbackConsumer, "callbackConsumer");
+        this.callbackConsumer = callback;
         return this;
     }
 
     public HandbackFutureCompletion<T> whenDone(Consumer<T> whenDone) {
-        synchronized (lock) {
-            checkNotAlreadyEnqueued();
-            checkAllowOverwrite(whenDoneConsumer, "whenDoneConsumer");
-            this.whenDoneConsumer = whenDone;
-        }
+        checkNotAlreadyEnqueued();
+        checkAllowOverwrite(whenDoneConsumer, "whenDoneConsumer");
+        this.whenDoneConsumer = whenDone;
         return this;
     }
 
     public CompletableFuture<T> future() {
-        synchronized (lock) {
-            return future;
-        }
+        return future;
     }
 
-    @CallerMustSynchronize
     @Override
     protected void invokeFunction() {
         // future can be relied on never to be null
-        future.complete(supplier.get());
+        T result;
+        try {
+            result = supplier.get();
+        }
+        catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        }
+        future.complete(result);
     }
 
-    @CallerMustSynchronize
     @Override
     protected void invokeCallback()
     {
@@ -120,20 +118,10 @@ public class HandbackFutureCompletion<T> extends AbstractHandback
         if(callbackConsumer == null)
             return;
 
-        try {
-            callbackConsumer.accept(future().get());
-        }
-        catch (InterruptedException e) {
-            // will never be thrown as the result has already been setAndGet in the
-            // future when the callback is called.
-        }
-        catch (ExecutionException e) {
-            // will never be thrown as the result has already been setAndGet in the
-            // future when the callback is called.
-        }
+        // the result has already been set in the future when the callback is called
+        callbackConsumer.accept(future.join());
     }
 
-    @CallerMustSynchronize
     @Override
     protected void invokeWhenDone()
     {
@@ -142,15 +130,23 @@ public class HandbackFutureCompletion<T> extends AbstractHandback
         if(whenDoneConsumer == null)
             return;
 
-        lane.run(() ->
-                {
-                    try {
-                        whenDoneConsumer.accept(future.get());
-                    } catch (Exception e) {
-                        // will never be thrown as the result has already been setAndGet in the
-                        // future when whenDone is called.
-                    }
-                });
+        // the result has already been set in the future when whenDone is called
+        deliverWhenDone(() -> { whenDoneConsumer.accept(future.join()); });
+    }
+
+    @Override
+    protected void notEnqueued(EnqueueStatus status) {
+        future.completeExceptionally(notEnqueuedException(status));
+    }
+
+    @Override
+    protected void cancelled() {
+        future.cancel(false);
+    }
+
+    @Override
+    protected void expired() {
+        future.completeExceptionally(new TimeoutException("deadline passed before lambda was started"));
     }
 
     public HandbackFutureCompletion<T> runAsync()
@@ -171,9 +167,38 @@ public class HandbackFutureCompletion<T> extends AbstractHandback
         return this;
     }
 
+    public HandbackFutureCompletion<T> deadline(long timeout, TimeUnit unit) {
+        setDeadline(timeout, unit);
+        return this;
+    }
+
+    public HandbackFutureCompletion<T> replyTo(CoLane replyTo) {
+        setReplyTo(replyTo);
+        return this;
+    }
+
+    public HandbackFutureCompletion<T> sender(Signature signature) {
+        setSender(signature);
+        return this;
+    }
+
     public HandbackFutureCompletion<T> namedSender(CoReceiver coReceiver) {
         setNamedSender(coReceiver);
         return this;
     }
 
+    /**
+     * Future that cancels the Handback when it is cancelled.
+     */
+    private final class HandbackFuture extends CompletableFuture<T> {
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if(cancelled)
+                HandbackFutureCompletion.this.cancel();
+            return cancelled;
+        }
+    }
+
 }
@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded pool of recycled Handbacks of a lane. Handbacks are taken from the pool by any thread
+ * sending a request and are put back by the thread that executed them, so that the pool is an array
+ * of slots that are taken and filled atomically, which unlike a linked structure does not allocate.
+ * Taking and putting back each follow a cursor round the array like in a ring buffer, so that the
+ * slot looked at first is usually the right one. The cursors are mere hints that racing threads may
+ * overwrite, which costs at most some more probing. The number of slots probed is bounded so that an
+ * empty or a full pool is noticed quickly.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+class HandbackPool {
+
+    private static final int MaxProbes = 16;
+
+    private final AtomicReferenceArray<Handback> slots;
+    private final int probes;
+
+    /**
+     * Index of the slot to be looked at first when taking a Handback from the pool.
+     */
+    private int takeIndex = 0;
+
+    /**
+     * Index of the slot to be looked at first when putting a Handback back into the pool.
+     */
+    private int putIndex = 0;
+
+    HandbackPool(int capacity) {
+        super();
+        if(capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+        slots = new AtomicReferenceArray<>(capacity);
+        probes = Math.min(capacity, MaxProbes);
+    }
+
+    /**
+     * Take a Handback from the pool.
+     *
+     * @return a recycled Handback or null if none was found
+     */
+    Handback acquire() {
+        int capacity = slots.length();
+        int index = takeIndex;
+        for(int i = 0; i < probes; i++) {
+            if(index >= capacity)
+                index = 0;
+            if(slots.get(index) != null) {
+                Handback handback = slots.getAndSet(index, null);
+                if(handback != null) {
+                    takeIndex = index + 1;
+                    return handback;
+                }
+            }
+            index++;
+        }
+        return null;
+    }
+
+    /**
+     * Put a Handback back into the pool.
+     *
+     * @param handback the Handback to be recycled
+     * @return false if no free slot was found and the Handback is left to the garbage collector
+     */
+    boolean release(Handback handback) {
+        int capacity = slots.length();
+        int index = putIndex;
+        for(int i = 0; i < probes; i++) {
+            if(index >= capacity)
+                index = 0;
+            if(slots.get(index) == null && slots.compareAndSet(index, null, handback)) {
+                putIndex = index + 1;
+                return true;
+            }
+            index++;
+        }
+        return false;
+    }
+
+    int getCapacity() {
+        return slots.length();
+    }
+
+}
@@ -0,0 +1,344 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import org.objectscape.colanes.mailbox.MailboxFullException;
+import org.objectscape.colanes.timer.HashedTimerWheel;
+import org.objectscape.colanes.timer.Timeout;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Sends the same request to several equivalent lanes, the replicas, and completes with the first result
+ * answered. The request is run on the first replica right away and on every further replica once the
+ * hedge delay has elapsed once more without a result, i.e. on the second replica after one hedge delay,
+ * on the third after two and so on. The delays are kept by the <code>HashedTimerWheel</code> also used by
+ * <code>CoLane.runAfter()</code>. Once a result has been answered the pending delays are cancelled and the
+ * request is skipped by replicas that have not yet started it. A replica that fails or does not accept the
+ * request makes the next replica be asked right away. The Handback fails only if all replicas have failed.
+ *
+ * Cancelling the Handback or its future cancels the pending delays as well, so that no further replica
+ * is asked, and the request is skipped by replicas that have not yet started it. With a deadline a replica
+ * that starts the request after the deadline has passed skips it, which counts as a failure of that replica,
+ * so that the Handback fails with a TimeoutException only if no other replica answers.
+ *
+ * The replica that answered first and the time it took are kept for later latency analysis. Like with
+ * other Handbacks the whenDone consumer is delivered to the lane the request was sent from. The supplier
+ * may be executed by several replicas concurrently and must therefore not modify shared state.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class HedgedHandback<T> {
+
+    private static final int Building = 0;
+    private static final int Enqueued = 1;
+
+    private static final int NoWinner = -1;
+
+    private static final AtomicIntegerFieldUpdater<HedgedHandback> StateUpdater = AtomicIntegerFieldUpdater.newUpdater(HedgedHandback.class, "state");
+    private static final AtomicIntegerFieldUpdater<HedgedHandback> WinnerUpdater = AtomicIntegerFieldUpdater.newUpdater(HedgedHandback.class, "winner");
+
+    private final CoLane[] replicas;
+
+    /**
+     * The pending delays after which the request is sent to the next replicas. Published element by
+     * element as the delays may elapse while later ones are still being scheduled.
+     */
+    private final AtomicReferenceArray<Timeout> hedges;
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+    private final AtomicInteger fired = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    private Supplier<T> supplier = null;
+    private Consumer<T> whenDoneConsumer = null;
+    private CoLane replyTo = null;
+    private long hedgeDelayNanos = 0;
+    private long timeoutNanos = 0;
+
+    private volatile int state = Building;
+
+    /**
+     * Index of the replica that answered first or <tt>NoWinner</tt>.
+     */
+    private volatile int winner = NoWinner;
+
+    private long startTime = 0;
+
+    /**
+     * Time from sending the request till the first result, published by completing the future.
+     */
+    private long latencyNanos = 0;
+
+    public HedgedHandback(CoLane... replicas) {
+        super();
+        if(replicas.length == 0)
+            throw new IllegalArgumentException("at least one replica required");
+        for(CoLane replica : replicas)
+            if(replica == null)
+                throw new NullPointerException("replica null");
+        this.replicas = replicas.clone();
+        this.hedges = new AtomicReferenceArray<>(replicas.length);
+    }
+
+    public HedgedHandback<T> supplier(Supplier<T> supplier) {
+        checkNotAlreadyEnqueued();
+        this.supplier = supplier;
+        return this;
+    }
+
+    /**
+     * Set the time to wait for a result before the request is sent to the next replica. With a delay
+     * of 0, which is the default, the request is sent to all replicas at once.
+     *
+     * @param delay the hedge delay
+     * @param unit the time unit of <tt>delay</tt>
+     * @return this Handback for convenience
+     */
+    public HedgedHandback<T> hedgeAfter(long delay, TimeUnit unit) {
+        checkNotAlreadyEnqueued();
+        if(delay < 0)
+            throw new IllegalArgumentException("delay must not be negative");
+        hedgeDelayNanos = unit.toNanos(delay);
+        return this;
+    }
+
+    /**
+     * Set the time after sending within which a replica must start the request. A replica starting it
+     * later skips it, which counts as a failure of that replica.
+     *
+     * @param timeout the time the request may wait to be started
+     * @param unit the time unit of <tt>timeout</tt>
+     * @return this Handback for convenience
+     */
+    public HedgedHandback<T> deadline(long timeout, TimeUnit unit) {
+        checkNotAlreadyEnqueued();
+        if(timeout <= 0)
+            throw new IllegalArgumentException("timeout must be positive");
+        timeoutNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    public HedgedHandback<T> whenDone(Consumer<T> whenDone) {
+        checkNotAlreadyEnqueued();
+        this.whenDoneConsumer = whenDone;
+        return this;
+    }
+
+    public HedgedHandback<T> replyTo(CoLane replyTo) {
+        checkNotAlreadyEnqueued();
+        this.replyTo = replyTo;
+        return this;
+    }
+
+    public HedgedHandback<T> runAsync() {
+        if(supplier == null)
+            throw new NullPointerException("supplier null");
+        if(!StateUpdater.compareAndSet(this, Building, Enqueued))
+            throw new IllegalStateException("lambda already enqueued");
+        if(replyTo == null)
+            replyTo = CoLane.current();
+        if(replyTo == null)
+            replyTo = replicas[0];
+        startTime = System.nanoTime();
+        // also when cancelled, failed or timed out, so that no further replica is asked
+        future.whenComplete((result, failure) -> { cancelHedges(); });
+
+        for(int i = 1; i < replicas.length && hedgeDelayNanos > 0 && !future.isDone(); i++) {
+            int replica = i;
+            hedges.set(i, HashedTimerWheel.getDefault().schedule(() -> { send(replica); }, hedgeDelayNanos * i, TimeUnit.NANOSECONDS));
+            // the future may have completed before the delay was published
+            if(future.isDone())
+                cancelHedges();
+        }
+        int sendNow = hedgeDelayNanos > 0 ? 1 : replicas.length;
+        for(int i = 0; i < sendNow; i++)
+            send(i);
+        return this;
+    }
+
+    public HedgedHandback<T> runAsyncWhenDone(Consumer<T> whenDoneConsumer) {
+        whenDone(whenDoneConsumer);
+        runAsync();
+        return this;
+    }
+
+    public CompletableFuture<T> future() {
+        return future;
+    }
+
+    /**
+     * Cancel the Handback, which cancels its future and the pending delays.
+     *
+     * @return true if the Handback was cancelled, false if it was already done
+     */
+    public boolean cancel() {
+        // unlike cancel() answers whether this call has completed the future
+        return future.completeExceptionally(new CancellationException());
+    }
+
+    public boolean isEnqueued() {
+        return state == Enqueued;
+    }
+
+    /**
+     * Answer whether a replica has answered, all replicas have failed or the Handback has been cancelled.
+     *
+     * @return true if the Handback is done
+     */
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    public boolean isCancelled() {
+        return future.isCancelled();
+    }
+
+    /**
+     * Answer the replica that answered first.
+     *
+     * @return the lane that answered first or null if no result has been answered yet
+     */
+    public CoLane getWinner() {
+        int index = winner;
+        return index == NoWinner ? null : replicas[index];
+    }
+
+    /**
+     * Answer the position of the replica that answered first among the replicas passed to the constructor.
+     *
+     * @return the index of the replica that answered first or -1 if no result has been answered yet
+     */
+    public int getWinnerIndex() {
+        return winner;
+    }
+
+    /**
+     * Answer the time from sending the request till the first result. Only valid once the future
+     * has completed normally.
+     *
+     * @param unit the time unit of the result
+     * @return the time till the first result
+     */
+    public long getLatency(TimeUnit unit) {
+        return unit.convert(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Answer the number of replicas the request has been sent to, which tells the overhead of hedging.
+     *
+     * @return the number of replicas the request was sent to
+     */
+    public int getFiredCount() {
+        return fired.get();
+    }
+
+    public int getReplicaCount() {
+        return replicas.length;
+    }
+
+    private void send(int replica) {
+        if(future.isDone())
+            return;
+        fired.incrementAndGet();
+        if(!replicas[replica].run(() -> { execute(replica); }).isEnqueued())
+            failed(new MailboxFullException("lambda not enqueued on replica " + replica));
+    }
+
+    /**
+     * Executed on a replica unless another replica has already answered.
+     */
+    private void execute(int replica) {
+        if(future.isDone())
+            return;
+        if(timeoutNanos > 0 && System.nanoTime() - startTime > timeoutNanos) {
+            // other replicas may have started in time and still answer
+            failed(new TimeoutException("deadline passed before lambda was started"));
+            return;
+        }
+        T result;
+        try {
+            result = supplier.get();
+        }
+        catch (RuntimeException | Error e) {
+            failed(e);
+            throw e;
+        }
+        completed(replica, result);
+    }
+
+    /**
+     * The winner is claimed before completing the future so that it is published together with the result,
+     * and released again if the future has been cancelled or failed in the meantime.
+     */
+    private void completed(int replica, T result) {
+        if(!WinnerUpdater.compareAndSet(this, NoWinner, replica))
+            return;
+        latencyNanos = System.nanoTime() - startTime;
+        if(!future.complete(result)) {
+            winner = NoWinner;
+            return;
+        }
+        if(whenDoneConsumer == null)
+            return;
+        Runnable whenDone = () -> { whenDoneConsumer.accept(result); };
+        // executed on the replica if the lane to reply to does not accept it, so that the reply is not lost
+        if(!replyTo.run(whenDone).isEnqueued())
+            whenDone.run();
+    }
+
+    /**
+     * Ask the next replica whose hedge delay has not yet elapsed right away or fail the Handback
+     * if all replicas have failed.
+     */
+    private void failed(Throwable failure) {
+        if(failed.incrementAndGet() == replicas.length) {
+            future.completeExceptionally(failure);
+            return;
+        }
+        for(int i = 1; i < hedges.length(); i++) {
+            Timeout hedge = hedges.get(i);
+            if(hedge != null && hedge.cancel()) {
+                send(i);
+                return;
+            }
+        }
+    }
+
+    private void cancelHedges() {
+        for(int i = 1; i < hedges.length(); i++) {
+            Timeout hedge = hedges.get(i);
+            if(hedge != null)
+                hedge.cancel();
+        }
+    }
+
+    private void checkNotAlreadyEnqueued() {
+        if(state != Building)
+            throw new IllegalStateException("lambda already enqueued");
+    }
+
+}
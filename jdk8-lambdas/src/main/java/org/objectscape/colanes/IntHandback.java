@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import org.objectscape.colanes.util.Signature;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Same as a <code>HandbackFutureCompletion&lt;Integer&gt;</code> for requests that answer an <tt>int</tt>,
+ * which is passed from the supplier to the callback and whenDone consumers and to the waiting threads
+ * without being boxed.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class IntHandback extends AbstractPrimitiveHandback
+{
+    private IntSupplier supplier = null;
+    private IntConsumer callbackConsumer = null;
+    private IntConsumer whenDoneConsumer = null;
+
+    /**
+     * The result, published by the volatile write in <code>completed()</code>.
+     */
+    private int result = 0;
+
+    public IntHandback() {
+        super();
+    }
+
+    public IntHandback(boolean allowOverwrite) {
+        super(allowOverwrite);
+    }
+
+    public IntHandback(CoLane queue) {
+        super(queue);
+    }
+
+    public IntHandback(CoLane queue, boolean allowOverwrite) {
+        super(queue, allowOverwrite);
+    }
+
+    @Override
+    protected void checkValidBeforeEnqueue() {
+        super.checkValidBeforeEnqueue();
+        if(supplier == null)
+            throw new NullPointerException("supplier null");
+    }
+
+    public IntHandback supplier(IntSupplier supplier) {
+        checkNotAlreadyEnqueued();
+        checkAllowOverwrite(this.supplier, "supplier");
+        this.supplier = supplier;
+        return this;
+    }
+
+    public IntHandback callback(Runnable callback) {
+        setCallback(callback);
+        return this;
+    }
+
+    public IntHandback whenDone(Runnable whenDone) {
+        setWhenDone(whenDone);
+        return this;
+    }
+
+    public IntHandback callback(IntConsumer callback) {
+        checkNotAlreadyEnqueued();
+        checkAllowOverwrite(callbackConsumer, "callbackConsumer");
+        this.callbackConsumer = callback;
+        return this;
+    }
+
+    public IntHandback whenDone(IntConsumer whenDone) {
+        checkNotAlreadyEnqueued();
+        checkAllowOverwrite(whenDoneConsumer, "whenDoneConsumer");
+        this.whenDoneConsumer = whenDone;
+        return this;
+    }
+
+    /**
+     * Wait for the result.
+     *
+     * @return the result
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException if the supplier threw an exception or the lambda was not enqueued
+     */
+    public int get() throws InterruptedException, ExecutionException {
+        await();
+        return result;
+    }
+
+    public int get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        await(timeout, unit);
+        return result;
+    }
+
+    @Override
+    protected void invokeFunction() {
+        try {
+            result = supplier.getAsInt();
+        }
+        catch (RuntimeException | Error e) {
+            failed(e);
+            throw e;
+        }
+        completed();
+    }
+
+    @Override
+    protected void invokeCallback()
+    {
+        super.invokeCallback();
+
+        if(callbackConsumer != null)
+            callbackConsumer.accept(result);
+    }
+
+    @Override
+    protected void invokeWhenDone()
+    {
+        super.invokeWhenDone();
+
+        if(whenDoneConsumer != null)
+            deliverWhenDone(() -> { whenDoneConsumer.accept(result); });
+    }
+
+    public IntHandback runAsync()
+    {
+        enqueue();
+        return this;
+    }
+
+    public IntHandback runAsyncWhenDone(IntConsumer whenDoneConsumer)
+    {
+        whenDone(whenDoneConsumer);
+        runAsync();
+        return this;
+    }
+
+    public IntHandback deadline(long timeout, TimeUnit unit) {
+        setDeadline(timeout, unit);
+        return this;
+    }
+
+    public IntHandback replyTo(CoLane replyTo) {
+        setReplyTo(replyTo);
+        return this;
+    }
+
+    public IntHandback sender(CoReceiver coReceiver) {
+        setSender(coReceiver);
+        return this;
+    }
+
+    public IntHandback sender(Signature signature) {
+        setSender(signature);
+        return this;
+    }
+
+    public IntHandback namedSender(CoReceiver coReceiver) {
+        setNamedSender(coReceiver);
+        return this;
+    }
+
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import org.objectscape.colanes.executor.LaneExecutor;
+import org.objectscape.colanes.mailbox.EnqueueStatus;
+import org.objectscape.colanes.registry.Registry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed number of lanes that lambdas are distributed over by a partition key. All lambdas
+ * run with the same key go to the same lane and are therefore executed in the order they were run,
+ * whereas lambdas with different keys may be executed in parallel on different lanes.
+ *
+ * The number of lanes can be changed with <code>resize()</code>. The lanes of the new size are created
+ * suspended and are resumed only after every old lane has executed the lambdas that were run on it
+ * before the resize, so that the order of the lambdas of a key is preserved although the key may be
+ * mapped to another lane afterwards.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class LaneGroup {
+
+    private final String name;
+    private final LaneExecutor executor;
+
+    /**
+     * The current lanes of the group. Replaced as a whole on <code>resize()</code>.
+     */
+    private volatile Generation generation = null;
+
+    public LaneGroup(String name, int size) {
+        this(name, size, Registry.getDefault().getLaneExecutor());
+    }
+
+    public LaneGroup(String name, int size, LaneExecutor executor) {
+        super();
+        if(name == null)
+            throw new NullPointerException("name null");
+        if(executor == null)
+            throw new NullPointerException("executor null");
+        this.name = name;
+        this.executor = executor;
+        this.generation = new Generation(newLanes(size, false));
+    }
+
+    /**
+     * Enqueue the <tt>runnable</tt> on the lane the <tt>key</tt> is mapped to.
+     *
+     * @param key the partition key, must not be null
+     * @param runnable the lambda to be executed
+     * @return the status telling whether the lambda was enqueued
+     */
+    public EnqueueStatus run(Object key, Runnable runnable) {
+        if(runnable == null)
+            throw new NullPointerException("runnable null");
+        int hash = spread(key.hashCode());
+        while(true) {
+            Generation generation = this.generation;
+            int index = generation.indexOf(hash);
+            AtomicInteger inFlight = generation.inFlight[index];
+            inFlight.incrementAndGet();
+            try {
+                // a lambda must not go to a retired lane once the resize has started handing over
+                if(!generation.retired)
+                    return generation.lanes[index].run(runnable);
+            }
+            finally {
+                if(inFlight.decrementAndGet() == 0 && generation.retired)
+                    generation.signalNoneInFlight();
+            }
+        }
+    }
+
+    /**
+     * Answer the lane lambdas with the given <tt>key</tt> are currently enqueued on.
+     *
+     * @param key the partition key, must not be null
+     * @return the lane of the key
+     */
+    public CoLane laneFor(Object key) {
+        Generation generation = this.generation;
+        return generation.lanes[generation.indexOf(spread(key.hashCode()))];
+    }
+
+    /**
+     * Change the number of lanes of the group. Lambdas run after this method has returned are
+     * enqueued on the new lanes, which only start executing them once all lambdas enqueued on the
+     * old lanes have been executed. The old lanes are shut down once they have been drained.
+     *
+     * @param size the new number of lanes
+     * @return future that is completed once the old lanes have been drained and the new lanes have been resumed
+     */
+    public synchronized CompletableFuture<Void> resize(int size) {
+        Generation oldGeneration = generation;
+        CompletableFuture<Void> handover = new CompletableFuture<>();
+        if(size == oldGeneration.lanes.length) {
+            handover.complete(null);
+            return handover;
+        }
+
+        CoLane[] newLanes = newLanes(size, true);
+        generation = new Generation(newLanes);
+        oldGeneration.retired = true;
+
+        // lambdas that made it past the retired check are enqueued before the markers below
+        oldGeneration.awaitNoneInFlight();
+
+        AtomicInteger remaining = new AtomicInteger(oldGeneration.lanes.length);
+        for(CoLane oldLane : oldGeneration.lanes) {
+            oldLane.run(() -> {
+                // no lambda is enqueued after the marker, so the lane terminates once the marker is done
+                oldLane.shutdown();
+                if(remaining.decrementAndGet() == 0) {
+                    for(CoLane newLane : newLanes)
+                        newLane.resume();
+                    handover.complete(null);
+                }
+            });
+        }
+        return handover;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return generation.lanes.length;
+    }
+
+    public List<CoLane> getLanes() {
+        return Collections.unmodifiableList(Arrays.asList(generation.lanes));
+    }
+
+    public LaneExecutor getExecutor() {
+        return executor;
+    }
+
+    private CoLane[] newLanes(int size, boolean suspended) {
+        if(size <= 0)
+            throw new IllegalArgumentException("size must be positive");
+        CoLane[] lanes = new CoLane[size];
+        for(int i = 0; i < size; i++) {
+            lanes[i] = new CoLane(name + "-" + i, executor);
+            if(suspended)
+                lanes[i].suspend();
+        }
+        return lanes;
+    }
+
+    /**
+     * Spread the higher bits of the hash code to the lower ones like <code>HashMap</code> does, as
+     * the lane is selected by the remainder of the hash code.
+     */
+    private static int spread(int hashCode) {
+        return hashCode ^ (hashCode >>> 16);
+    }
+
+    /**
+     * The lanes of the group between two resizes together with the number of threads that are
+     * currently enqueuing a lambda on each of them.
+     */
+    private static final class Generation {
+
+        private final CoLane[] lanes;
+        private final AtomicInteger[] inFlight;
+        private volatile boolean retired = false;
+
+        private Generation(CoLane[] lanes) {
+            this.lanes = lanes;
+            this.inFlight = new AtomicInteger[lanes.length];
+            for(int i = 0; i < lanes.length; i++)
+                inFlight[i] = new AtomicInteger();
+        }
+
+        private int indexOf(int hash) {
+            return Math.floorMod(hash, lanes.length);
+        }
+
+        /**
+         * Wait till no thread is enqueuing on the lanes of the generation any more once it has been retired.
+         * Submitters check <tt>retired</tt> after having decremented their count and take the monitor to
+         * notify, so that the last one of them always wakes up the waiting thread.
+         */
+        private synchronized void awaitNoneInFlight() {
+            boolean interrupted = false;
+            for(AtomicInteger count : inFlight) {
+                while(count.get() > 0) {
+                    try {
+                        wait();
+                    }
+                    catch (InterruptedException e) {
+                        // the handover cannot be abandoned half-way
+                        interrupted = true;
+                    }
+                }
+            }
+            if(interrupted)
+                Thread.currentThread().interrupt();
+        }
+
+        private synchronized void signalNoneInFlight() {
+            notifyAll();
+        }
+    }
+
+}
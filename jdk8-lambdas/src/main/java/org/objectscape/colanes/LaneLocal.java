@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Holds a value of its own for every lane, like a <code>ThreadLocal</code> does for every thread. As a lane
+ * may be drained by a different thread every time it is scheduled a <code>ThreadLocal</code> cannot be used
+ * for state kept per lane, such as scratch buffers or memo tables of a receiver, whereas a <code>LaneLocal</code>
+ * is only ever accessed by the lambdas of one lane at a time and needs no synchronization.
+ *
+ * Every <code>LaneLocal</code> is given an index of its own when it is created, under which its value is
+ * stored in a slot array of the lane, so that accessing the value takes an array access instead of a hash
+ * lookup. <code>get(lane)</code> is handed the lane the caller is executing on, as receivers usually keep
+ * a reference to their lane anyway, while <code>get()</code> looks the lane up with <code>CoLane.current()</code>.
+ * Indexes are never reused, so that like <code>ThreadLocal</code>s <code>LaneLocal</code>s are meant to be
+ * kept in static fields rather than created over and over again.
+ *
+ * A value of null counts as not set, so that <code>get()</code> answers the initial value again. Values of a
+ * <code>LaneLocal</code> with a disposer are handed to the disposer once their lane has been shut down and
+ * has terminated. A <code>LanePool</code> executes its lambdas concurrently and therefore keeps a value per
+ * worker thread, which is not disposed of.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class LaneLocal<T> {
+
+    private static final AtomicInteger NextIndex = new AtomicInteger(0);
+
+    private final int index = NextIndex.getAndIncrement();
+    private final Supplier<? extends T> initialValue;
+    private final Consumer<? super T> disposer;
+
+    public LaneLocal() {
+        this(null, null);
+    }
+
+    public LaneLocal(Supplier<? extends T> initialValue) {
+        this(initialValue, null);
+    }
+
+    /**
+     * Create a <code>LaneLocal</code> whose values are created by <tt>initialValue</tt> when first accessed
+     * on a lane and handed to <tt>disposer</tt> once the lane has terminated.
+     *
+     * @param initialValue supplies the value of a lane it is not set for or null if there is no initial value
+     * @param disposer releases the value of a lane that has terminated or null if values need not be released
+     */
+    public LaneLocal(Supplier<? extends T> initialValue, Consumer<? super T> disposer) {
+        super();
+        this.initialValue = initialValue;
+        this.disposer = disposer;
+    }
+
+    public static <T> LaneLocal<T> withInitial(Supplier<? extends T> initialValue) {
+        if(initialValue == null)
+            throw new NullPointerException("initialValue null");
+        return new LaneLocal<>(initialValue);
+    }
+
+    /**
+     * Answer the value of the lane the current thread is executing. The lane is found by
+     * <code>CoLane.current()</code>, which usually does without a ThreadLocal lookup.
+     *
+     * @return the value of the current lane
+     */
+    public T get() {
+        return get(currentLane());
+    }
+
+    /**
+     * Answer the value of the given lane, which must be the lane the caller is executing on. Creates
+     * the initial value if the value has not been set.
+     *
+     * @param lane the lane the caller is executing on
+     * @return the value of the lane
+     */
+    public T get(CoLane lane) {
+        Object value = lane.getLaneLocal(index);
+        if(value != null || initialValue == null)
+            return (T) value;
+        T initial = initialValue.get();
+        lane.setLaneLocal(this, initial);
+        return initial;
+    }
+
+    public void set(T value) {
+        set(currentLane(), value);
+    }
+
+    /**
+     * Set the value of the given lane, which must be the lane the caller is executing on.
+     *
+     * @param lane the lane the caller is executing on
+     * @param value the new value or null to remove the value
+     */
+    public void set(CoLane lane, T value) {
+        lane.setLaneLocal(this, value);
+    }
+
+    public void remove() {
+        remove(currentLane());
+    }
+
+    /**
+     * Remove the value of the given lane, which must be the lane the caller is executing on, without
+     * handing it to the disposer.
+     *
+     * @param lane the lane the caller is executing on
+     */
+    public void remove(CoLane lane) {
+        lane.setLaneLocal(this, null);
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    boolean hasDisposer() {
+        return disposer != null;
+    }
+
+    void dispose(Object value) {
+        disposer.accept((T) value);
+    }
+
+    private static CoLane currentLane() {
+        CoLane lane = CoLane.current();
+        if(lane == null)
+            throw new IllegalStateException("not executed on a lane");
+        return lane;
+    }
+
+}
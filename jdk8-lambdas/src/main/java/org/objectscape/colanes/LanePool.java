@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import org.objectscape.colanes.executor.ForkJoinLaneExecutor;
+import org.objectscape.colanes.mailbox.EnqueueStatus;
+import org.objectscape.colanes.util.Signature;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lane for stateless receivers whose lambdas are executed by several worker threads of a
+ * <code>ForkJoinLaneExecutor</code> in parallel. Lambdas run on the pool are handed to the work-stealing
+ * queues of the <code>ForkJoinPool</code> directly: lambdas run from a worker thread go to the queue
+ * of that worker, all other lambdas to the submission queues of the pool, and idle workers steal
+ * lambdas from the queues of busy ones.
+ *
+ * Unlike a <code>CoLane</code> a <code>LanePool</code> gives no guarantee about the order lambdas are executed in
+ * and lambdas may be executed concurrently, so that they must not share mutable state without
+ * synchronization. As a <code>LanePool</code> is a <code>CoLane</code> Handbacks can be obtained from it and are
+ * used the same way as with a single lane. The sender of a Handback and the values of <code>LaneLocal</code>s
+ * are kept per worker thread.
+ *
+ * A <code>LanePool</code> has no mailbox and no drain tasks of its own, so that none of the settings of a
+ * <code>CoLane</code>, such as a mailbox, priorities, metrics, suspending or shutting it down, apply to it and
+ * all of them throw an UnsupportedOperationException. It is shut down by shutting down its executor, after
+ * which lambdas run on it are answered <tt>EnqueueStatus.REJECTED</tt>.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class LanePool extends CoLane {
+
+    private final ForkJoinLaneExecutor pool;
+
+    /**
+     * Number of lambdas run on the pool, started and completed by the workers.
+     */
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+
+    private final ThreadLocal<Signature> sender = new ThreadLocal<>();
+
+    /**
+     * Values of the <code>LaneLocal</code>s of the pool, kept per worker thread as the workers execute
+     * lambdas of the pool concurrently.
+     */
+    private final ThreadLocal<Object[]> laneLocals = new ThreadLocal<>();
+
+    /**
+     * Create a pool with one worker per available processor.
+     *
+     * @param label the label of the pool
+     */
+    public LanePool(String label) {
+        this(label, Runtime.getRuntime().availableProcessors());
+    }
+
+    public LanePool(String label, int workers) {
+        this(label, new ForkJoinLaneExecutor(workers));
+    }
+
+    /**
+     * Create a pool whose lambdas are executed by the workers of the given executor, which may be
+     * shared with other pools or lanes.
+     *
+     * @param label the label of the pool
+     * @param pool the executor whose workers execute the lambdas
+     */
+    public LanePool(String label, ForkJoinLaneExecutor pool) {
+        super(label, pool);
+        this.pool = pool;
+    }
+
+    @Override
+    public EnqueueStatus run(Runnable runnable) {
+        if(runnable == null)
+            throw new NullPointerException("runnable null");
+        // counted before the task is handed to the pool, as a worker may complete it right away
+        submitted.increment();
+        try {
+            pool.execute(() -> {
+                started.increment();
+                CoLane previous = enterCurrent();
+                try {
+                    execute(runnable);
+                }
+                finally {
+                    exitCurrent(previous);
+                    completed.increment();
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            submitted.decrement();
+            return EnqueueStatus.REJECTED;
+        }
+        return EnqueueStatus.ENQUEUED;
+    }
+
+    @Override
+    public int runAll(Collection<? extends Runnable> runnables) {
+        int enqueued = 0;
+        for(Runnable runnable : runnables)
+            if(run(runnable).isEnqueued())
+                enqueued++;
+        return enqueued;
+    }
+
+    @Override
+    public void sender(Signature sender) {
+        if(sender == null)
+            this.sender.remove();
+        else
+            this.sender.set(sender);
+    }
+
+    @Override
+    public Signature<?> sender() {
+        return sender.get();
+    }
+
+    /**
+     * Answer the number of lambdas run on the pool that have not yet been started.
+     *
+     * @return the number of pending lambdas
+     */
+    @Override
+    public int getQueueDepth() {
+        long startedCount = started.sum();
+        return (int) Math.max(0, submitted.sum() - startedCount);
+    }
+
+    @Override
+    boolean isIdle() {
+        long completedCount = completed.sum();
+        return completedCount == submitted.sum();
+    }
+
+    @Override
+    long activityStamp() {
+        return submitted.sum();
+    }
+
+    @Override
+    Object getLaneLocal(int index) {
+        Object[] slots = laneLocals.get();
+        return slots != null && index < slots.length ? slots[index] : null;
+    }
+
+    /**
+     * Store the value of the given lane local for the current worker. Values are not disposed of as
+     * the pool does not terminate on its own.
+     */
+    @Override
+    void setLaneLocal(LaneLocal<?> laneLocal, Object value) {
+        int index = laneLocal.getIndex();
+        Object[] slots = laneLocals.get();
+        if(slots == null || index >= slots.length) {
+            if(value == null)
+                return;
+            slots = slots == null ? new Object[index + 1] : Arrays.copyOf(slots, Math.max(index + 1, slots.length * 2));
+            laneLocals.set(slots);
+        }
+        slots[index] = value;
+    }
+
+    public int getWorkers() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * A lane pool has no mailbox and no drain tasks of its own, so that all settings are unsupported.
+     */
+    @Override
+    protected void checkSupported(String setting) {
+        throw new UnsupportedOperationException("lane pool does not support " + setting);
+    }
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Report of a lambda that has been executing on a lane for longer than the threshold of the
+ * <code>LaneWatchdog</code> the lane is watched by. It is handed to the listener of the watchdog once
+ * per stalled lambda while the lambda is still executing.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class LaneStall {
+
+    private final CoLane lane;
+    private final long elapsedNanos;
+    private final Thread thread;
+    private final StackTraceElement[] stackTrace;
+    private final Throwable callSite;
+
+    LaneStall(CoLane lane, long elapsedNanos, Thread thread, StackTraceElement[] stackTrace, Throwable callSite) {
+        super();
+        this.lane = lane;
+        this.elapsedNanos = elapsedNanos;
+        this.thread = thread;
+        this.stackTrace = stackTrace;
+        this.callSite = callSite;
+    }
+
+    public CoLane getLane() {
+        return lane;
+    }
+
+    public String getLabel() {
+        return lane.getLabel();
+    }
+
+    /**
+     * Answer how long the lambda had been executing when the stall was detected.
+     *
+     * @param unit the unit of the returned duration
+     * @return the time the lambda had been executing
+     */
+    public long getElapsed(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public Thread getThread() {
+        return thread;
+    }
+
+    /**
+     * Answer the stack trace of the thread executing the stalled lambda at the time the stall was detected.
+     *
+     * @return the stack trace of the worker thread
+     */
+    public StackTraceElement[] getStackTrace() {
+        return stackTrace;
+    }
+
+    /**
+     * Answer an exception whose stack trace is the call site the stalled lambda was enqueued from.
+     *
+     * @return the call site or null unless the lane was configured with <code>captureCallSites()</code>
+     */
+    public Throwable getCallSite() {
+        return callSite;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("lambda on lane ").append(getLabel()).append(" executing for ")
+                .append(getElapsed(TimeUnit.MILLISECONDS)).append(" ms in thread ").append(thread.getName());
+        for(StackTraceElement element : stackTrace)
+            builder.append("\n\tat ").append(element);
+        if(callSite != null) {
+            builder.append("\nenqueued from");
+            for(StackTraceElement element : callSite.getStackTrace())
+                builder.append("\n\tat ").append(element);
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Detects lambdas that execute on a lane for longer than a threshold and thereby hold up all lambdas
+ * enqueued behind them. Lanes watched by a watchdog, see <code>CoLane.watchdog()</code>, publish the
+ * start time of the lambda they are executing, which costs a timestamp and a few volatile writes per
+ * lambda. The watchdog thread checks the watched lanes periodically and passes a <code>LaneStall</code>
+ * with the stack trace of the worker thread, and the call site the lambda was enqueued from if the lane
+ * captures call sites, to its listener once for every lambda that exceeds the threshold. The stall is
+ * also counted by the lane and its metrics.
+ *
+ * The stack trace is taken after the threshold has been exceeded, so that it shows where the lambda is
+ * stuck rather than where it started. The listener is called by the watchdog thread and must not block.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class LaneWatchdog {
+
+    private static final long MinCheckIntervalNanos = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * The watched lanes, which are only referenced weakly so that lanes no longer used are not kept
+     * alive by the watchdog.
+     */
+    private final List<WeakReference<CoLane>> lanes = new CopyOnWriteArrayList<>();
+    private final long thresholdNanos;
+    private final long checkIntervalNanos;
+    private final Consumer<LaneStall> listener;
+    private final AtomicLong stallCount = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean stopped = false;
+
+    /**
+     * Create a watchdog that passes the stalls it detects to the given listener.
+     *
+     * @param threshold the time after which an executing lambda is reported
+     * @param unit the time unit of <tt>threshold</tt>
+     * @param listener called by the watchdog thread for every stall detected
+     */
+    public LaneWatchdog(long threshold, TimeUnit unit, Consumer<LaneStall> listener) {
+        super();
+        if(listener == null)
+            throw new NullPointerException("listener null");
+        thresholdNanos = unit.toNanos(threshold);
+        if(thresholdNanos <= 0)
+            throw new IllegalArgumentException("threshold must be positive");
+        checkIntervalNanos = Math.max(MinCheckIntervalNanos, thresholdNanos / 4);
+        this.listener = listener;
+        thread = new Thread(() -> { work(); }, "colanes-watchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void watch(CoLane lane) {
+        lanes.add(new WeakReference<>(lane));
+    }
+
+    /**
+     * Stop watching the given lane.
+     *
+     * @param lane the lane not to be watched any more
+     */
+    public void unwatch(CoLane lane) {
+        lanes.removeIf((WeakReference<CoLane> reference) -> {
+            CoLane watched = reference.get();
+            return watched == null || watched == lane;
+        });
+    }
+
+    public long getThreshold(TimeUnit unit) {
+        return unit.convert(thresholdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Answer the number of stalls detected on all lanes watched.
+     *
+     * @return the number of stalls reported
+     */
+    public long getStallCount() {
+        return stallCount.get();
+    }
+
+    /**
+     * Stop the watchdog thread. The lanes that were watched keep publishing the start times of their lambdas.
+     */
+    public void stop() {
+        stopped = true;
+        LockSupport.unpark(thread);
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    private void work() {
+        while(!stopped) {
+            LockSupport.parkNanos(this, checkIntervalNanos);
+            boolean collected = false;
+            for(WeakReference<CoLane> reference : lanes) {
+                CoLane lane = reference.get();
+                if(lane == null)
+                    collected = true;
+                else
+                    check(lane);
+            }
+            if(collected)
+                lanes.removeIf((WeakReference<CoLane> reference) -> reference.get() == null);
+        }
+    }
+
+    private void check(CoLane lane) {
+        LaneStall stall = lane.checkStalled(thresholdNanos);
+        if(stall == null)
+            return;
+        stallCount.incrementAndGet();
+        try {
+            listener.accept(stall);
+        }
+        catch (Throwable e) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import org.objectscape.colanes.util.Signature;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Same as a <code>HandbackFutureCompletion&lt;Long&gt;</code> for requests that answer a <tt>long</tt>,
+ * which is passed from the supplier to the callback and whenDone consumers and to the waiting threads
+ * without being boxed.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class LongHandback extends AbstractPrimitiveHandback
+{
+    private LongSupplier supplier = null;
+    private LongConsumer callbackConsumer = null;
+    private LongConsumer whenDoneConsumer = null;
+
+    /**
+     * The result, published by the volatile write in <code>completed()</code>.
+     */
+    private long result = 0;
+
+    public LongHandback() {
+        super();
+    }
+
+    public LongHandback(boolean allowOverwrite) {
+        super(allowOverwrite);
+    }
+
+    public LongHandback(CoLane queue) {
+        super(queue);
+    }
+
+    public LongHandback(CoLane queue, boolean allowOverwrite) {
+        super(queue, allowOverwrite);
+    }
+
+    @Override
+    protected void checkValidBeforeEnqueue() {
+        super.checkValidBeforeEnqueue();
+        if(supplier == null)
+            throw new NullPointerException("supplier null");
+    }
+
+    public LongHandback supplier(LongSupplier supplier) {
+        checkNotAlreadyEnqueued();
+        checkAllowOverwrite(this.supplier, "supplier");
+        this.supplier = supplier;
+        return this;
+    }
+
+    public LongHandback callback(Runnable callback) {
+        setCallback(callback);
+        return this;
+    }
+
+    public LongHandback whenDone(Runnable whenDone) {
+        setWhenDone(whenDone);
+        return this;
+    }
+
+    public LongHandback callback(LongConsumer callback) {
+        checkNotAlreadyEnqueued();
+        checkAllowOverwrite(callbackConsumer, "callbackConsumer");
+        this.callbackConsumer = callback;
+        return this;
+    }
+
+    public LongHandback whenDone(LongConsumer whenDone) {
+        checkNotAlreadyEnqueued();
+        checkAllowOverwrite(whenDoneConsumer, "whenDoneConsumer");
+        this.whenDoneConsumer = whenDone;
+        return this;
+    }
+
+    /**
+     * Wait for the result.
+     *
+     * @return the result
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     * @throws ExecutionException if the supplier threw an exception or the lambda was not enqueued
+     */
+    public long get() throws InterruptedException, ExecutionException {
+        await();
+        return result;
+    }
+
+    public long get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        await(timeout, unit);
+        return result;
+    }
+
+    @Override
+    protected void invokeFunction() {
+        try {
+            result = supplier.getAsLong();
+        }
+        catch (RuntimeException | Error e) {
+            failed(e);
+            throw e;
+        }
+        completed();
+    }
+
+    @Override
+    protected void invokeCallback()
+    {
+        super.invokeCallback();
+
+        if(callbackConsumer != null)
+            callbackConsumer.accept(result);
+    }
+
+    @Override
+    protected void invokeWhenDone()
+    {
+        super.invokeWhenDone();
+
+        if(whenDoneConsumer != null)
+            deliverWhenDone(() -> { whenDoneConsumer.accept(result); });
+    }
+
+    public LongHandback runAsync()
+    {
+        enqueue();
+        return this;
+    }
+
+    public LongHandback runAsyncWhenDone(LongConsumer whenDoneConsumer)
+    {
+        whenDone(whenDoneConsumer);
+        runAsync();
+        return this;
+    }
+
+    public LongHandback deadline(long timeout, TimeUnit unit) {
+        setDeadline(timeout, unit);
+        return this;
+    }
+
+    public LongHandback replyTo(CoLane replyTo) {
+        setReplyTo(replyTo);
+        return this;
+    }
+
+    public LongHandback sender(CoReceiver coReceiver) {
+        setSender(coReceiver);
+        return this;
+    }
+
+    public LongHandback sender(Signature signature) {
+        setSender(signature);
+        return this;
+    }
+
+    public LongHandback namedSender(CoReceiver coReceiver) {
+        setNamedSender(coReceiver);
+        return this;
+    }
+
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import org.objectscape.colanes.executor.IdleStrategy;
+import org.objectscape.colanes.executor.PinnedThreadLaneExecutor;
+import org.objectscape.colanes.mailbox.SingleConsumerMailbox;
+
+/**
+ * A lane for latency-critical receivers that is drained by a thread of its own, which it never shares
+ * with other lanes and which keeps polling for lambdas as defined by its <code>IdleStrategy</code> instead
+ * of blocking. Lambdas enqueued on the lane are never held up by the lambdas of batch lanes that would
+ * otherwise compete for the threads of the global HawtDispatch queue. Lambdas are kept in a
+ * <code>SingleConsumerMailbox</code> unless the lane is configured with another mailbox.
+ *
+ * The thread of the lane is stopped once the lane has been shut down and has terminated, so that a
+ * <code>PinnedLane</code> that is no longer used must be shut down.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class PinnedLane extends CoLane {
+
+    /**
+     * Create a lane whose thread spins for a while and then parks while the lane is idle.
+     *
+     * @param label the label of the lane, which is also the name of its thread
+     */
+    public PinnedLane(String label) {
+        this(label, IdleStrategy.SPIN_PARK);
+    }
+
+    public PinnedLane(String label, IdleStrategy idleStrategy) {
+        this(label, idleStrategy, PinnedThreadLaneExecutor.DefaultMaxSpins);
+    }
+
+    /**
+     * Create the lane and start its thread.
+     *
+     * @param label the label of the lane, which is also the name of its thread
+     * @param idleStrategy what the thread of the lane does while the lane is idle
+     * @param maxSpins the number of polls before the thread starts yielding or parks
+     */
+    public PinnedLane(String label, IdleStrategy idleStrategy, int maxSpins) {
+        super(label, new PinnedThreadLaneExecutor(label == null ? "colanes-pinned" : label, idleStrategy, maxSpins));
+        mailbox(new SingleConsumerMailbox());
+    }
+
+    public IdleStrategy getIdleStrategy() {
+        return ((PinnedThreadLaneExecutor) getExecutor()).getIdleStrategy();
+    }
+
+    /**
+     * Answer the thread the lambdas of the lane are executed by.
+     *
+     * @return the thread of the lane
+     */
+    public Thread getThread() {
+        return ((PinnedThreadLaneExecutor) getExecutor()).getThread();
+    }
+
+    @Override
+    protected void onTerminated() {
+        getExecutor().shutdown();
+    }
+
+}
@@ -0,0 +1,302 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import org.objectscape.colanes.timer.Timeout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Fans a request out to several lanes and combines their results. Every target lane is sent its own
+ * supplier through a <code>HandbackFutureCompletion</code>. The results are folded into the accumulator
+ * one by one with the combiner, starting with the identity, in the order they arrive. The accumulated
+ * result is answered as soon as the quorum of results has been combined, which by default are the
+ * results of all targets, once the quorum can no longer be reached as too many targets have failed, or
+ * when the deadline has passed, in which case the results combined so far are answered.
+ *
+ * The results are delivered to and combined on the lane the request was sent from, so that the combiner
+ * and the accumulator are never accessed concurrently and no worker thread is blocked waiting for
+ * results. If the request was not sent from a lane the results are combined on the first target lane.
+ * The deadline is kept by the lane the results are combined on, too.
+ *
+ * Like a Handback a <code>ScatterGather</code> is built by a single thread and can only be run once. The
+ * counts and the flags describing the outcome are only valid once the result has been answered. Once
+ * the result has been answered, or the future has been cancelled, the Handbacks of the targets that have
+ * not answered yet are cancelled so that their lanes skip them.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class ScatterGather<T, R> {
+
+    private final List<CoLane> lanes = new ArrayList<>();
+    private final List<Supplier<T>> suppliers = new ArrayList<>();
+    private final BiFunction<R, ? super T, R> combiner;
+    private final CompletableFuture<R> future = new CompletableFuture<>();
+
+    private R accumulator;
+    private int quorum = -1;
+    private long deadlineNanos = -1;
+    private CoLane replyTo = null;
+    private Consumer<R> whenDoneConsumer = null;
+    private boolean enqueued = false;
+
+    // only accessed by the lane the results are combined on once enqueued
+    private int resultCount = 0;
+    private int failureCount = 0;
+    private final List<Throwable> failures = new ArrayList<>();
+    private boolean deadlineExpired = false;
+
+    private Timeout deadline = null;
+
+    /**
+     * The Handbacks sent to the targets, all created before the first one is enqueued.
+     */
+    private HandbackFutureCompletion<?>[] handbacks = null;
+
+    public ScatterGather(R identity, BiFunction<R, ? super T, R> combiner) {
+        super();
+        if(combiner == null)
+            throw new NullPointerException("combiner null");
+        this.accumulator = identity;
+        this.combiner = combiner;
+    }
+
+    /**
+     * Create a <code>ScatterGather</code> that collects the results in a list in the order they arrive.
+     *
+     * @return a <code>ScatterGather</code> answering the list of results
+     */
+    public static <T> ScatterGather<T, List<T>> collecting() {
+        return new ScatterGather<>(new ArrayList<>(), (List<T> results, T result) -> {
+            results.add(result);
+            return results;
+        });
+    }
+
+    /**
+     * Add a target lane and the supplier to be executed on it.
+     *
+     * @param lane the target lane
+     * @param supplier the supplier executed on the target lane
+     * @return this <code>ScatterGather</code> for convenience
+     */
+    public ScatterGather<T, R> add(CoLane lane, Supplier<T> supplier) {
+        checkNotAlreadyEnqueued();
+        if(lane == null)
+            throw new NullPointerException("lane null");
+        if(supplier == null)
+            throw new NullPointerException("supplier null");
+        lanes.add(lane);
+        suppliers.add(supplier);
+        return this;
+    }
+
+    /**
+     * Answer the result as soon as <tt>quorum</tt> results have been combined. By default the results of
+     * all targets are waited for.
+     *
+     * @param quorum the number of results to be combined
+     * @return this <code>ScatterGather</code> for convenience
+     */
+    public ScatterGather<T, R> quorum(int quorum) {
+        checkNotAlreadyEnqueued();
+        if(quorum <= 0)
+            throw new IllegalArgumentException("quorum must be positive");
+        this.quorum = quorum;
+        return this;
+    }
+
+    /**
+     * Answer the results combined so far once the given time has passed after <code>runAsync()</code>
+     * even if the quorum has not been reached.
+     *
+     * @param timeout the time to wait for the quorum
+     * @param unit the time unit of <tt>timeout</tt>
+     * @return this <code>ScatterGather</code> for convenience
+     */
+    public ScatterGather<T, R> deadline(long timeout, TimeUnit unit) {
+        checkNotAlreadyEnqueued();
+        if(timeout < 0)
+            throw new IllegalArgumentException("timeout must not be negative");
+        deadlineNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    public ScatterGather<T, R> replyTo(CoLane replyTo) {
+        checkNotAlreadyEnqueued();
+        this.replyTo = replyTo;
+        return this;
+    }
+
+    public ScatterGather<T, R> whenDone(Consumer<R> whenDone) {
+        checkNotAlreadyEnqueued();
+        this.whenDoneConsumer = whenDone;
+        return this;
+    }
+
+    public ScatterGather<T, R> runAsync() {
+        checkNotAlreadyEnqueued();
+        if(lanes.isEmpty())
+            throw new IllegalStateException("no target lanes added");
+        if(quorum > lanes.size())
+            throw new IllegalStateException("quorum " + quorum + " greater than number of targets " + lanes.size());
+        if(quorum == -1)
+            quorum = lanes.size();
+        if(replyTo == null)
+            replyTo = CoLane.current();
+        if(replyTo == null)
+            replyTo = lanes.get(0);
+        enqueued = true;
+
+        // assigned before the handbacks are enqueued, which publishes them to the lane combining the results
+        CoLane lane = replyTo;
+        handbacks = new HandbackFutureCompletion<?>[lanes.size()];
+        for(int i = 0; i < lanes.size(); i++)
+            handbacks[i] = lanes.get(i).<T>getHandbackFutureCompletion().supplier(suppliers.get(i));
+        if(deadlineNanos >= 0)
+            deadline = lane.runAfter(deadlineNanos, TimeUnit.NANOSECONDS, () -> { expired(); });
+        // cancelling the future reaches the Handbacks, as with a HandbackFutureCompletion
+        future.whenComplete((R result, Throwable failure) -> {
+            if(future.isCancelled())
+                cancelPending();
+        });
+
+        for(HandbackFutureCompletion<?> handback : handbacks) {
+            ((HandbackFutureCompletion<T>) handback).runAsync().future().whenComplete((T result, Throwable failure) -> {
+                lane.run(() -> { received(result, failure); });
+            });
+        }
+        return this;
+    }
+
+    public ScatterGather<T, R> runAsyncWhenDone(Consumer<R> whenDoneConsumer) {
+        whenDone(whenDoneConsumer);
+        runAsync();
+        return this;
+    }
+
+    /**
+     * Answer the future completed with the combined result. It is completed on the lane the results
+     * are combined on and only completes exceptionally if the combiner threw an exception.
+     *
+     * @return the future of the combined result
+     */
+    public CompletableFuture<R> future() {
+        return future;
+    }
+
+    public int getTargetCount() {
+        return lanes.size();
+    }
+
+    /**
+     * Answer the number of results combined into the result.
+     *
+     * @return the number of combined results
+     */
+    public int getResultCount() {
+        return resultCount;
+    }
+
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * Answer the exceptions of the targets that failed before the result was answered.
+     *
+     * @return the exceptions of the failed targets
+     */
+    public List<Throwable> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    public boolean isQuorumReached() {
+        return resultCount >= quorum;
+    }
+
+    /**
+     * Answer whether the result was answered because the deadline passed, in which case it only contains
+     * the results combined till then.
+     *
+     * @return true if the deadline passed before the quorum was reached
+     */
+    public boolean isDeadlineExpired() {
+        return deadlineExpired;
+    }
+
+    private void received(T result, Throwable failure) {
+        if(future.isDone())
+            return;
+        if(failure != null) {
+            failureCount++;
+            failures.add(failure);
+        }
+        else {
+            resultCount++;
+            try {
+                accumulator = combiner.apply(accumulator, result);
+            }
+            catch (RuntimeException | Error e) {
+                cancelPending();
+                future.completeExceptionally(e);
+                throw e;
+            }
+        }
+        if(resultCount >= quorum || lanes.size() - failureCount < quorum)
+            done();
+    }
+
+    private void expired() {
+        if(future.isDone())
+            return;
+        deadlineExpired = true;
+        done();
+    }
+
+    private void done() {
+        cancelPending();
+        // not completed if cancelled in the meantime
+        if(future.complete(accumulator) && whenDoneConsumer != null)
+            whenDoneConsumer.accept(accumulator);
+    }
+
+    /**
+     * Called on the lane the results are combined on or by the thread that cancelled the future.
+     */
+    private void cancelPending() {
+        if(deadline != null)
+            deadline.cancel();
+        for(HandbackFutureCompletion<?> handback : handbacks)
+            handback.cancel();
+    }
+
+    private void checkNotAlreadyEnqueued() {
+        if(enqueued)
+            throw new IllegalStateException("lambda already enqueued");
+    }
+
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.executor;
+
+import org.objectscape.colanes.timer.HashedTimerWheel;
+import org.objectscape.colanes.timer.Timeout;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Abstract class for <code>LaneExecutor</code> implementations. Delayed lambdas are held back by the
+ * default <code>HashedTimerWheel</code> shared by all executors and then handed over to <code>execute()</code>
+ * of the executor they were scheduled on.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public abstract class AbstractLaneExecutor implements LaneExecutor {
+
+    @Override
+    public Timeout executeAfter(long duration, TimeUnit unit, Runnable runnable) {
+        return HashedTimerWheel.getDefault().schedule(() -> { execute(runnable); }, duration, unit);
+    }
+
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.executor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <code>LaneExecutor</code> that owns a single thread of its own. All lanes using the same instance
+ * are drained by that thread and never compete with lanes of other executors for threads.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class DedicatedThreadLaneExecutor extends AbstractLaneExecutor {
+
+    private ExecutorService executor = null;
+
+    public DedicatedThreadLaneExecutor() {
+        this("colanes-dedicated");
+    }
+
+    public DedicatedThreadLaneExecutor(String threadName) {
+        super();
+        executor = Executors.newSingleThreadExecutor((Runnable runnable) -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void execute(Runnable runnable) {
+        executor.execute(runnable);
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.executor;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <code>LaneExecutor</code> backed by a <code>ForkJoinPool</code> in async mode. Async mode makes the
+ * pool process drain tasks that are never joined in FIFO order, which is what event-style tasks
+ * like lane drains need.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class ForkJoinLaneExecutor extends AbstractLaneExecutor {
+
+    private ForkJoinPool pool = null;
+
+    public ForkJoinLaneExecutor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ForkJoinLaneExecutor(int parallelism) {
+        super();
+        pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    }
+
+    @Override
+    public void execute(Runnable runnable) {
+        pool.execute(runnable);
+    }
+
+    @Override
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+}
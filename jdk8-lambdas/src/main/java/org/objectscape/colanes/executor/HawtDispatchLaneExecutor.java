@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.executor;
+
+import org.fusesource.hawtdispatch.Dispatch;
+import org.fusesource.hawtdispatch.DispatchQueue;
+
+/**
+ * <code>LaneExecutor</code> backed by HawtDispatch. This is the default backend. Unless created with
+ * a specific <code>DispatchQueue</code> the lanes are drained by the HawtDispatch global queue. Delayed
+ * lambdas are held back by the shared timer wheel rather than by HawtDispatch, as the timer of
+ * HawtDispatch does not cope well with large numbers of pending lambdas.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class HawtDispatchLaneExecutor extends AbstractLaneExecutor {
+
+    /**
+     * The queue lanes are drained by or null for the HawtDispatch global queue. The global queue
+     * is looked up on every call as it is recreated by HawtDispatch after having been shut down.
+     */
+    private DispatchQueue queue = null;
+
+    public HawtDispatchLaneExecutor() {
+        super();
+    }
+
+    public HawtDispatchLaneExecutor(DispatchQueue queue) {
+        super();
+        if(queue == null)
+            throw new NullPointerException("queue null");
+        this.queue = queue;
+    }
+
+    private DispatchQueue queue() {
+        if(queue == null)
+            return Dispatch.getGlobalQueue();
+        return queue;
+    }
+
+    @Override
+    public void execute(Runnable runnable) {
+        queue().execute(runnable);
+    }
+
+    @Override
+    public void shutdown() {
+        // the HawtDispatch threads are not owned by this executor
+    }
+
+}
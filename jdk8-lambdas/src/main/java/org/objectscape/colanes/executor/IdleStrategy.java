@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.executor;
+
+/**
+ * Defines what the thread of a <code>PinnedThreadLaneExecutor</code> does while it has no drain task to
+ * execute. The longer the thread keeps polling the sooner it reacts to a lambda being enqueued, at the
+ * cost of the CPU it keeps busy in the meantime.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public enum IdleStrategy {
+
+    /**
+     * Poll for drain tasks without ever giving up the CPU. Reacts fastest but occupies a whole core,
+     * so that there must be at least as many cores as busy spinning threads.
+     */
+    BUSY_SPIN,
+
+    /**
+     * Poll for drain tasks for <tt>maxSpins</tt> rounds, then call <code>Thread.yield()</code> between
+     * two polls so that other threads ready to run on the same core get their turn.
+     */
+    SPIN_YIELD,
+
+    /**
+     * Poll for drain tasks for <tt>maxSpins</tt> rounds, then park the thread till a drain task is
+     * handed to the executor. Uses no CPU while the lanes are idle, but a lambda enqueued on an idle
+     * lane has to wait for the thread to be unparked.
+     */
+    SPIN_PARK
+
+}
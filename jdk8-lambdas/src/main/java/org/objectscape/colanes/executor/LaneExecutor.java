@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.executor;
+
+import org.objectscape.colanes.timer.Timeout;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service provider interface that supplies the threads a <code>CoLane</code> is drained by. A
+ * <code>CoLane</code> keeps the lambdas enqueued on it in its own mailbox and preserves their order
+ * itself. The <code>LaneExecutor</code> only has to run the drain task the lane hands to it on some
+ * thread. This way the backend can be exchanged per lane or per <code>Registry</code> without any
+ * change to the lanes or the coreceivers using them.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public interface LaneExecutor {
+
+    /**
+     * Run the <tt>runnable</tt> asynchronously on some thread of the executor. No ordering
+     * between several runnables passed to this method is guaranteed.
+     *
+     * @param runnable the lambda to be executed
+     * @throws java.util.concurrent.RejectedExecutionException if the executor has been shut down
+     */
+    public void execute(Runnable runnable);
+
+    /**
+     * Run the <tt>runnable</tt> asynchronously on some thread of the executor once the given
+     * <tt>duration</tt> has elapsed.
+     *
+     * @param duration the delay after which the lambda is executed
+     * @param unit the time unit of <tt>duration</tt>
+     * @param runnable the lambda to be executed
+     * @return handle to cancel the lambda before it is due
+     */
+    public Timeout executeAfter(long duration, TimeUnit unit, Runnable runnable);
+
+    /**
+     * Release the threads owned by the executor. Executors that do not own their threads, such
+     * as the one backed by the HawtDispatch global queue, do nothing in this case.
+     */
+    public void shutdown();
+
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.executor;
+
+import org.objectscape.colanes.mailbox.SingleConsumerMailbox;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <code>LaneExecutor</code> for latency-critical lanes that owns a single thread which keeps polling for
+ * drain tasks instead of blocking on a queue like <code>DedicatedThreadLaneExecutor</code> does. What the
+ * thread does while there is nothing to execute is defined by its <code>IdleStrategy</code>. Drain tasks
+ * are handed to the thread through a <code>SingleConsumerMailbox</code>, so that handing over a task
+ * takes a single atomic swap and, unless the thread is parked, no system call.
+ *
+ * Java offers no way to bind a thread to a core. To keep the thread from being moved between cores
+ * start the JVM bound to a set of isolated cores, e.g. with <tt>taskset</tt>.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class PinnedThreadLaneExecutor extends AbstractLaneExecutor {
+
+    public static final int DefaultMaxSpins = 10000;
+
+    private final SingleConsumerMailbox tasks = new SingleConsumerMailbox();
+    private final IdleStrategy idleStrategy;
+    private final int maxSpins;
+    private final Thread thread;
+
+    private volatile boolean shutdown = false;
+
+    /**
+     * Set by the thread before it checks for tasks a last time and parks, so that <code>execute()</code>
+     * only unparks it when it may be parked.
+     */
+    private volatile boolean parked = false;
+
+    public PinnedThreadLaneExecutor(IdleStrategy idleStrategy) {
+        this("colanes-pinned", idleStrategy);
+    }
+
+    public PinnedThreadLaneExecutor(String threadName, IdleStrategy idleStrategy) {
+        this(threadName, idleStrategy, DefaultMaxSpins);
+    }
+
+    /**
+     * Create the executor and start its thread.
+     *
+     * @param threadName the name of the thread of the executor
+     * @param idleStrategy what the thread does while there is nothing to execute
+     * @param maxSpins the number of polls before the thread starts yielding or parks, ignored by
+     *                 <code>IdleStrategy.BUSY_SPIN</code>
+     */
+    public PinnedThreadLaneExecutor(String threadName, IdleStrategy idleStrategy, int maxSpins) {
+        super();
+        if(idleStrategy == null)
+            throw new NullPointerException("idleStrategy null");
+        if(maxSpins < 0)
+            throw new IllegalArgumentException("maxSpins must not be negative");
+        this.idleStrategy = idleStrategy;
+        this.maxSpins = maxSpins;
+        thread = new Thread(() -> { runLoop(); }, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void execute(Runnable runnable) {
+        if(shutdown)
+            throw new RejectedExecutionException("executor shut down");
+        tasks.offer(runnable);
+        if(parked)
+            LockSupport.unpark(thread);
+    }
+
+    /**
+     * Stop the thread once it has executed the tasks handed to the executor so far.
+     */
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        LockSupport.unpark(thread);
+    }
+
+    public IdleStrategy getIdleStrategy() {
+        return idleStrategy;
+    }
+
+    public Thread getThread() {
+        return thread;
+    }
+
+    private void runLoop() {
+        int idleCount = 0;
+        while(true) {
+            Runnable task = tasks.poll();
+            if(task != null) {
+                execute(task, Thread.currentThread());
+                idleCount = 0;
+                continue;
+            }
+            if(shutdown && tasks.isEmpty())
+                return;
+            idle(idleCount);
+            if(idleCount < maxSpins)
+                idleCount++;
+        }
+    }
+
+    private void execute(Runnable task, Thread thread) {
+        try {
+            task.run();
+        }
+        catch (Throwable e) {
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    private void idle(int idleCount) {
+        if(idleStrategy == IdleStrategy.BUSY_SPIN || idleCount < maxSpins)
+            return;
+        if(idleStrategy == IdleStrategy.SPIN_YIELD) {
+            Thread.yield();
+            return;
+        }
+        parked = true;
+        if(tasks.isEmpty() && !shutdown)
+            LockSupport.park(this);
+        parked = false;
+    }
+
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.executor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <code>LaneExecutor</code> that drains every lane on a virtual thread of its own. A lambda that blocks,
+ * for example on I/O or on <code>Future.get()</code>, only parks the virtual thread of its lane while
+ * the carrier thread goes on serving other lanes. The lambdas of a lane are still executed in FIFO
+ * order as the lane never has more than one drain task scheduled.
+ *
+ * Virtual threads require Java 21 or later. They are looked up reflectively so that the library still
+ * compiles and runs on older JDKs, where creating an instance of this class throws an
+ * <code>UnsupportedOperationException</code>.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class VirtualThreadLaneExecutor extends AbstractLaneExecutor {
+
+    private static final ThreadFactory VirtualThreadFactory = createVirtualThreadFactory();
+
+    private volatile boolean shutdown = false;
+
+    public VirtualThreadLaneExecutor() {
+        super();
+        if(!isSupported())
+            throw new UnsupportedOperationException("virtual threads require Java 21 or later");
+    }
+
+    /**
+     * Answer whether the running JVM supports virtual threads.
+     *
+     * @return true if virtual threads are available
+     */
+    public static boolean isSupported() {
+        return VirtualThreadFactory != null;
+    }
+
+    private static ThreadFactory createVirtualThreadFactory() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method name = builderClass.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, "colanes-virtual-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        }
+        catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable runnable) {
+        if(shutdown)
+            throw new RejectedExecutionException("executor shut down");
+        VirtualThreadFactory.newThread(runnable).start();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+}
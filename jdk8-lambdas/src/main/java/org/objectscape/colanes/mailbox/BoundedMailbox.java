@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.mailbox;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * <code>Mailbox</code> that holds at most <tt>capacity</tt> lambdas. What happens to a lambda offered
+ * to a full mailbox is defined by its <code>OverflowPolicy</code>. Lambdas dropped by the policy are
+ * never executed. Pending lambdas dropped to make room for new ones are told so if they are
+ * <code>Discardable</code>.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class BoundedMailbox implements Mailbox {
+
+    private final BlockingQueue<Runnable> queue;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+
+    public BoundedMailbox(int capacity, OverflowPolicy overflowPolicy) {
+        super();
+        if(capacity <= 0)
+            throw new IllegalArgumentException("capacity must be greater than zero");
+        if(overflowPolicy == null)
+            throw new NullPointerException("overflowPolicy null");
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    @Override
+    public EnqueueStatus offer(Runnable runnable) {
+        if(queue.offer(runnable))
+            return EnqueueStatus.ENQUEUED;
+
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    queue.put(runnable);
+                    return EnqueueStatus.ENQUEUED;
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return EnqueueStatus.REJECTED;
+                }
+            case FAIL:
+                throw new MailboxFullException("mailbox capacity of " + capacity + " exceeded");
+            case DROP_OLDEST:
+                do {
+                    Runnable oldest = queue.poll();
+                    if(oldest != null)
+                        Discardable.discard(oldest);
+                } while(!queue.offer(runnable));
+                return EnqueueStatus.OLDEST_DROPPED;
+            case DROP_NEWEST:
+                return EnqueueStatus.DROPPED;
+            default:
+                return EnqueueStatus.REJECTED;
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        return queue.poll();
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.mailbox;
+
+/**
+ * Lambda that wants to know when a <code>Mailbox</code> drops it after having accepted it, e.g. a
+ * <code>BoundedMailbox</code> that drops its oldest lambda to make room for a new one. Lets the owner
+ * of the lambda, such as a Handback waiting for it to be executed, react to it never being executed.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public interface Discardable extends Runnable {
+
+    /**
+     * Called by the thread that dropped the lambda from the mailbox instead of <code>run()</code>.
+     */
+    public void discarded();
+
+    /**
+     * Notify the <tt>runnable</tt> that it has been dropped if it is <code>Discardable</code>.
+     *
+     * @param runnable the lambda dropped from a mailbox
+     */
+    public static void discard(Runnable runnable) {
+        if(runnable instanceof Discardable)
+            ((Discardable) runnable).discarded();
+    }
+
+}
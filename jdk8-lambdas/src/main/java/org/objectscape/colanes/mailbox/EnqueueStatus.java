@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.mailbox;
+
+/**
+ * Result of adding a lambda to a <code>Mailbox</code>.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public enum EnqueueStatus {
+
+    /**
+     * The lambda has been added to the mailbox.
+     */
+    ENQUEUED,
+
+    /**
+     * The lambda has been added to the mailbox after the oldest pending lambda had been dropped
+     * to make room for it.
+     */
+    OLDEST_DROPPED,
+
+    /**
+     * The lambda has not been added as the mailbox was full and drops new lambdas in that case.
+     */
+    DROPPED,
+
+    /**
+     * The lambda has not been added as the mailbox was full. The caller is expected to react to it,
+     * e.g. by trying again later.
+     */
+    REJECTED,
+
+    /**
+     * The lambda has replaced a pending lambda with the same key, which is not executed any more.
+     * Answered by <code>CoLane.runCoalesced()</code>.
+     */
+    REPLACED,
+
+    /**
+     * The lambda has been dropped as a lambda with the same key is still pending. Answered by
+     * <code>CoLane.runCoalesced()</code>.
+     */
+    COALESCED,
+
+    /**
+     * The lambda has not been added as the lane has been shut down.
+     */
+    SHUT_DOWN;
+
+    /**
+     * Answer whether the lambda has been added to the mailbox and will be executed.
+     *
+     * @return true if the lambda will be executed
+     */
+    public boolean isEnqueued() {
+        return this == ENQUEUED || this == OLDEST_DROPPED || this == REPLACED;
+    }
+
+}
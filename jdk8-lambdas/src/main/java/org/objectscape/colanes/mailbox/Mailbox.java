@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.mailbox;
+
+import java.util.Collection;
+
+/**
+ * Defines the queue a <code>CoLane</code> stores its pending lambdas in. Lambdas may be offered by
+ * any number of threads, but are only ever polled by the single thread that is draining the lane
+ * at that time.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public interface Mailbox {
+
+    /**
+     * Add the <tt>runnable</tt> at the tail of the mailbox.
+     *
+     * @param runnable the lambda to be added
+     * @return the status telling whether the lambda has been added
+     */
+    public EnqueueStatus offer(Runnable runnable);
+
+    /**
+     * Add the <tt>runnables</tt> at the tail of the mailbox in the order of the collection. Stops at
+     * the first lambda the mailbox does not accept, so that the lambdas added are always a prefix of
+     * <tt>runnables</tt>. A <code>MailboxFullException</code> is only thrown if not even the first lambda
+     * was accepted, as the caller would otherwise not learn about the lambdas already added.
+     * Implementations may override this method to add all lambdas at once.
+     *
+     * @param runnables the lambdas to be added
+     * @return the number of lambdas added
+     */
+    default public int offerAll(Collection<? extends Runnable> runnables) {
+        int count = 0;
+        for(Runnable runnable : runnables) {
+            try {
+                if(!offer(runnable).isEnqueued())
+                    break;
+            }
+            catch (MailboxFullException e) {
+                if(count == 0)
+                    throw e;
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Remove and return the lambda at the head of the mailbox.
+     *
+     * @return the head of the mailbox or null if the mailbox is empty
+     */
+    public Runnable poll();
+
+    /**
+     * Answer the number of lambdas currently pending in the mailbox.
+     *
+     * @return the number of pending lambdas
+     */
+    public int size();
+
+    public boolean isEmpty();
+
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.mailbox;
+
+/**
+ * Thrown in case a lambda is added to a <code>BoundedMailbox</code> that is full and has
+ * the <code>OverflowPolicy.FAIL</code>.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class MailboxFullException extends RuntimeException
+{
+    public MailboxFullException() {
+        super();
+    }
+
+    public MailboxFullException(String message) {
+        super(message);
+    }
+
+    public MailboxFullException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public MailboxFullException(Throwable cause) {
+        super(cause);
+    }
+
+    protected MailboxFullException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.mailbox;
+
+/**
+ * Defines what a <code>BoundedMailbox</code> does with a lambda offered to it when it is full.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Block the calling thread till there is room in the mailbox. Must not be used for lanes that
+     * enqueue lambdas on themselves as the lane would then wait for itself.
+     */
+    BLOCK,
+
+    /**
+     * Throw a <code>MailboxFullException</code>.
+     */
+    FAIL,
+
+    /**
+     * Drop the oldest pending lambda and add the new one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Drop the new lambda and answer <code>EnqueueStatus.DROPPED</code>.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Do not add the new lambda and answer <code>EnqueueStatus.REJECTED</code>.
+     */
+    SIGNAL
+
+}
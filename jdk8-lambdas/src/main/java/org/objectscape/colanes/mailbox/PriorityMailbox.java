@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.mailbox;
+
+import java.util.Collection;
+
+/**
+ * <code>Mailbox</code> with several priority levels, each of which is an <code>UnboundedMailbox</code>.
+ * Priority 0 is the normal priority lambdas added with <code>offer(runnable)</code> get and the highest
+ * priority is <code>getPriorityCount() - 1</code>. Lambdas of a higher priority are polled before those of
+ * a lower priority, lambdas of the same priority in the order they were added.
+ *
+ * So that a steady stream of lambdas of a higher priority cannot starve lower priorities, at most
+ * <tt>maxBypassed</tt> lambdas in a row are polled ahead of lambdas of lower priorities that are pending.
+ * Then the pending lambda of the priority that has not been polled from for the longest time is polled,
+ * which bounds the number of lambdas that can overtake any pending lambda.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class PriorityMailbox implements Mailbox {
+
+    public static final int DefaultMaxBypassed = 64;
+
+    private final UnboundedMailbox[] levels;
+    private final int maxBypassed;
+
+    // only accessed by the thread polling the mailbox
+    private final long[] lastPolled;
+    private long pollCount = 0;
+    private int bypassed = 0;
+
+    public PriorityMailbox(int priorityCount) {
+        this(priorityCount, DefaultMaxBypassed);
+    }
+
+    public PriorityMailbox(int priorityCount, int maxBypassed) {
+        super();
+        if(priorityCount < 1)
+            throw new IllegalArgumentException("priorityCount must be positive");
+        if(maxBypassed < 1)
+            throw new IllegalArgumentException("maxBypassed must be positive");
+        this.maxBypassed = maxBypassed;
+        levels = new UnboundedMailbox[priorityCount];
+        for(int i = 0; i < priorityCount; i++)
+            levels[i] = new UnboundedMailbox();
+        lastPolled = new long[priorityCount];
+    }
+
+    @Override
+    public EnqueueStatus offer(Runnable runnable) {
+        return levels[0].offer(runnable);
+    }
+
+    /**
+     * Add the <tt>runnable</tt> at the tail of the lambdas with the given <tt>priority</tt>.
+     *
+     * @param runnable the lambda to be added
+     * @param priority the priority from 0 to <code>getPriorityCount() - 1</code>
+     * @return the status telling whether the lambda has been added
+     */
+    public EnqueueStatus offer(Runnable runnable, int priority) {
+        return level(priority).offer(runnable);
+    }
+
+    @Override
+    public int offerAll(Collection<? extends Runnable> runnables) {
+        return levels[0].offerAll(runnables);
+    }
+
+    @Override
+    public Runnable poll() {
+        int highest = levels.length - 1;
+        while(highest >= 0 && levels[highest].isEmpty())
+            highest--;
+        if(highest < 0)
+            return null;
+        int priority = highest;
+        if(hasLowerPending(highest)) {
+            if(++bypassed > maxBypassed) {
+                priority = longestNotPolled(highest);
+                bypassed = 0;
+            }
+        }
+        else
+            bypassed = 0;
+        Runnable runnable = levels[priority].poll();
+        if(runnable != null)
+            lastPolled[priority] = ++pollCount;
+        return runnable;
+    }
+
+    private boolean hasLowerPending(int priority) {
+        for(int i = priority - 1; i >= 0; i--)
+            if(!levels[i].isEmpty())
+                return true;
+        return false;
+    }
+
+    private int longestNotPolled(int highest) {
+        int priority = highest;
+        for(int i = highest - 1; i >= 0; i--)
+            if(lastPolled[i] <= lastPolled[priority] && !levels[i].isEmpty())
+                priority = i;
+        return priority;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for(UnboundedMailbox level : levels)
+            size += level.size();
+        return size;
+    }
+
+    /**
+     * Answer the number of lambdas of the given <tt>priority</tt> currently pending in the mailbox.
+     *
+     * @param priority the priority from 0 to <code>getPriorityCount() - 1</code>
+     * @return the number of pending lambdas of the priority
+     */
+    public int size(int priority) {
+        return level(priority).size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for(UnboundedMailbox level : levels)
+            if(!level.isEmpty())
+                return false;
+        return true;
+    }
+
+    public int getPriorityCount() {
+        return levels.length;
+    }
+
+    public int getMaxBypassed() {
+        return maxBypassed;
+    }
+
+    private UnboundedMailbox level(int priority) {
+        if(priority < 0 || priority >= levels.length)
+            throw new IllegalArgumentException("priority " + priority + " not between 0 and " + (levels.length - 1));
+        return levels[priority];
+    }
+
+}
@@ -0,0 +1,233 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.mailbox;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded <code>Mailbox</code> for any number of producers and a single consumer that keeps its lambdas in
+ * a ring buffer allocated up front, so that enqueuing a lambda allocates nothing. A producer claims a slot
+ * by advancing the tail sequence with a compare-and-set and then publishes its lambda into the slot. The
+ * consumer takes the lambda from the slot at the head sequence, clears the slot and advances the head
+ * without any atomic instruction. The head and tail sequences as well as the head last seen by the
+ * producers are padded to cache lines of their own and the slots are padded at both ends of the array,
+ * so that producers and consumer do not invalidate each other's cache lines when they touch different
+ * fields.
+ *
+ * What happens to a lambda offered to a full mailbox is defined by its <code>OverflowPolicy</code>, except
+ * for <code>OverflowPolicy.DROP_OLDEST</code>, which is not supported as only the consumer may take lambdas
+ * out of the ring buffer. A producer that has claimed a slot but not yet published its lambda holds up the
+ * consumer, which finds the mailbox not empty but cannot poll the lambda till it has been published.
+ *
+ * <code>poll()</code> must not be called by several threads concurrently.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class RingBufferMailbox implements Mailbox {
+
+    /**
+     * Number of unused slots at both ends of the array, which make up 128 bytes even with
+     * compressed references.
+     */
+    private static final int SlotPadding = 32;
+
+    private static final AtomicLongFieldUpdater<SequenceValue> SequenceUpdater =
+            AtomicLongFieldUpdater.newUpdater(SequenceValue.class, "value");
+
+    private final AtomicReferenceArray<Runnable> slots;
+    private final int capacity;
+    private final int mask;
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * The next sequence to be claimed by a producer.
+     */
+    private final Sequence tail = new Sequence();
+
+    /**
+     * The head last read by a producer, which spares producers reading the head written by the consumer
+     * as long as the tail is more than a whole buffer ahead of it.
+     */
+    private final Sequence headCache = new Sequence();
+
+    /**
+     * The next sequence to be polled by the consumer.
+     */
+    private final Sequence head = new Sequence();
+
+    /**
+     * Create the ring buffer.
+     *
+     * @param capacity the number of slots of the ring buffer, which must be a power of two
+     * @param overflowPolicy what to do with lambdas offered while the mailbox is full
+     */
+    public RingBufferMailbox(int capacity, OverflowPolicy overflowPolicy) {
+        super();
+        if(capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a power of two");
+        if(overflowPolicy == null)
+            throw new NullPointerException("overflowPolicy null");
+        if(overflowPolicy == OverflowPolicy.DROP_OLDEST)
+            throw new IllegalArgumentException("ring buffer mailbox does not support overflow policy DROP_OLDEST");
+        this.slots = new AtomicReferenceArray<>(capacity + 2 * SlotPadding);
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    @Override
+    public EnqueueStatus offer(Runnable runnable) {
+        if(runnable == null)
+            throw new NullPointerException("runnable null");
+        long sequence;
+        int waits = 0;
+        while((sequence = claim(1)) < 0) {
+            switch (overflowPolicy) {
+                case BLOCK:
+                    if(!awaitRoom(waits++))
+                        return EnqueueStatus.REJECTED;
+                    break;
+                case FAIL:
+                    throw new MailboxFullException("mailbox capacity of " + capacity + " exceeded");
+                case DROP_NEWEST:
+                    return EnqueueStatus.DROPPED;
+                default:
+                    return EnqueueStatus.REJECTED;
+            }
+        }
+        slots.lazySet(slotIndex(sequence), runnable);
+        return EnqueueStatus.ENQUEUED;
+    }
+
+    /**
+     * Claim the slots for all lambdas with a single compare-and-set if there is room for all of them,
+     * otherwise add them one by one as defined by <code>Mailbox.offerAll()</code>.
+     */
+    @Override
+    public int offerAll(Collection<? extends Runnable> runnables) {
+        Runnable[] batch = runnables.toArray(new Runnable[runnables.size()]);
+        for(Runnable runnable : batch)
+            if(runnable == null)
+                throw new NullPointerException("runnable null");
+        if(batch.length == 0)
+            return 0;
+        long sequence = batch.length <= capacity ? claim(batch.length) : -1;
+        if(sequence < 0)
+            return Mailbox.super.offerAll(runnables);
+        for(Runnable runnable : batch)
+            slots.lazySet(slotIndex(sequence++), runnable);
+        return batch.length;
+    }
+
+    @Override
+    public Runnable poll() {
+        long sequence = head.value;
+        int index = slotIndex(sequence);
+        Runnable runnable = slots.get(index);
+        if(runnable == null)
+            return null;
+        slots.lazySet(index, null);
+        SequenceUpdater.lazySet(head, sequence + 1);
+        return runnable;
+    }
+
+    /**
+     * Answer the number of slots claimed by producers and not yet polled, including those whose
+     * lambdas have not yet been published.
+     *
+     * @return the number of pending lambdas
+     */
+    @Override
+    public int size() {
+        long headSequence = head.value;
+        return (int) Math.max(0, Math.min(capacity, tail.value - headSequence));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return head.value == tail.value;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Claim <tt>count</tt> consecutive slots.
+     *
+     * @return the sequence of the first slot claimed or -1 if there is not enough room
+     */
+    private long claim(int count) {
+        while(true) {
+            long current = tail.value;
+            long wrapPoint = current + count - capacity;
+            if(wrapPoint > headCache.value) {
+                long currentHead = head.value;
+                SequenceUpdater.lazySet(headCache, currentHead);
+                if(wrapPoint > currentHead)
+                    return -1;
+            }
+            if(SequenceUpdater.compareAndSet(tail, current, current + count))
+                return current;
+        }
+    }
+
+    /**
+     * Give the consumer time to make room by yielding first and parking for a short while later on.
+     *
+     * @return false if the current thread has been interrupted
+     */
+    private boolean awaitRoom(int waits) {
+        if(Thread.currentThread().isInterrupted())
+            return false;
+        if(waits < 100)
+            Thread.yield();
+        else
+            LockSupport.parkNanos(this, 10000);
+        return true;
+    }
+
+    private int slotIndex(long sequence) {
+        return SlotPadding + ((int) sequence & mask);
+    }
+
+    /**
+     * Padding in front of the value of a sequence. Fields of a superclass are laid out before those of
+     * its subclasses, which the JVM may otherwise reorder.
+     */
+    private static class LeftPadding {
+        protected long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    private static class SequenceValue extends LeftPadding {
+        volatile long value = 0;
+    }
+
+    private static final class Sequence extends SequenceValue {
+        protected long p9, p10, p11, p12, p13, p14, p15;
+    }
+
+}
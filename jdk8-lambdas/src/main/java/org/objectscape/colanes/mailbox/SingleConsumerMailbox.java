@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.mailbox;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Unbounded lock-free <code>Mailbox</code> for any number of producers and a single consumer, which is
+ * what a <code>CoLane</code> is as it never executes more than one drain task at a time. A producer links
+ * its lambda in with a single atomic swap of the tail and never retries, while the consumer takes lambdas
+ * from the head without any atomic instruction at all. Unlike <code>UnboundedMailbox</code> the number of
+ * pending lambdas is not counted on enqueue, so that <code>size()</code> has to traverse the mailbox.
+ *
+ * <code>poll()</code> must not be called by several threads concurrently.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class SingleConsumerMailbox implements Mailbox {
+
+    private static final AtomicReferenceFieldUpdater<SingleConsumerMailbox, Node> TailUpdater =
+            AtomicReferenceFieldUpdater.newUpdater(SingleConsumerMailbox.class, Node.class, "tail");
+    private static final AtomicReferenceFieldUpdater<SingleConsumerMailbox, Node> HeadUpdater =
+            AtomicReferenceFieldUpdater.newUpdater(SingleConsumerMailbox.class, Node.class, "head");
+
+    /**
+     * The node taken last by the consumer, whose successor is the next pending lambda. Only written
+     * by the consumer and read by other threads asking whether the mailbox is empty.
+     */
+    private volatile Node head;
+
+    private volatile Node tail;
+
+    public SingleConsumerMailbox() {
+        super();
+        Node node = new Node(null);
+        head = node;
+        tail = node;
+    }
+
+    @Override
+    public EnqueueStatus offer(Runnable runnable) {
+        if(runnable == null)
+            throw new NullPointerException("runnable null");
+        Node node = new Node(runnable);
+        TailUpdater.getAndSet(this, node).next = node;
+        return EnqueueStatus.ENQUEUED;
+    }
+
+    /**
+     * Link the lambdas up first and then link the whole chain in with a single atomic swap.
+     */
+    @Override
+    public int offerAll(Collection<? extends Runnable> runnables) {
+        Node first = null;
+        Node last = null;
+        for(Runnable runnable : runnables) {
+            if(runnable == null)
+                throw new NullPointerException("runnable null");
+            Node node = new Node(runnable);
+            if(first == null)
+                first = node;
+            else
+                last.next = node;
+            last = node;
+        }
+        if(first == null)
+            return 0;
+        TailUpdater.getAndSet(this, last).next = first;
+        return runnables.size();
+    }
+
+    @Override
+    public Runnable poll() {
+        Node next = head.next;
+        if(next == null)
+            return null;
+        Runnable runnable = next.runnable;
+        next.runnable = null;
+        HeadUpdater.lazySet(this, next);
+        return runnable;
+    }
+
+    /**
+     * Answer the number of pending lambdas by traversing the mailbox. Lambdas being linked in by a
+     * producer at the same time may not be counted.
+     *
+     * @return the number of pending lambdas
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        for(Node node = head.next; node != null; node = node.next)
+            size++;
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return head.next == null;
+    }
+
+    private static final class Node {
+
+        private Runnable runnable;
+
+        /**
+         * Written with a volatile store after the tail has been swapped, so that a producer reading
+         * whether the lane is scheduled afterwards and a consumer checking the mailbox for lambdas
+         * after having reset the scheduled flag cannot both miss each other.
+         */
+        private volatile Node next = null;
+
+        private Node(Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+    }
+
+}
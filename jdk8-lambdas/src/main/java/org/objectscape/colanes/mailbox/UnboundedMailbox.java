@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.mailbox;
+
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <code>Mailbox</code> without a capacity limit, which is what a <code>CoLane</code> uses by default.
+ * The number of pending lambdas is counted separately as <code>ConcurrentLinkedQueue.size()</code>
+ * has to traverse the whole queue. A batch of lambdas is linked into the queue with a single
+ * compare-and-set by <code>ConcurrentLinkedQueue.addAll()</code>.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class UnboundedMailbox implements Mailbox {
+
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger(0);
+
+    @Override
+    public EnqueueStatus offer(Runnable runnable) {
+        size.incrementAndGet();
+        queue.offer(runnable);
+        return EnqueueStatus.ENQUEUED;
+    }
+
+    @Override
+    public int offerAll(Collection<? extends Runnable> runnables) {
+        int count = runnables.size();
+        size.addAndGet(count);
+        try {
+            queue.addAll(runnables);
+        }
+        catch (NullPointerException e) {
+            size.addAndGet(-count);
+            throw e;
+        }
+        return count;
+    }
+
+    @Override
+    public Runnable poll() {
+        Runnable runnable = queue.poll();
+        if(runnable != null)
+            size.decrementAndGet();
+        return runnable;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Runtime metrics of a single lane, obtained by <code>CoLane.getMetrics()</code> once metrics have
+ * been enabled with <code>CoLane.enableMetrics()</code>. The lane records for every lambda the time
+ * it was waiting in the mailbox (queueing delay) and the time it took to execute (service time) as
+ * well as how long the lane has been suspended. Lanes with a priority mailbox additionally report the
+ * queue depth and the queueing delay per priority.
+ *
+ * The <code>record</code> methods are called by the lane and are not meant to be called by users.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class LaneMetrics {
+
+    private final String label;
+    private final IntSupplier queueDepth;
+    private final BooleanSupplier isSuspended;
+    private final IntUnaryOperator priorityQueueDepth;
+
+    private final LatencyHistogram queueingDelay = new LatencyHistogram();
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+
+    /**
+     * Queueing delay per priority, which with a single priority is the same as <tt>queueingDelay</tt>.
+     */
+    private final LatencyHistogram[] priorityQueueingDelay;
+
+    private final AtomicLong stallCount = new AtomicLong();
+
+    private long suspendedNanos = 0;
+    private long suspendedSince = 0;
+    private boolean suspended = false;
+
+    public LaneMetrics(String label, IntSupplier queueDepth, BooleanSupplier isSuspended) {
+        this(label, queueDepth, isSuspended, 1, (int priority) -> queueDepth.getAsInt());
+    }
+
+    public LaneMetrics(String label, IntSupplier queueDepth, BooleanSupplier isSuspended, int priorityCount, IntUnaryOperator priorityQueueDepth) {
+        super();
+        if(priorityCount < 1)
+            throw new IllegalArgumentException("priorityCount must be positive");
+        this.label = label;
+        this.queueDepth = queueDepth;
+        this.isSuspended = isSuspended;
+        this.priorityQueueDepth = priorityQueueDepth;
+        priorityQueueingDelay = new LatencyHistogram[priorityCount];
+        if(priorityCount == 1)
+            priorityQueueingDelay[0] = queueingDelay;
+        else
+            for(int i = 0; i < priorityCount; i++)
+                priorityQueueingDelay[i] = new LatencyHistogram();
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Answer the number of lambdas currently pending in the mailbox of the lane.
+     *
+     * @return the current queue depth
+     */
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    /**
+     * Answer the number of lambdas of the given <tt>priority</tt> currently pending in the mailbox of the lane.
+     *
+     * @param priority the priority from 0 to <code>getPriorityCount() - 1</code>
+     * @return the current queue depth of the priority
+     */
+    public int getQueueDepth(int priority) {
+        checkPriority(priority);
+        return priorityQueueDepth.applyAsInt(priority);
+    }
+
+    public int getPriorityCount() {
+        return priorityQueueingDelay.length;
+    }
+
+    public long getTasksExecuted() {
+        return serviceTime.getCount();
+    }
+
+    /**
+     * Answer the histogram of the time between enqueuing a lambda and the start of its execution.
+     *
+     * @return the queueing delay histogram
+     */
+    public LatencyHistogram getQueueingDelay() {
+        return queueingDelay;
+    }
+
+    /**
+     * Answer the histogram of the queueing delay of the lambdas of the given <tt>priority</tt>.
+     *
+     * @param priority the priority from 0 to <code>getPriorityCount() - 1</code>
+     * @return the queueing delay histogram of the priority
+     */
+    public LatencyHistogram getQueueingDelay(int priority) {
+        checkPriority(priority);
+        return priorityQueueingDelay[priority];
+    }
+
+    /**
+     * Answer the histogram of the time it took to execute a lambda.
+     *
+     * @return the service time histogram
+     */
+    public LatencyHistogram getServiceTime() {
+        return serviceTime;
+    }
+
+    /**
+     * Answer the number of lambdas reported as stalled by the <code>LaneWatchdog</code> of the lane.
+     *
+     * @return the number of stalls
+     */
+    public long getStallCount() {
+        return stallCount.get();
+    }
+
+    /**
+     * Answer the total time the lane has been suspended including the current suspension if any.
+     *
+     * @param unit the unit of the returned duration
+     * @return the total time suspended
+     */
+    public synchronized long getSuspendedTime(TimeUnit unit) {
+        long nanos = suspendedNanos;
+        if(suspended)
+            nanos += System.nanoTime() - suspendedSince;
+        return unit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordExecution(long enqueueTime, long startTime, long endTime) {
+        recordExecution(enqueueTime, startTime, endTime, 0);
+    }
+
+    public void recordExecution(long enqueueTime, long startTime, long endTime, int priority) {
+        queueingDelay.record(startTime - enqueueTime);
+        if(priorityQueueingDelay.length > 1)
+            priorityQueueingDelay[priority].record(startTime - enqueueTime);
+        serviceTime.record(endTime - startTime);
+    }
+
+    public void recordStall() {
+        stallCount.incrementAndGet();
+    }
+
+    private void checkPriority(int priority) {
+        if(priority < 0 || priority >= priorityQueueingDelay.length)
+            throw new IllegalArgumentException("priority " + priority + " not between 0 and " + (priorityQueueingDelay.length - 1));
+    }
+
+    /**
+     * Called after the suspend count of the lane has changed. As the calls for two changes by
+     * different threads may be reordered the suspend state of the lane is checked again.
+     */
+    public synchronized void recordSuspendChanged() {
+        boolean nowSuspended = isSuspended.getAsBoolean();
+        if(nowSuspended == suspended)
+            return;
+        long now = System.nanoTime();
+        if(nowSuspended)
+            suspendedSince = now;
+        else
+            suspendedNanos += now - suspendedSince;
+        suspended = nowSuspended;
+    }
+
+    @Override
+    public String toString() {
+        return "LaneMetrics{" +
+                "label=" + label +
+                ", queueDepth=" + getQueueDepth() +
+                ", tasksExecuted=" + getTasksExecuted() +
+                ", queueingDelay=[" + queueingDelay +
+                "], serviceTime=[" + serviceTime +
+                "], stallCount=" + getStallCount() +
+                ", suspendedMillis=" + getSuspendedTime(TimeUnit.MILLISECONDS) +
+                '}';
+    }
+
+}
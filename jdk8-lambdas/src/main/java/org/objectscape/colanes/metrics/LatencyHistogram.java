@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Histogram of durations in nanoseconds with log-linear buckets: every power of two is divided
+ * into 8 buckets, so that a recorded value is off by at most 12.5% when read back. Recording
+ * takes constant time and does not allocate.
+ *
+ * A histogram has a single writer at a time, which is the thread currently draining the lane the
+ * histogram belongs to, whereas it may be read by any thread. Values read while the writer is
+ * recording may lag behind by the values currently being recorded.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class LatencyHistogram {
+
+    private static final int SubBucketBits = 3;
+    private static final int SubBucketCount = 1 << SubBucketBits;
+    private static final int SubBucketMask = SubBucketCount - 1;
+    private static final int BucketCount = (64 - SubBucketBits) * SubBucketCount;
+
+    private static final AtomicLongFieldUpdater<LatencyHistogram> CountUpdater = AtomicLongFieldUpdater.newUpdater(LatencyHistogram.class, "count");
+    private static final AtomicLongFieldUpdater<LatencyHistogram> TotalUpdater = AtomicLongFieldUpdater.newUpdater(LatencyHistogram.class, "total");
+    private static final AtomicLongFieldUpdater<LatencyHistogram> MaxUpdater = AtomicLongFieldUpdater.newUpdater(LatencyHistogram.class, "max");
+
+    private final AtomicLongArray counts = new AtomicLongArray(BucketCount);
+    private volatile long count = 0;
+    private volatile long total = 0;
+    private volatile long max = 0;
+
+    /**
+     * Record a duration. Must only be called by a single thread at a time.
+     *
+     * @param nanos the duration in nanoseconds, negative durations are recorded as zero
+     */
+    public void record(long nanos) {
+        if(nanos < 0)
+            nanos = 0;
+        int index = indexOf(nanos);
+        // ordered stores suffice with a single writer and are much cheaper than volatile stores
+        counts.lazySet(index, counts.get(index) + 1);
+        TotalUpdater.lazySet(this, total + nanos);
+        if(nanos > max)
+            MaxUpdater.lazySet(this, nanos);
+        CountUpdater.lazySet(this, count + 1);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotal(TimeUnit unit) {
+        return unit.convert(total, TimeUnit.NANOSECONDS);
+    }
+
+    public long getMax(TimeUnit unit) {
+        return unit.convert(max, TimeUnit.NANOSECONDS);
+    }
+
+    public double getMean(TimeUnit unit) {
+        long count = this.count;
+        if(count == 0)
+            return 0;
+        return (double) total / count / unit.toNanos(1);
+    }
+
+    /**
+     * Answer the duration below or at which the given percentage of the recorded durations lie.
+     * The upper bound of the bucket the percentile falls into is returned, but never more than
+     * the maximum recorded duration.
+     *
+     * @param percentile the percentile between 0 and 100, e.g. 99.9
+     * @param unit the unit of the returned duration
+     * @return the duration at the given percentile or 0 if nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile, TimeUnit unit) {
+        if(percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        long total = 0;
+        for(int i = 0; i < BucketCount; i++)
+            total += counts.get(i);
+        if(total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for(int i = 0; i < BucketCount; i++) {
+            seen += counts.get(i);
+            if(seen >= rank)
+                return unit.convert(Math.min(upperBoundOf(i), max), TimeUnit.NANOSECONDS);
+        }
+        return unit.convert(max, TimeUnit.NANOSECONDS);
+    }
+
+    static int indexOf(long value) {
+        if(value < SubBucketCount)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SubBucketBits)) & SubBucketMask;
+        return (exponent - SubBucketBits + 1) * SubBucketCount + subBucket;
+    }
+
+    static long upperBoundOf(int index) {
+        if(index < SubBucketCount)
+            return index;
+        int exponent = index / SubBucketCount + SubBucketBits - 1;
+        long subBucket = index & SubBucketMask;
+        long lowerBound = (SubBucketCount + subBucket) << (exponent - SubBucketBits);
+        return lowerBound + (1L << (exponent - SubBucketBits)) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count
+                + ", mean=" + (long) getMean(TimeUnit.NANOSECONDS)
+                + "ns, p50=" + getValueAtPercentile(50, TimeUnit.NANOSECONDS)
+                + "ns, p99=" + getValueAtPercentile(99, TimeUnit.NANOSECONDS)
+                + "ns, max=" + max + "ns";
+    }
+
+}
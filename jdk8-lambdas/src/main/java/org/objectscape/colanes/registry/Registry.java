@@ -17,15 +17,25 @@
 
 package org.objectscape.colanes.registry;
 
+import org.objectscape.colanes.CoLane;
 import org.objectscape.colanes.CoReceiver;
+import org.objectscape.colanes.LaneGroup;
+import org.objectscape.colanes.executor.HawtDispatchLaneExecutor;
+import org.objectscape.colanes.executor.LaneExecutor;
 import org.objectscape.colanes.util.Signature;
 import org.objectscape.colanes.util.atomic.map.ListenableAtomicMap;
 import org.objectscape.colanes.util.concurrent.map.ListenableConcurrentHashMap;
 import org.objectscape.colanes.util.concurrent.map.ListenableConcurrentMap;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import static scala.concurrent.stm.japi.STM.atomic;
 import static scala.concurrent.stm.japi.STM.newMap;
@@ -66,6 +76,11 @@ public class Registry {
      */
     private final Map<Class<? extends CoReceiver>, CoReceiver> singletonActiveObjectsByClass = newMap();
 
+    /**
+     * Map of lane groups registered to the registry by their names
+     */
+    private final Map<String, LaneGroup> laneGroupsByName = newMap();
+
     /**
      * Map of ConcurrentMaps registered to the registry by their names
      */
@@ -86,6 +101,28 @@ public class Registry {
      */
     private final Map<String, Map<?, ?>> StmMapsByName = newMap();
 
+    /**
+     * The <code>LaneExecutor</code> lanes created for this registry are drained by
+     */
+    private volatile LaneExecutor laneExecutor = new HawtDispatchLaneExecutor();
+
+    /**
+     * Number of stripes the tracked lanes are spread over, a power of two.
+     */
+    private static final int TrackedLaneStripes = 16;
+
+    /**
+     * The lanes <code>awaitQuiescence()</code> waits for, spread over several sets by identity hash code
+     * so that lanes created concurrently seldom contend for the same lock. Lanes are only referenced weakly
+     * so that lanes no longer used are not kept alive by the registry. Every stripe is guarded by itself.
+     */
+    private final List<Set<CoLane>> trackedLanes = new ArrayList<>(TrackedLaneStripes);
+
+    {
+        for(int i = 0; i < TrackedLaneStripes; i++)
+            trackedLanes.add(Collections.newSetFromMap(new WeakHashMap<>()));
+    }
+
     /**
      * Return the default registry that is always guaranteed to exist
      *
@@ -117,6 +154,88 @@ public class Registry {
         });
     }
 
+    /**
+     * Return the <code>LaneExecutor</code> lanes created for this registry are drained by.
+     *
+     * @return the executor of the registry
+     */
+    public LaneExecutor getLaneExecutor() {
+        return laneExecutor;
+    }
+
+    /**
+     * Set the <code>LaneExecutor</code> lanes created for this registry are drained by. Lanes
+     * that have already been created keep the executor they were created with.
+     *
+     * @param laneExecutor the executor to be used for lanes created afterwards
+     */
+    public void setLaneExecutor(LaneExecutor laneExecutor) {
+        if(laneExecutor == null)
+            throw new NullPointerException("laneExecutor null");
+        this.laneExecutor = laneExecutor;
+    }
+
+    /**
+     * Create a new <code>CoLane</code> that is drained by the <code>LaneExecutor</code> of this registry.
+     *
+     * @return the new lane
+     */
+    public CoLane newLane() {
+        return trackLane(new CoLane(laneExecutor));
+    }
+
+    /**
+     * Create a new <code>CoLane</code> with the given <tt>label</tt> that is drained by the
+     * <code>LaneExecutor</code> of this registry.
+     *
+     * @param label the label of the lane
+     * @return the new lane
+     */
+    public CoLane newLane(String label) {
+        return trackLane(new CoLane(label, laneExecutor));
+    }
+
+    /**
+     * Let <code>awaitQuiescence()</code> of this registry wait for the given lane. All lanes are tracked by
+     * the default registry when they are created and lanes created by <code>newLane()</code> by the registry
+     * that created them as well. Lanes are only referenced weakly.
+     *
+     * @param lane the lane to be tracked
+     * @return the lane for convenience
+     */
+    public CoLane trackLane(CoLane lane) {
+        Set<CoLane> stripe = trackedLanes.get(stripe(lane));
+        synchronized (stripe) {
+            stripe.add(lane);
+        }
+        return lane;
+    }
+
+    private static int stripe(CoLane lane) {
+        int hash = System.identityHashCode(lane);
+        return (hash ^ (hash >>> 16)) & (TrackedLaneStripes - 1);
+    }
+
+    /**
+     * Wait till none of the lanes tracked by this registry has any lambdas pending or executing, e.g. before
+     * shutting down or after a test, see <code>CoLane.awaitQuiescence()</code>. Lanes that have been shut
+     * down and are terminated are quiescent.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of <tt>timeout</tt>
+     * @return true if the lanes became quiescent, false if the timeout elapsed before
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitQuiescence(long timeout, TimeUnit unit) throws InterruptedException {
+        List<CoLane> lanes = new ArrayList<>();
+        for(Set<CoLane> stripe : trackedLanes) {
+            synchronized (stripe) {
+                lanes.addAll(stripe);
+            }
+        }
+        return CoLane.awaitQuiescence(lanes, timeout, unit);
+    }
+
     /**
      * Register an lane with an registry. Assumes that the lane's <code>getName()</code> does
      * not return null. Otherwise throws a NullPointerException. Throws an LaneAlreadyRegisteredException
@@ -136,6 +255,50 @@ public class Registry {
         });
     }
 
+    /**
+     * Register a lane group with the registry by its name. Throws a LaneAlreadyRegisteredException
+     * in case a lane group with the same name is already registered.
+     *
+     * @param laneGroup the lane group to be registered
+     * @return the registered lane group for convenience
+     */
+    public LaneGroup registerLaneGroup(LaneGroup laneGroup)
+    {
+        return atomic(()-> {
+            String name = laneGroup.getName();
+            if(laneGroupsByName.containsKey(name))
+                throw new LaneAlreadyRegisteredException("lane group with name " + name + " already registered");
+            laneGroupsByName.put(name, laneGroup);
+            return laneGroup;
+        });
+    }
+
+    /**
+     * Return the lane group registered with the <tt>name</tt> or null if there isn't one.
+     *
+     * @param name of the lane group to be retrieved
+     * @return the lane group if any registered with the <tt>name</tt>, otherwise null
+     */
+    public LaneGroup getLaneGroup(String name)
+    {
+        return atomic(()-> {
+            return laneGroupsByName.get(name);
+        });
+    }
+
+    /**
+     * Deregister the lane group registered with the <tt>name</tt>.
+     *
+     * @param name of the lane group
+     * @return true if a lane group with the given name was registered with the registry, otherwise false
+     */
+    public boolean deregisterLaneGroup(String name)
+    {
+        return atomic(()-> {
+            return laneGroupsByName.remove(name) != null;
+        });
+    }
+
     /**
      * Register an lane with an registry, which is a singleton for its class. Assumes that the active
      * object's <code>getName()</code> does not return null. Otherwise throws a NullPointerException. Throws an
@@ -292,11 +455,13 @@ public class Registry {
      * Clear all the registered maps and lanes of the registry. Invoking this methods
      * results in the registry to become completely empty. So this method should be handled with
      * care.
+     * Tracked lanes are kept, as they may still be running, and are dropped once no longer referenced.
      */
     public void clear() {
         atomic(()-> {
             activeObjectMapsByName.clear();
             singletonActiveObjectsByClass.clear();
+            laneGroupsByName.clear();
             concurrentMapsByName.clear();
             ListenableConcurrentMapsByName.clear();
             StmMapsByName.clear();
@@ -0,0 +1,324 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.timer;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hierarchical hashed timer wheel in the spirit of the timer wheels of the Linux kernel and of Netty.
+ * Scheduling and cancelling a lambda take constant time no matter how many lambdas are pending. The
+ * wheel consists of 4 levels of 512 slots each. A lambda is placed in level 0 if it is due within the
+ * next 512 ticks, otherwise in the level that covers its delay. Every time a lower level has turned
+ * round once the next slot of the level above is cascaded down into the lower levels.
+ *
+ * The slots are only ever touched by the worker thread of the wheel. Newly scheduled and cancelled
+ * lambdas are handed over to the worker thread through lock-free queues and are transferred into the
+ * slots at the next tick. Lambdas are executed by the worker thread and must therefore be short, e.g.
+ * enqueue a lambda on a lane or hand it over to a <code>LaneExecutor</code>. A lambda is never executed
+ * before its delay has elapsed, but it may be executed up to one tick late.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class HashedTimerWheel {
+
+    private static final int WheelBits = 9;
+    private static final int WheelSize = 1 << WheelBits;
+    private static final int WheelMask = WheelSize - 1;
+    private static final int Levels = 4;
+    private static final long MaxTicks = 1L << (WheelBits * Levels);
+
+    /**
+     * Maximum number of newly scheduled lambdas transferred into the slots per tick so that a burst
+     * of scheduled lambdas does not delay the execution of lambdas that are due.
+     */
+    private static final int MaxTransfersPerTick = 100000;
+
+    private static volatile HashedTimerWheel DefaultWheel = null;
+
+    private final TimerBucket[][] buckets = new TimerBucket[Levels][WheelSize];
+    private final Queue<Timeout> scheduledTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingCount = new AtomicLong();
+
+    private final long tickNanos;
+    private final long startTime;
+    private final Thread workerThread;
+    private volatile boolean stopped = false;
+
+    /**
+     * Set by the worker thread while it is parked as no lambdas are pending, so that <code>schedule()</code>
+     * knows it has to wake it up.
+     */
+    private volatile boolean idle = false;
+
+    /**
+     * The next tick to be processed. Only accessed by the worker thread.
+     */
+    private long currentTick = 0;
+
+    public HashedTimerWheel() {
+        this("colanes-timer", 1, TimeUnit.MILLISECONDS);
+    }
+
+    public HashedTimerWheel(String threadName, long tickDuration, TimeUnit unit) {
+        super();
+        tickNanos = unit.toNanos(tickDuration);
+        if(tickNanos <= 0)
+            throw new IllegalArgumentException("tickDuration must be positive");
+        for(int level = 0; level < Levels; level++)
+            for(int slot = 0; slot < WheelSize; slot++)
+                buckets[level][slot] = new TimerBucket();
+        startTime = System.nanoTime();
+        workerThread = new Thread(() -> { work(); }, threadName);
+        workerThread.setDaemon(true);
+        workerThread.start();
+    }
+
+    /**
+     * Answer the timer wheel shared by all lanes and executors. It ticks every millisecond and is
+     * created when it is first used.
+     *
+     * @return the default timer wheel
+     */
+    public static HashedTimerWheel getDefault() {
+        HashedTimerWheel wheel = DefaultWheel;
+        if(wheel != null)
+            return wheel;
+        synchronized (HashedTimerWheel.class) {
+            if(DefaultWheel == null)
+                DefaultWheel = new HashedTimerWheel();
+            return DefaultWheel;
+        }
+    }
+
+    /**
+     * Execute the given lambda once after the given delay has elapsed.
+     *
+     * @param runnable the lambda to be executed by the worker thread of the wheel
+     * @param delay the delay after which the lambda is executed
+     * @param unit the unit of the delay
+     * @return handle to cancel the lambda
+     */
+    public Timeout schedule(Runnable runnable, long delay, TimeUnit unit) {
+        return add(runnable, delay, unit, 0);
+    }
+
+    /**
+     * Execute the given lambda repeatedly at a fixed rate, first after the initial delay has elapsed
+     * and then every period. If the wheel falls behind the lambda is executed once per missed period
+     * to catch up.
+     *
+     * @param runnable the lambda to be executed by the worker thread of the wheel
+     * @param initialDelay the delay after which the lambda is executed for the first time
+     * @param period the period between two executions
+     * @param unit the unit of the delay and the period
+     * @return handle to stop the repeated execution
+     */
+    public Timeout scheduleAtFixedRate(Runnable runnable, long initialDelay, long period, TimeUnit unit) {
+        if(period <= 0)
+            throw new IllegalArgumentException("period must be positive");
+        return add(runnable, initialDelay, unit, Math.max(1, toTicks(unit.toNanos(period))));
+    }
+
+    /**
+     * Answer the number of lambdas that are scheduled and have neither been executed nor cancelled.
+     * Periodic lambdas are counted until they are cancelled.
+     *
+     * @return number of pending lambdas
+     */
+    public long getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public long getTickDuration(TimeUnit unit) {
+        return unit.convert(tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stop the worker thread. Pending lambdas are not executed any more.
+     */
+    public void stop() {
+        stopped = true;
+        LockSupport.unpark(workerThread);
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    private Timeout add(Runnable runnable, long delay, TimeUnit unit, long periodTicks) {
+        if(runnable == null)
+            throw new NullPointerException("runnable null");
+        if(stopped)
+            throw new IllegalStateException("timer wheel stopped");
+        long deadline = System.nanoTime() - startTime + Math.max(0, unit.toNanos(delay));
+        // tick n is processed at the end of the tick, i.e. when n + 1 ticks have elapsed
+        Timeout timeout = new Timeout(this, runnable, Math.max(0, toTicks(deadline) - 1), periodTicks);
+        pendingCount.incrementAndGet();
+        scheduledTimeouts.add(timeout);
+        if(idle)
+            LockSupport.unpark(workerThread);
+        return timeout;
+    }
+
+    void cancelled(Timeout timeout) {
+        pendingCount.decrementAndGet();
+        cancelledTimeouts.add(timeout);
+    }
+
+    private long toTicks(long nanos) {
+        return (nanos + tickNanos - 1) / tickNanos;
+    }
+
+    private void work() {
+        while(waitForNextTick()) {
+            removeCancelledTimeouts();
+            transferScheduledTimeouts();
+            cascade();
+            Timeout rescheduled = expireTimeouts();
+            currentTick++;
+            // periodic lambdas are placed again once the expired slot has been left behind
+            while(rescheduled != null) {
+                Timeout timeout = rescheduled;
+                rescheduled = timeout.next;
+                timeout.next = null;
+                if(timeout.state() == Timeout.Init)
+                    place(timeout);
+            }
+        }
+    }
+
+    private boolean waitForNextTick() {
+        if(pendingCount.get() == 0)
+            awaitScheduled();
+        long deadline = tickNanos * (currentTick + 1);
+        while(!stopped) {
+            long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if(sleepNanos <= 0)
+                return true;
+            LockSupport.parkNanos(this, sleepNanos);
+        }
+        return false;
+    }
+
+    /**
+     * Park without a timeout while no lambdas are pending, so that an idle wheel does not wake up every
+     * tick. <tt>idle</tt> is set before <tt>pendingCount</tt> is read again and <code>add()</code> increments
+     * <tt>pendingCount</tt> before it reads <tt>idle</tt>, so that one of both sees the other's write. As the
+     * slots hold no pending lambdas, the ticks that elapsed while parked are skipped.
+     */
+    private void awaitScheduled() {
+        removeCancelledTimeouts();
+        idle = true;
+        while(!stopped && pendingCount.get() == 0)
+            LockSupport.park(this);
+        idle = false;
+        long elapsedTicks = (System.nanoTime() - startTime) / tickNanos;
+        if(elapsedTicks > currentTick)
+            currentTick = elapsedTicks;
+    }
+
+    private void removeCancelledTimeouts() {
+        Timeout timeout;
+        while((timeout = cancelledTimeouts.poll()) != null) {
+            if(timeout.bucket != null)
+                timeout.bucket.remove(timeout);
+        }
+    }
+
+    private void transferScheduledTimeouts() {
+        for(int i = 0; i < MaxTransfersPerTick; i++) {
+            Timeout timeout = scheduledTimeouts.poll();
+            if(timeout == null)
+                return;
+            if(timeout.state() == Timeout.Init)
+                place(timeout);
+        }
+    }
+
+    private void place(Timeout timeout) {
+        long tick = Math.max(timeout.deadlineTick, currentTick);
+        long delta = tick - currentTick;
+        if(delta >= MaxTicks) {
+            // placed into the farthest slot and placed again once it is cascaded down
+            tick = currentTick + MaxTicks - 1;
+            delta = MaxTicks - 1;
+        }
+        int level = 0;
+        while(delta >= (1L << (WheelBits * (level + 1))))
+            level++;
+        int slot = (int) ((tick >>> (WheelBits * level)) & WheelMask);
+        buckets[level][slot].add(timeout);
+    }
+
+    private void cascade() {
+        if((currentTick & WheelMask) != 0)
+            return;
+        for(int level = 1; level < Levels; level++) {
+            int slot = (int) ((currentTick >>> (WheelBits * level)) & WheelMask);
+            TimerBucket bucket = buckets[level][slot];
+            Timeout timeout;
+            while((timeout = bucket.poll()) != null)
+                place(timeout);
+            if(slot != 0)
+                return;
+        }
+    }
+
+    private Timeout expireTimeouts() {
+        TimerBucket bucket = buckets[0][(int) (currentTick & WheelMask)];
+        Timeout rescheduled = null;
+        Timeout timeout;
+        while((timeout = bucket.poll()) != null) {
+            if(timeout.deadlineTick > currentTick) {
+                place(timeout);
+                continue;
+            }
+            if(!timeout.isPeriodic()) {
+                if(timeout.expire()) {
+                    pendingCount.decrementAndGet();
+                    execute(timeout.task);
+                }
+                continue;
+            }
+            if(timeout.state() != Timeout.Init)
+                continue;
+            execute(timeout.task);
+            timeout.deadlineTick += timeout.periodTicks;
+            timeout.next = rescheduled;
+            rescheduled = timeout;
+        }
+        return rescheduled;
+    }
+
+    private void execute(Runnable runnable) {
+        try {
+            runnable.run();
+        }
+        catch (Throwable e) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.timer;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Handle of a lambda scheduled on a <code>HashedTimerWheel</code> that can be used to cancel it.
+ * The links to the neighbours in the bucket of the wheel are only ever touched by the worker thread
+ * of the wheel, whereas the state may be changed by any thread.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class Timeout {
+
+    static final int Init = 0;
+    static final int Cancelled = 1;
+    static final int Expired = 2;
+
+    private static final AtomicIntegerFieldUpdater<Timeout> StateUpdater = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+    private final HashedTimerWheel wheel;
+    final Runnable task;
+
+    /**
+     * The tick at the end of which the lambda is due.
+     */
+    long deadlineTick;
+
+    /**
+     * Number of ticks between two executions of a periodic lambda or zero if the lambda is executed once.
+     */
+    final long periodTicks;
+
+    private volatile int state = Init;
+
+    Timeout next = null;
+    Timeout previous = null;
+    TimerBucket bucket = null;
+
+    Timeout(HashedTimerWheel wheel, Runnable task, long deadlineTick, long periodTicks) {
+        super();
+        this.wheel = wheel;
+        this.task = task;
+        this.deadlineTick = deadlineTick;
+        this.periodTicks = periodTicks;
+    }
+
+    /**
+     * Cancel the scheduled lambda. A periodic lambda that is being executed while it is cancelled is
+     * not scheduled again.
+     *
+     * @return true if the lambda was cancelled, false if it had already been executed or cancelled
+     */
+    public boolean cancel() {
+        if(!StateUpdater.compareAndSet(this, Init, Cancelled))
+            return false;
+        wheel.cancelled(this);
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return state == Cancelled;
+    }
+
+    /**
+     * Answer whether the lambda has been executed. Periodic lambdas never expire.
+     *
+     * @return true if the lambda has been executed
+     */
+    public boolean isExpired() {
+        return state == Expired;
+    }
+
+    boolean isPeriodic() {
+        return periodTicks > 0;
+    }
+
+    boolean expire() {
+        return StateUpdater.compareAndSet(this, Init, Expired);
+    }
+
+    int state() {
+        return state;
+    }
+
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.timer;
+
+/**
+ * Doubly linked list of the <code>Timeout</code>s in one slot of a <code>HashedTimerWheel</code>,
+ * which allows removing a cancelled <code>Timeout</code> in constant time. Only ever accessed by the
+ * worker thread of the wheel.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+class TimerBucket {
+
+    // the methods are only called by the timer thread and need no synchronization
+    private Timeout head = null;
+    private Timeout tail = null;
+
+    void add(Timeout timeout) {
+        timeout.bucket = this;
+        if(head == null) {
+            head = tail = timeout;
+            return;
+        }
+        tail.next = timeout;
+        timeout.previous = tail;
+        tail = timeout;
+    }
+
+    void remove(Timeout timeout) {
+        Timeout next = timeout.next;
+        if(timeout.previous != null)
+            timeout.previous.next = next;
+        if(next != null)
+            next.previous = timeout.previous;
+        if(timeout == head)
+            head = next;
+        if(timeout == tail)
+            tail = timeout.previous;
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.bucket = null;
+    }
+
+    /**
+     * Remove and return the first <code>Timeout</code> of the bucket.
+     *
+     * @return the first <code>Timeout</code> or null if the bucket is empty
+     */
+    Timeout poll() {
+        Timeout timeout = head;
+        if(timeout != null)
+            remove(timeout);
+        return timeout;
+    }
+
+}
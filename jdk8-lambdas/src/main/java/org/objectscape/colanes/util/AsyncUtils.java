@@ -1,6 +1,8 @@
 package org.objectscape.colanes.util;
 
-import org.fusesource.hawtdispatch.Dispatch;
+import org.objectscape.colanes.executor.LaneExecutor;
+import org.objectscape.colanes.registry.Registry;
+import org.objectscape.colanes.timer.Timeout;
 
 import java.util.concurrent.TimeUnit;
 
@@ -13,12 +15,22 @@ import java.util.concurrent.TimeUnit;
  */
 public interface AsyncUtils {
 
+    /**
+     * Answer the <code>LaneExecutor</code> lambdas passed to <code>async()</code> are executed by.
+     * Defaults to the one of the default <code>Registry</code>.
+     *
+     * @return the executor for asynchronous lambdas
+     */
+    default public LaneExecutor asyncExecutor() {
+        return Registry.getDefault().getLaneExecutor();
+    }
+
     default public void async(Runnable runnable) {
-        Dispatch.getGlobalQueue().execute(runnable);
+        asyncExecutor().execute(runnable);
     }
 
-    default public void asyncAfter(long duration, TimeUnit unit, Runnable runnable) {
-        Dispatch.getGlobalQueue().executeAfter(duration, unit, runnable);
+    default public Timeout asyncAfter(long duration, TimeUnit unit, Runnable runnable) {
+        return asyncExecutor().executeAfter(duration, unit, runnable);
     }
 
 }
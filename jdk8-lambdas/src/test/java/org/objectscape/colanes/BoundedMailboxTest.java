@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.objectscape.colanes.mailbox.EnqueueStatus;
+import org.objectscape.colanes.mailbox.MailboxFullException;
+import org.objectscape.colanes.mailbox.OverflowPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test cases for lanes with a bounded mailbox. The lanes are suspended while being filled so
+ * that none of the lambdas is executed before the mailbox is full.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class BoundedMailboxTest extends AbstractTest {
+
+    @Test
+    public void dropNewest() throws InterruptedException {
+        List<Integer> results = new ArrayList<>();
+        CoLane lane = fill(OverflowPolicy.DROP_NEWEST, results);
+
+        Assert.assertEquals(EnqueueStatus.DROPPED, lane.run(() -> { results.add(3); }));
+        Assert.assertEquals(2, lane.getQueueDepth());
+
+        drain(lane);
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals(1, results.get(1).intValue());
+    }
+
+    @Test
+    public void dropOldest() throws InterruptedException {
+        List<Integer> results = new ArrayList<>();
+        CoLane lane = fill(OverflowPolicy.DROP_OLDEST, results);
+
+        Assert.assertEquals(EnqueueStatus.OLDEST_DROPPED, lane.run(() -> { results.add(2); }));
+        Assert.assertEquals(2, lane.getQueueDepth());
+
+        drain(lane);
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals(1, results.get(0).intValue());
+        Assert.assertEquals(2, results.get(1).intValue());
+    }
+
+    @Test
+    public void signal() throws InterruptedException {
+        List<Integer> results = new ArrayList<>();
+        CoLane lane = fill(OverflowPolicy.SIGNAL, results);
+        Assert.assertEquals(EnqueueStatus.REJECTED, lane.run(() -> { results.add(2); }));
+        drain(lane);
+        Assert.assertEquals(2, results.size());
+    }
+
+    @Test
+    public void fail() throws InterruptedException {
+        CoLane lane = fill(OverflowPolicy.FAIL, new ArrayList<>());
+        try {
+            lane.run(() -> { });
+            Assert.fail();
+        }
+        catch (MailboxFullException e) { }
+        // not left suspended with lambdas pending, which Registry.awaitQuiescence() would wait for
+        drain(lane);
+    }
+
+    @Test
+    public void block() throws InterruptedException {
+        List<Integer> results = new ArrayList<>();
+        CoLane lane = fill(OverflowPolicy.BLOCK, results);
+        CountDownLatch enqueued = new CountDownLatch(1);
+
+        new Thread(() -> {
+            lane.run(() -> { results.add(2); });
+            enqueued.countDown();
+        }).start();
+
+        Assert.assertFalse(enqueued.await(200, TimeUnit.MILLISECONDS));
+        lane.resume();
+        Assert.assertTrue(enqueued.await(10, TimeUnit.SECONDS));
+
+        lane.suspend();
+        drain(lane);
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals(2, results.get(2).intValue());
+    }
+
+    @Test
+    public void handbackNotEnqueued() throws InterruptedException {
+        CoLane lane = fill(OverflowPolicy.SIGNAL, new ArrayList<>());
+        HandbackFutureCompletion<String> handback = lane.<String>getHandbackFutureCompletion().supplier(() -> "hello").runAsync();
+
+        Assert.assertTrue(handback.future().isCompletedExceptionally());
+        try {
+            handback.future().get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof MailboxFullException);
+        }
+        drain(lane);
+    }
+
+    @Test
+    public void handbackDroppedAsOldest() throws InterruptedException {
+        List<Integer> results = new ArrayList<>();
+        CoLane lane = new CoLane().mailboxCapacity(2, OverflowPolicy.DROP_OLDEST);
+        lane.suspend();
+        HandbackFutureCompletion<String> handback = lane.<String>getHandbackFutureCompletion().supplier(() -> "hello").runAsync();
+        Assert.assertEquals(EnqueueStatus.ENQUEUED, lane.run(() -> { results.add(0); }));
+        Assert.assertFalse(handback.isDone());
+
+        Assert.assertEquals(EnqueueStatus.OLDEST_DROPPED, lane.run(() -> { results.add(1); }));
+        Assert.assertTrue(handback.isDone());
+        assertNotEnqueued(handback);
+
+        drain(lane);
+        Assert.assertEquals(2, results.size());
+    }
+
+    @Test
+    public void handbackFailed() throws InterruptedException {
+        CoLane lane = fill(OverflowPolicy.FAIL, new ArrayList<>());
+        HandbackFutureCompletion<String> handback = lane.<String>getHandbackFutureCompletion().supplier(() -> "hello");
+        try {
+            handback.runAsync();
+            Assert.fail();
+        }
+        catch (MailboxFullException e) { }
+
+        Assert.assertTrue(handback.isDone());
+        assertNotEnqueued(handback);
+        drain(lane);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void configureStartedLane() {
+        CoLane lane = new CoLane();
+        lane.run(() -> { });
+        lane.mailboxCapacity(10, OverflowPolicy.BLOCK);
+    }
+
+    private void assertNotEnqueued(HandbackFutureCompletion<String> handback) throws InterruptedException {
+        Assert.assertFalse(handback.isEnqueued());
+        Assert.assertTrue(handback.isRejected());
+        Assert.assertTrue(handback.isDone());
+        Assert.assertTrue(handback.future().isCompletedExceptionally());
+        try {
+            handback.future().get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof MailboxFullException);
+        }
+    }
+
+    private CoLane fill(OverflowPolicy overflowPolicy, List<Integer> results) {
+        CoLane lane = new CoLane().mailboxCapacity(2, overflowPolicy);
+        lane.suspend();
+        Assert.assertEquals(EnqueueStatus.ENQUEUED, lane.run(() -> { results.add(0); }));
+        Assert.assertEquals(EnqueueStatus.ENQUEUED, lane.run(() -> { results.add(1); }));
+        Assert.assertEquals(2, lane.getQueueDepth());
+        return lane;
+    }
+
+    private void drain(CoLane lane) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        lane.resume();
+        while(lane.getQueueDepth() > 0)
+            Thread.sleep(10);
+        Assert.assertEquals(EnqueueStatus.ENQUEUED, lane.run(() -> { latch.countDown(); }));
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.objectscape.colanes.executor.DedicatedThreadLaneExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test cases for drain budgets and weights of lanes. The lanes share an executor with a single thread,
+ * which is blocked while the lanes are filled, so that the order of the turns of the lanes is known.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class DrainBudgetTest extends AbstractTest {
+
+    private final DedicatedThreadLaneExecutor executor = new DedicatedThreadLaneExecutor();
+
+    @Override
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        super.tearDown();
+    }
+
+    @Test
+    public void maxTasks() throws InterruptedException {
+        String executed = executeAlternately(new CoLane[] {
+                new CoLane("a", executor).drainBudget(2),
+                new CoLane("b", executor).drainBudget(2)
+        }, 6);
+        Assert.assertEquals("aabbaabbaabb", executed);
+    }
+
+    @Test
+    public void weight() throws InterruptedException {
+        CoLane a = new CoLane("a", executor).drainBudget(2).weight(2);
+        String executed = executeAlternately(new CoLane[] { a, new CoLane("b", executor).drainBudget(2) }, 8);
+        Assert.assertEquals("aaaabbaaaabbbbbb", executed);
+        Assert.assertEquals(1, a.getYieldCount());
+    }
+
+    @Test
+    public void noBudget() throws InterruptedException {
+        String executed = executeAlternately(new CoLane[] {
+                new CoLane("a", executor),
+                new CoLane("b", executor)
+        }, 4);
+        Assert.assertEquals("aaaabbbb", executed);
+    }
+
+    @Test
+    public void maxTime() throws InterruptedException {
+        CoLane a = new CoLane("a", executor).drainBudget(Integer.MAX_VALUE, 5, TimeUnit.MILLISECONDS);
+        CoLane b = new CoLane("b", executor).drainBudget(Integer.MAX_VALUE, 5, TimeUnit.MILLISECONDS);
+        List<String> executed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(8);
+        CountDownLatch blocked = block();
+        for(int i = 0; i < 4; i++) {
+            a.run(() -> { sleep(3); executed.add("a"); done.countDown(); });
+            b.run(() -> { sleep(3); executed.add("b"); done.countDown(); });
+        }
+        blocked.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        // a turn ends after the lambda that used up the 5 ms, which is at the latest the second one
+        Assert.assertEquals(8, executed.size());
+        Assert.assertTrue(executed.indexOf("b") <= 2);
+        Assert.assertTrue(a.getYieldCount() >= 1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void budgetAfterStart() {
+        CoLane lane = new CoLane("a", executor);
+        lane.run(() -> { });
+        lane.drainBudget(10);
+    }
+
+    /**
+     * Run <tt>count</tt> lambdas on every lane, alternating between the lanes, and answer the labels of
+     * the lanes in the order the lambdas were executed.
+     */
+    private String executeAlternately(CoLane[] lanes, int count) throws InterruptedException {
+        StringBuffer executed = new StringBuffer();
+        CountDownLatch done = new CountDownLatch(count * lanes.length);
+        CountDownLatch blocked = block();
+        for(int i = 0; i < count; i++)
+            for(CoLane lane : lanes)
+                lane.run(() -> {
+                    executed.append(lane.getLabel());
+                    done.countDown();
+                });
+        blocked.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        return executed.toString();
+    }
+
+    /**
+     * Block the thread of the executor till the returned latch is counted down.
+     */
+    private CountDownLatch block() {
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                latch.await(10, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return latch;
+    }
+
+}
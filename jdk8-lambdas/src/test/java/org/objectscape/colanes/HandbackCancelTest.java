@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test cases for cancelling Handbacks.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class HandbackCancelTest extends AbstractTest {
+
+    @Test
+    public void cancelEnqueued() throws InterruptedException {
+        CoLane lane = new CoLane();
+        AtomicInteger executed = new AtomicInteger();
+
+        lane.suspend();
+        HandbackFutureCompletion<String> handback = lane.<String>getHandbackFutureCompletion()
+                .supplier(() -> {
+                    executed.incrementAndGet();
+                    return "cancelled";
+                })
+                .runAsync();
+        Assert.assertTrue(handback.cancel());
+        Assert.assertFalse(handback.cancel());
+        Assert.assertTrue(handback.isCancelled());
+        Assert.assertTrue(handback.isDone());
+        Assert.assertTrue(handback.future().isCancelled());
+        lane.resume();
+
+        awaitEmpty(lane);
+        Assert.assertEquals(0, executed.get());
+    }
+
+    @Test
+    public void cancelFuture() throws InterruptedException {
+        CoLane lane = new CoLane();
+        AtomicInteger executed = new AtomicInteger();
+
+        lane.suspend();
+        HandbackFutureCompletion<String> handback = lane.<String>getHandbackFutureCompletion()
+                .supplier(() -> {
+                    executed.incrementAndGet();
+                    return "cancelled";
+                })
+                .runAsync();
+        Assert.assertTrue(handback.future().cancel(true));
+        Assert.assertTrue(handback.isCancelled());
+        lane.resume();
+
+        awaitEmpty(lane);
+        Assert.assertEquals(0, executed.get());
+    }
+
+    @Test
+    public void cancelRunning() throws InterruptedException, ExecutionException {
+        CoLane lane = new CoLane();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        AtomicInteger callbacks = new AtomicInteger();
+
+        HandbackFutureCompletion<String> handback = lane.<String>getHandbackFutureCompletion()
+                .supplier(() -> {
+                    running.countDown();
+                    try {
+                        proceed.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "finished";
+                })
+                .callback((String result) -> { callbacks.incrementAndGet(); })
+                .whenDone((String result) -> { callbacks.incrementAndGet(); })
+                .runAsync();
+
+        Assert.assertTrue(running.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(handback.cancel());
+        proceed.countDown();
+
+        awaitEmpty(lane);
+        awaitEmpty(lane);
+        Assert.assertEquals(0, callbacks.get());
+        Assert.assertTrue(handback.isCancelled());
+        try {
+            handback.future().get();
+            Assert.fail();
+        }
+        catch (CancellationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void cancelDone() throws InterruptedException, ExecutionException, TimeoutException {
+        CoLane lane = new CoLane();
+        HandbackFutureCompletion<String> handback = lane.<String>getHandbackFutureCompletion().supplier(() -> "done").runAsync();
+        Assert.assertEquals("done", handback.future().get(10, TimeUnit.SECONDS));
+        awaitEmpty(lane);
+
+        Assert.assertFalse(handback.cancel());
+        Assert.assertFalse(handback.isCancelled());
+    }
+
+    @Test
+    public void cancelBeforeEnqueue() throws InterruptedException {
+        CoLane lane = new CoLane();
+        AtomicInteger executed = new AtomicInteger();
+        Handback handback = lane.getHandback().runnable(() -> { executed.incrementAndGet(); });
+        Assert.assertTrue(handback.cancel());
+        handback.runAsync();
+
+        awaitEmpty(lane);
+        Assert.assertEquals(0, executed.get());
+        Assert.assertTrue(handback.isCancelled());
+        Assert.assertFalse(handback.isEnqueued());
+    }
+
+    @Test(expected = CancellationException.class)
+    public void cancelPrimitive() throws InterruptedException, ExecutionException {
+        CoLane lane = new CoLane();
+        lane.suspend();
+        LongHandback handback = lane.getLongHandback().supplier(() -> 1L).runAsync();
+        Assert.assertTrue(handback.cancel());
+        Assert.assertTrue(handback.isCompletedExceptionally());
+        lane.resume();
+        handback.get();
+    }
+
+    @Test
+    public void cancelPooled() {
+        Handback handback = new CoLane().poolHandbacks(4).getPooledHandback();
+        Assert.assertFalse(handback.cancel());
+        Assert.assertFalse(handback.isCancelled());
+    }
+
+    @Test
+    public void scatterGatherCancelsPending() throws InterruptedException, ExecutionException, TimeoutException {
+        CoLane suspended = new CoLane();
+        AtomicInteger executed = new AtomicInteger();
+        suspended.suspend();
+
+        ScatterGather<String, List<String>> scatterGather = ScatterGather.<String>collecting()
+                .add(new CoLane(), () -> "answered")
+                .add(suspended, () -> {
+                    executed.incrementAndGet();
+                    return "not needed";
+                })
+                .quorum(1);
+        Assert.assertEquals(1, scatterGather.runAsync().future().get(10, TimeUnit.SECONDS).size());
+        suspended.resume();
+
+        awaitEmpty(suspended);
+        Assert.assertEquals(0, executed.get());
+    }
+
+    /**
+     * Wait till all lambdas enqueued on the lane so far have been executed.
+     */
+    private static void awaitEmpty(CoLane lane) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        lane.run(() -> { latch.countDown(); });
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+}
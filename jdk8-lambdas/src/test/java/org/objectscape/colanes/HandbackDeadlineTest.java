@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test cases for Handbacks with a deadline that are discarded if the lane gets to them too late.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class HandbackDeadlineTest extends AbstractTest {
+
+    @Test
+    public void expired() throws InterruptedException {
+        CoLane lane = new CoLane();
+        AtomicInteger executed = new AtomicInteger();
+        AtomicInteger whenDone = new AtomicInteger();
+
+        lane.suspend();
+        HandbackFutureCompletion<String> handback = lane.<String>getHandbackFutureCompletion()
+                .supplier(() -> {
+                    executed.incrementAndGet();
+                    return "too late";
+                })
+                .deadline(10, TimeUnit.MILLISECONDS)
+                .whenDone(() -> { whenDone.incrementAndGet(); })
+                .runAsync();
+        Thread.sleep(50);
+        lane.resume();
+
+        try {
+            handback.future().get(10, TimeUnit.SECONDS);
+            Assert.fail();
+        }
+        catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        catch (TimeoutException e) {
+            Assert.fail();
+        }
+        Assert.assertTrue(handback.isDone());
+        awaitEmpty(lane);
+        Assert.assertEquals(0, executed.get());
+        Assert.assertEquals(0, whenDone.get());
+        Assert.assertEquals(1, lane.getExpiredCount());
+    }
+
+    @Test
+    public void notExpired() throws InterruptedException, ExecutionException, TimeoutException {
+        CoLane lane = new CoLane();
+        String result = lane.<String>getHandbackFutureCompletion()
+                .supplier(() -> "in time")
+                .deadline(10, TimeUnit.SECONDS)
+                .runAsync()
+                .future().get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals("in time", result);
+        Assert.assertEquals(0, lane.getExpiredCount());
+    }
+
+    @Test
+    public void primitiveExpired() throws InterruptedException {
+        CoLane lane = new CoLane();
+        lane.suspend();
+        IntHandback handback = lane.getIntHandback().supplier(() -> 1).deadline(10, TimeUnit.MILLISECONDS).runAsync();
+        Thread.sleep(50);
+        lane.resume();
+
+        try {
+            handback.get();
+            Assert.fail();
+        }
+        catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+    }
+
+    @Test
+    public void onlyExpiredDropped() throws InterruptedException {
+        CoLane lane = new CoLane();
+        AtomicInteger executed = new AtomicInteger();
+
+        lane.suspend();
+        for(int i = 0; i < 10; i++)
+            lane.getHandback().runnable(() -> { executed.incrementAndGet(); }).deadline(10, TimeUnit.MILLISECONDS).runAsync();
+        Thread.sleep(50);
+        for(int i = 0; i < 5; i++)
+            lane.getHandback().runnable(() -> { executed.incrementAndGet(); }).deadline(10, TimeUnit.SECONDS).runAsync();
+        lane.resume();
+
+        awaitEmpty(lane);
+        Assert.assertEquals(5, executed.get());
+        Assert.assertEquals(10, lane.getExpiredCount());
+    }
+
+    @Test
+    public void pooledHandbackRecycledWhenExpired() throws InterruptedException {
+        CoLane lane = new CoLane().poolHandbacks(4);
+        lane.suspend();
+        Handback handback = lane.getPooledHandback();
+        handback.runnable(() -> { }).deadline(10, TimeUnit.MILLISECONDS).runAsync();
+        Thread.sleep(50);
+        lane.resume();
+
+        awaitEmpty(lane);
+        Handback reused = lane.getPooledHandback();
+        Assert.assertSame(handback, reused);
+        // the deadline is not carried over to the next use
+        CountDownLatch latch = new CountDownLatch(1);
+        reused.runnable(() -> { latch.countDown(); }).runAsync();
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void deadlineNotPositive() {
+        new CoLane().getHandback().deadline(0, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Wait till all lambdas enqueued on the lane so far have been executed.
+     */
+    private static void awaitEmpty(CoLane lane) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        lane.run(() -> { latch.countDown(); });
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.objectscape.colanes.mailbox.EnqueueStatus;
+import org.objectscape.colanes.mailbox.OverflowPolicy;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test cases for Handbacks obtained from the pool of recycled Handbacks of a lane.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class HandbackPoolTest extends AbstractTest {
+
+    @Test
+    public void notPooled() {
+        CoLane lane = new CoLane();
+        Assert.assertFalse(lane.getPooledHandback().isPooled());
+        Assert.assertNotSame(lane.getPooledHandback(), lane.getPooledHandback());
+    }
+
+    @Test
+    public void reusedWhenDone() throws InterruptedException {
+        CoLane lane = new CoLane().poolHandbacks(4);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        Handback handback = lane.getPooledHandback();
+        Assert.assertTrue(handback.isPooled());
+        handback.runnable(() -> { }).runAsync();
+        lane.run(() -> { latch.countDown(); });
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        Handback reused = lane.getPooledHandback();
+        Assert.assertSame(handback, reused);
+        Assert.assertFalse(reused.isEnqueued());
+
+        // a recycled Handback is built anew and can be enqueued once more
+        CountDownLatch rerun = new CountDownLatch(1);
+        reused.runnable(() -> { rerun.countDown(); }).runAsync();
+        Assert.assertTrue(rerun.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void reusedAfterWhenDone() throws InterruptedException {
+        CoLane lane = new CoLane().poolHandbacks(4);
+        CountDownLatch proceed = new CountDownLatch(1);
+        CountDownLatch whenDoneRunning = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        Handback handback = lane.getPooledHandback();
+        handback.runnable(() -> { }).whenDone(() -> {
+            whenDoneRunning.countDown();
+            try {
+                proceed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }).runAsync();
+
+        // the Handback is not handed out again while its whenDone lambda is pending
+        Assert.assertTrue(whenDoneRunning.await(10, TimeUnit.SECONDS));
+        Assert.assertNotSame(handback, lane.getPooledHandback());
+
+        proceed.countDown();
+        lane.run(() -> { latch.countDown(); });
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertSame(handback, lane.getPooledHandback());
+    }
+
+    @Test
+    public void reusedWhenNotEnqueued() throws InterruptedException {
+        CoLane lane = new CoLane().poolHandbacks(4).mailboxCapacity(1, OverflowPolicy.DROP_NEWEST);
+        lane.suspend();
+        Assert.assertEquals(EnqueueStatus.ENQUEUED, lane.run(() -> { }));
+
+        Handback handback = lane.getPooledHandback();
+        handback.runnable(() -> { }).runAsync();
+
+        Assert.assertSame(handback, lane.getPooledHandback());
+        lane.resume();
+    }
+
+    @Test
+    public void reusedWhenRunnableThrows() throws InterruptedException {
+        CoLane lane = new CoLane().poolHandbacks(1);
+        Handback handback = lane.getPooledHandback();
+        handback.runnable(() -> { throw new IllegalStateException("failed"); }).whenDone(() -> { }).runAsync();
+
+        Assert.assertTrue(CoLane.awaitQuiescence(Arrays.asList(lane), 10, TimeUnit.SECONDS));
+        Assert.assertSame(handback, lane.getPooledHandback());
+    }
+
+    @Test
+    public void manyRequests() throws InterruptedException {
+        int count = 10000;
+        CoLane lane = new CoLane().poolHandbacks(16);
+        AtomicInteger executed = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(count);
+
+        for(int i = 0; i < count; i++)
+            lane.getPooledHandback()
+                    .runnable(() -> { executed.incrementAndGet(); })
+                    .whenDone(() -> { latch.countDown(); })
+                    .runAsync();
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(count, executed.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void poolAfterStart() {
+        CoLane lane = new CoLane();
+        lane.run(() -> { });
+        lane.poolHandbacks(4);
+    }
+
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.objectscape.colanes.mailbox.OverflowPolicy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test cases for the states a Handback passes through.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class HandbackStateTest extends AbstractTest {
+
+    @Test
+    public void states() throws InterruptedException {
+        CoLane lane = new CoLane();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+
+        Handback handback = lane.getHandback().runnable(() -> {
+            running.countDown();
+            try {
+                proceed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assert.assertFalse(handback.isEnqueued());
+        Assert.assertFalse(handback.isDone());
+
+        handback.runAsync();
+        Assert.assertTrue(handback.isEnqueued());
+        Assert.assertTrue(running.await(10, TimeUnit.SECONDS));
+        Assert.assertFalse(handback.isDone());
+
+        proceed.countDown();
+        long deadline = System.currentTimeMillis() + 10000;
+        while(!handback.isDone() && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        Assert.assertTrue(handback.isDone());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void enqueueTwice() {
+        Handback handback = new CoLane().getHandback().runnable(() -> { });
+        handback.runAsync();
+        handback.runAsync();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setAfterEnqueue() {
+        HandbackFutureCompletion<String> handback = new CoLane().<String>getHandbackFutureCompletion().supplier(() -> "done");
+        handback.runAsync();
+        handback.callback(() -> { });
+    }
+
+    @Test
+    public void notEnqueuedIsDone() {
+        CoLane lane = new CoLane().mailboxCapacity(1, OverflowPolicy.SIGNAL);
+        lane.suspend();
+        lane.run(() -> { });
+        HandbackFutureCompletion<String> handback = lane.<String>getHandbackFutureCompletion().supplier(() -> "rejected");
+
+        handback.runAsync();
+        Assert.assertFalse(handback.isEnqueued());
+        Assert.assertTrue(handback.isRejected());
+        Assert.assertTrue(handback.isDone());
+        Assert.assertTrue(handback.future().isCompletedExceptionally());
+        lane.resume();
+    }
+
+}
@@ -0,0 +1,260 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.objectscape.colanes.executor.DedicatedThreadLaneExecutor;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test cases for <code>HedgedHandback</code>.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class HedgedHandbackTest extends AbstractTest {
+
+    @Test
+    public void primaryAnswers() throws InterruptedException, ExecutionException, TimeoutException {
+        CoLane primary = new CoLane("primary");
+        CoLane secondary = new CoLane("secondary");
+        AtomicInteger executed = new AtomicInteger();
+
+        HedgedHandback<String> handback = new HedgedHandback<String>(primary, secondary)
+                .supplier(() -> {
+                    executed.incrementAndGet();
+                    return CoLane.current().getLabel();
+                })
+                .hedgeAfter(5, TimeUnit.SECONDS)
+                .runAsync();
+
+        Assert.assertEquals("primary", handback.future().get(10, TimeUnit.SECONDS));
+        Assert.assertSame(primary, handback.getWinner());
+        Assert.assertEquals(0, handback.getWinnerIndex());
+        Assert.assertEquals(1, handback.getFiredCount());
+        Assert.assertEquals(1, executed.get());
+        Assert.assertTrue(handback.getLatency(TimeUnit.SECONDS) < 5);
+    }
+
+    @Test
+    public void secondaryAnswers() throws InterruptedException, ExecutionException, TimeoutException {
+        CoLane primary = new CoLane("primary", new DedicatedThreadLaneExecutor());
+        CoLane secondary = new CoLane("secondary", new DedicatedThreadLaneExecutor());
+        CountDownLatch proceed = new CountDownLatch(1);
+
+        HedgedHandback<String> handback = new HedgedHandback<String>(primary, secondary)
+                .supplier(() -> {
+                    CoLane lane = CoLane.current();
+                    if(lane == primary) {
+                        try {
+                            proceed.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return lane.getLabel();
+                })
+                .hedgeAfter(20, TimeUnit.MILLISECONDS)
+                .runAsync();
+
+        try {
+            Assert.assertEquals("secondary", handback.future().get(10, TimeUnit.SECONDS));
+            Assert.assertSame(secondary, handback.getWinner());
+            Assert.assertEquals(2, handback.getFiredCount());
+            Assert.assertTrue(handback.getLatency(TimeUnit.MILLISECONDS) >= 20);
+        }
+        finally {
+            proceed.countDown();
+            primary.getExecutor().shutdown();
+            secondary.getExecutor().shutdown();
+        }
+    }
+
+    @Test
+    public void failedPrimaryHedgesRightAway() throws InterruptedException, ExecutionException, TimeoutException {
+        CoLane primary = new CoLane("primary");
+        CoLane secondary = new CoLane("secondary");
+
+        HedgedHandback<String> handback = new HedgedHandback<String>(primary, secondary)
+                .supplier(() -> {
+                    CoLane lane = CoLane.current();
+                    if(lane == primary)
+                        throw new IllegalStateException("primary failed");
+                    return lane.getLabel();
+                })
+                .hedgeAfter(1, TimeUnit.HOURS)
+                .runAsync();
+
+        Assert.assertEquals("secondary", handback.future().get(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, handback.getWinnerIndex());
+    }
+
+    @Test
+    public void allReplicasFail() throws InterruptedException, TimeoutException {
+        HedgedHandback<String> handback = new HedgedHandback<String>(new CoLane(), new CoLane(), new CoLane())
+                .supplier(() -> { throw new IllegalStateException("failed"); })
+                .hedgeAfter(1, TimeUnit.HOURS)
+                .runAsync();
+
+        try {
+            handback.future().get(10, TimeUnit.SECONDS);
+            Assert.fail();
+        }
+        catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertNull(handback.getWinner());
+        Assert.assertEquals(3, handback.getFiredCount());
+    }
+
+    @Test
+    public void sentToAllWithoutDelay() throws InterruptedException, ExecutionException, TimeoutException {
+        HedgedHandback<Integer> handback = new HedgedHandback<Integer>(new CoLane(), new CoLane(), new CoLane())
+                .supplier(() -> 42)
+                .runAsync();
+
+        Assert.assertEquals(Integer.valueOf(42), handback.future().get(10, TimeUnit.SECONDS));
+        // replicas are not sent the request any more once one of them has answered
+        Assert.assertTrue(handback.getFiredCount() >= 1 && handback.getFiredCount() <= 3);
+    }
+
+    @Test
+    public void whenDoneOnCallerLane() throws InterruptedException {
+        CoLane caller = new CoLane("caller");
+        AtomicReference<CoLane> whenDoneLane = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        caller.run(() -> {
+            new HedgedHandback<Integer>(new CoLane(), new CoLane())
+                    .supplier(() -> 1)
+                    .hedgeAfter(10, TimeUnit.MILLISECONDS)
+                    .runAsyncWhenDone((Integer result) -> {
+                        whenDoneLane.set(CoLane.current());
+                        latch.countDown();
+                    });
+        });
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertSame(caller, whenDoneLane.get());
+    }
+
+    @Test
+    public void cancelStopsHedging() throws InterruptedException {
+        CoLane primary = new CoLane("primary");
+        CoLane secondary = new CoLane("secondary");
+        AtomicInteger executed = new AtomicInteger();
+        primary.suspend();
+
+        HedgedHandback<Integer> handback = new HedgedHandback<Integer>(primary, secondary)
+                .supplier(() -> executed.incrementAndGet())
+                .hedgeAfter(50, TimeUnit.MILLISECONDS)
+                .runAsync();
+        Assert.assertTrue(handback.future().cancel(false));
+        Assert.assertTrue(handback.isCancelled());
+        Assert.assertFalse(handback.cancel());
+
+        Thread.sleep(200);
+        primary.resume();
+        Assert.assertTrue(CoLane.awaitQuiescence(Arrays.asList(primary, secondary), 10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, handback.getFiredCount());
+        Assert.assertEquals(0, executed.get());
+    }
+
+    @Test
+    public void deadline() throws InterruptedException {
+        CoLane primary = new CoLane("primary");
+        primary.suspend();
+
+        HedgedHandback<Integer> handback = new HedgedHandback<Integer>(primary)
+                .supplier(() -> 1)
+                .deadline(20, TimeUnit.MILLISECONDS)
+                .runAsync();
+        Thread.sleep(100);
+        primary.resume();
+
+        try {
+            handback.future().get(10, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException | TimeoutException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        Assert.assertTrue(handback.isDone());
+    }
+
+    @Test
+    public void deadlineMissedByOneReplica() throws InterruptedException, ExecutionException, TimeoutException {
+        CoLane primary = new CoLane("primary");
+        CoLane secondary = new CoLane("secondary");
+        CountDownLatch missed = new CountDownLatch(1);
+        primary.suspend();
+
+        HedgedHandback<Integer> handback = new HedgedHandback<Integer>(primary, secondary)
+                .supplier(() -> {
+                    // still running on the secondary when the primary misses the deadline
+                    try {
+                        missed.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) { }
+                    return 2;
+                })
+                .deadline(20, TimeUnit.MILLISECONDS)
+                .runAsync();
+        Thread.sleep(100);
+        primary.resume();
+        Assert.assertTrue(CoLane.awaitQuiescence(Arrays.asList(primary), 10, TimeUnit.SECONDS));
+        missed.countDown();
+
+        Assert.assertEquals(2, handback.future().get(10, TimeUnit.SECONDS).intValue());
+        Assert.assertSame(secondary, handback.getWinner());
+    }
+
+    @Test
+    public void noWinnerIfCancelledWhileRunning() throws InterruptedException {
+        CoLane primary = new CoLane("primary");
+        AtomicReference<HedgedHandback<Integer>> ref = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        HedgedHandback<Integer> handback = new HedgedHandback<Integer>(primary).supplier(() -> {
+            ref.get().cancel();
+            latch.countDown();
+            return 1;
+        });
+        ref.set(handback);
+        handback.runAsync();
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(CoLane.awaitQuiescence(Arrays.asList(primary), 10, TimeUnit.SECONDS));
+        Assert.assertTrue(handback.isCancelled());
+        Assert.assertNull(handback.getWinner());
+        Assert.assertEquals(-1, handback.getWinnerIndex());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setAfterEnqueue() {
+        HedgedHandback<Integer> handback = new HedgedHandback<Integer>(new CoLane()).supplier(() -> 1).runAsync();
+        handback.hedgeAfter(1, TimeUnit.SECONDS);
+    }
+
+}
@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.objectscape.colanes.executor.AbstractLaneExecutor;
+import org.objectscape.colanes.executor.DedicatedThreadLaneExecutor;
+import org.objectscape.colanes.executor.ForkJoinLaneExecutor;
+import org.objectscape.colanes.executor.HawtDispatchLaneExecutor;
+import org.objectscape.colanes.executor.LaneExecutor;
+import org.objectscape.colanes.executor.VirtualThreadLaneExecutor;
+import org.objectscape.colanes.registry.Registry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Test cases that check that lanes keep the order of their lambdas with every <code>LaneExecutor</code>.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class LaneExecutorTest extends AbstractTest {
+
+    private static final int Count = 10000;
+
+    @Test
+    public void hawtDispatch() throws InterruptedException {
+        checkOrder(new HawtDispatchLaneExecutor());
+    }
+
+    @Test
+    public void forkJoin() throws InterruptedException {
+        LaneExecutor executor = new ForkJoinLaneExecutor(4);
+        checkOrder(executor);
+        executor.shutdown();
+    }
+
+    @Test
+    public void dedicatedThread() throws InterruptedException {
+        LaneExecutor executor = new DedicatedThreadLaneExecutor();
+        checkOrder(executor);
+        executor.shutdown();
+    }
+
+    @Test
+    public void virtualThread() throws InterruptedException {
+        Assume.assumeTrue(VirtualThreadLaneExecutor.isSupported());
+        checkOrder(new VirtualThreadLaneExecutor());
+    }
+
+    @Test
+    public void virtualThreadShutDown() {
+        Assume.assumeTrue(VirtualThreadLaneExecutor.isSupported());
+        LaneExecutor executor = new VirtualThreadLaneExecutor();
+        executor.shutdown();
+        try {
+            executor.execute(() -> { });
+            Assert.fail();
+        }
+        catch (RejectedExecutionException e) { }
+    }
+
+    /**
+     * Lambdas that block must only park the lane they are running on.
+     */
+    @Test
+    public void virtualThreadBlocking() throws InterruptedException {
+        Assume.assumeTrue(VirtualThreadLaneExecutor.isSupported());
+        LaneExecutor executor = new VirtualThreadLaneExecutor();
+        int lanes = Runtime.getRuntime().availableProcessors() * 4;
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(lanes);
+
+        for(int i = 0; i < lanes; i++) {
+            new CoLane(executor).run(() -> {
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) { }
+            });
+        }
+        for(int i = 0; i < lanes; i++)
+            new CoLane(executor).run(() -> { latch.countDown(); });
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        blocker.countDown();
+    }
+
+    @Test
+    public void registryLaneExecutor() throws InterruptedException {
+        LaneExecutor executor = new DedicatedThreadLaneExecutor("registry-lanes");
+        Registry registry = Registry.get("LaneExecutorTest");
+        registry.setLaneExecutor(executor);
+
+        CoLane lane = registry.newLane("registry-lane");
+        Assert.assertSame(executor, lane.getExecutor());
+
+        CountDownLatch latch = new CountDownLatch(1);
+        String[] threadName = new String[1];
+        lane.run(() -> {
+            threadName[0] = Thread.currentThread().getName();
+            latch.countDown();
+        });
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals("registry-lanes", threadName[0]);
+        executor.shutdown();
+    }
+
+    @Test
+    public void suspendResume() throws InterruptedException {
+        CoLane lane = new CoLane(new ForkJoinLaneExecutor(2));
+        CountDownLatch latch = new CountDownLatch(1);
+
+        lane.suspend();
+        lane.run(() -> { latch.countDown(); });
+        Assert.assertFalse(latch.await(200, TimeUnit.MILLISECONDS));
+
+        lane.resume();
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        lane.getExecutor().shutdown();
+    }
+
+    @Test
+    public void runAfter() throws InterruptedException {
+        CoLane lane = new CoLane(new ForkJoinLaneExecutor(2));
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        lane.runAfter(100, TimeUnit.MILLISECONDS, () -> { latch.countDown(); });
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        lane.getExecutor().shutdown();
+    }
+
+    @Test
+    public void executorShutDown() throws InterruptedException {
+        LaneExecutor executor = new DedicatedThreadLaneExecutor();
+        executor.shutdown();
+        CoLane lane = new CoLane(executor);
+
+        // every enqueue tries to schedule the lane again instead of leaving it scheduled for good
+        for(int i = 0; i < 2; i++) {
+            try {
+                lane.run(() -> { });
+                Assert.fail();
+            }
+            catch (RejectedExecutionException e) {
+                Assert.assertEquals(i + 1, lane.getQueueDepth());
+            }
+        }
+    }
+
+    @Test
+    public void executorRejectsOnce() throws InterruptedException {
+        LaneExecutor delegate = new DedicatedThreadLaneExecutor();
+        AtomicBoolean accepting = new AtomicBoolean(false);
+        CoLane lane = new CoLane(new AbstractLaneExecutor() {
+            @Override
+            public void execute(Runnable runnable) {
+                if(!accepting.get())
+                    throw new RejectedExecutionException("not yet accepting");
+                delegate.execute(runnable);
+            }
+
+            @Override
+            public void shutdown() {
+                delegate.shutdown();
+            }
+        });
+        CountDownLatch latch = new CountDownLatch(2);
+
+        try {
+            lane.run(() -> { latch.countDown(); });
+            Assert.fail();
+        }
+        catch (RejectedExecutionException e) { }
+        accepting.set(true);
+        lane.run(() -> { latch.countDown(); });
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        lane.getExecutor().shutdown();
+    }
+
+    private void checkOrder(LaneExecutor executor) throws InterruptedException {
+        CoLane lane = new CoLane(executor);
+        List<Integer> results = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        for(int i = 0; i < Count; i++) {
+            int value = i;
+            lane.run(() -> { results.add(value); });
+        }
+        lane.run(() -> { latch.countDown(); });
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(Count, results.size());
+        for(int i = 0; i < Count; i++)
+            Assert.assertEquals(i, results.get(i).intValue());
+    }
+
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.objectscape.colanes.registry.LaneAlreadyRegisteredException;
+import org.objectscape.colanes.registry.Registry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test cases for <code>LaneGroup</code>.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class LaneGroupTest extends AbstractTest {
+
+    private static final int Producers = 4;
+    private static final int KeysPerProducer = 25;
+    private static final int MessagesPerKey = 2000;
+
+    @Test
+    public void orderPerKey() throws InterruptedException {
+        LaneGroup group = new LaneGroup("orderPerKey", 4);
+        Map<Integer, List<Integer>> received = produce(group, () -> { });
+        checkOrder(received);
+    }
+
+    @Test
+    public void resize() throws Exception {
+        LaneGroup group = new LaneGroup("resize", 2);
+        CountDownLatch resized = new CountDownLatch(1);
+        Map<Integer, List<Integer>> received = produce(group, () -> {
+            try {
+                group.resize(8).get(10, TimeUnit.SECONDS);
+                Assert.assertEquals(8, group.size());
+                group.resize(3).get(10, TimeUnit.SECONDS);
+                Assert.assertEquals(3, group.size());
+                resized.countDown();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Assert.assertTrue(resized.await(10, TimeUnit.SECONDS));
+        checkOrder(received);
+    }
+
+    @Test
+    public void resizeShutsDownOldLanes() throws Exception {
+        LaneGroup group = new LaneGroup("resizeShutdown", 2);
+        List<CoLane> oldLanes = group.getLanes();
+
+        group.resize(4).get(10, TimeUnit.SECONDS);
+        for(CoLane oldLane : oldLanes)
+            Assert.assertTrue(oldLane.awaitTermination(10, TimeUnit.SECONDS));
+        for(CoLane newLane : group.getLanes())
+            Assert.assertFalse(newLane.isShutdown());
+    }
+
+    @Test
+    public void laneFor() {
+        LaneGroup group = new LaneGroup("laneFor", 4);
+        Assert.assertSame(group.laneFor("key"), group.laneFor("key"));
+        Assert.assertEquals(4, group.getLanes().size());
+        Assert.assertEquals("laneFor-0", group.getLanes().get(0).getLabel());
+    }
+
+    @Test
+    public void registry() {
+        Registry registry = Registry.getDefault();
+        LaneGroup group = registry.registerLaneGroup(new LaneGroup("partitions", 2));
+        Assert.assertSame(group, registry.getLaneGroup("partitions"));
+        try {
+            registry.registerLaneGroup(new LaneGroup("partitions", 2));
+            Assert.fail();
+        } catch (LaneAlreadyRegisteredException e) {
+            // expected
+        }
+        Assert.assertTrue(registry.deregisterLaneGroup("partitions"));
+        Assert.assertNull(registry.getLaneGroup("partitions"));
+    }
+
+    /**
+     * Let several producer threads run numbered lambdas for their keys while <tt>meanwhile</tt> is
+     * executed and wait till all lambdas have been executed.
+     */
+    private Map<Integer, List<Integer>> produce(LaneGroup group, Runnable meanwhile) throws InterruptedException {
+        Map<Integer, List<Integer>> received = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(Producers * KeysPerProducer);
+        List<Thread> threads = new ArrayList<>();
+
+        for(int producer = 0; producer < Producers; producer++) {
+            int firstKey = producer * KeysPerProducer;
+            Thread thread = new Thread(() -> {
+                for(int key = firstKey; key < firstKey + KeysPerProducer; key++)
+                    received.put(key, new ArrayList<>());
+                for(int i = 0; i < MessagesPerKey; i++) {
+                    for(int key = firstKey; key < firstKey + KeysPerProducer; key++) {
+                        List<Integer> list = received.get(key);
+                        int value = i;
+                        group.run(key, () -> { list.add(value); });
+                    }
+                }
+                for(int key = firstKey; key < firstKey + KeysPerProducer; key++)
+                    group.run(key, () -> { done.countDown(); });
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        meanwhile.run();
+        for(Thread thread : threads)
+            thread.join();
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        return received;
+    }
+
+    private void checkOrder(Map<Integer, List<Integer>> received) {
+        Assert.assertEquals(Producers * KeysPerProducer, received.size());
+        for(List<Integer> values : received.values()) {
+            Assert.assertEquals(MessagesPerKey, values.size());
+            for(int i = 0; i < MessagesPerKey; i++)
+                Assert.assertEquals(i, values.get(i).intValue());
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.objectscape.colanes.executor.ForkJoinLaneExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test cases for values kept per lane by <code>LaneLocal</code>s.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class LaneLocalTest extends AbstractTest {
+
+    @Test
+    public void valuePerLane() throws InterruptedException, ExecutionException {
+        AtomicInteger created = new AtomicInteger();
+        LaneLocal<int[]> counter = LaneLocal.withInitial(() -> {
+            created.incrementAndGet();
+            return new int[1];
+        });
+        CoLane first = new CoLane("first");
+        CoLane second = new CoLane("second");
+        for(int i = 0; i < 100; i++) {
+            first.run(() -> { counter.get()[0]++; });
+            if(i % 2 == 0)
+                second.run(() -> { counter.get(second)[0]++; });
+        }
+
+        Assert.assertEquals(100, first.<Integer>getHandbackFutureCompletion().supplier(() -> counter.get()[0]).runAsync().future().get().intValue());
+        Assert.assertEquals(50, second.<Integer>getHandbackFutureCompletion().supplier(() -> counter.get()[0]).runAsync().future().get().intValue());
+        Assert.assertEquals(2, created.get());
+    }
+
+    @Test
+    public void currentLaneOnSharedThreads() throws InterruptedException, ExecutionException {
+        LaneLocal<int[]> counter = LaneLocal.withInitial(() -> new int[1]);
+        ForkJoinLaneExecutor executor = new ForkJoinLaneExecutor(4);
+        List<CoLane> lanes = new ArrayList<>();
+        AtomicInteger wrongLane = new AtomicInteger();
+        for(int i = 0; i < 16; i++)
+            lanes.add(new CoLane(executor));
+        try {
+            for(int i = 0; i < 1000; i++) {
+                for(CoLane lane : lanes) {
+                    lane.run(() -> {
+                        if(CoLane.current() != lane)
+                            wrongLane.incrementAndGet();
+                        counter.get()[0]++;
+                    });
+                }
+            }
+            for(CoLane lane : lanes)
+                Assert.assertEquals(1000, lane.<Integer>getHandbackFutureCompletion().supplier(() -> counter.get()[0]).runAsync().future().get().intValue());
+            Assert.assertEquals(0, wrongLane.get());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void setAndRemove() throws InterruptedException, ExecutionException {
+        LaneLocal<String> local = new LaneLocal<>();
+        CoLane lane = new CoLane();
+        Assert.assertNull(lane.<String>getHandbackFutureCompletion().supplier(() -> local.get()).runAsync().future().get());
+
+        lane.run(() -> { local.set("value"); });
+        Assert.assertEquals("value", lane.<String>getHandbackFutureCompletion().supplier(() -> local.get()).runAsync().future().get());
+
+        lane.run(() -> { local.remove(); });
+        Assert.assertNull(lane.<String>getHandbackFutureCompletion().supplier(() -> local.get()).runAsync().future().get());
+    }
+
+    @Test
+    public void manyLaneLocals() throws InterruptedException, ExecutionException {
+        List<LaneLocal<Integer>> locals = new ArrayList<>();
+        for(int i = 0; i < 100; i++) {
+            int value = i;
+            locals.add(LaneLocal.withInitial(() -> value));
+        }
+        CoLane lane = new CoLane();
+        int sum = lane.<Integer>getHandbackFutureCompletion().supplier(() -> {
+            int total = 0;
+            for(LaneLocal<Integer> local : locals)
+                total += local.get();
+            return total;
+        }).runAsync().future().get();
+        Assert.assertEquals(4950, sum);
+    }
+
+    @Test
+    public void disposedOnTermination() throws InterruptedException {
+        List<StringBuilder> disposed = new ArrayList<>();
+        LaneLocal<StringBuilder> buffer = new LaneLocal<>(() -> new StringBuilder(), (StringBuilder value) -> {
+            synchronized (disposed) {
+                disposed.add(value);
+            }
+        });
+        LaneLocal<String> notDisposed = new LaneLocal<>();
+        CoLane lane = new CoLane();
+        lane.run(() -> {
+            buffer.get().append("scratch");
+            notDisposed.set("value");
+        });
+        Assert.assertTrue(disposed.isEmpty());
+
+        lane.shutdown();
+        Assert.assertTrue(lane.awaitTermination(10, TimeUnit.SECONDS));
+        synchronized (disposed) {
+            Assert.assertEquals(1, disposed.size());
+            Assert.assertEquals("scratch", disposed.get(0).toString());
+        }
+    }
+
+    @Test
+    public void disposedOnceWhenSetRepeatedly() throws InterruptedException {
+        List<String> disposed = new ArrayList<>();
+        LaneLocal<String> local = new LaneLocal<>(null, (String value) -> {
+            synchronized (disposed) {
+                disposed.add(value);
+            }
+        });
+        CoLane lane = new CoLane();
+        lane.run(() -> {
+            for(int i = 0; i < 1000; i++) {
+                local.set("value" + i);
+                local.remove();
+            }
+            local.set("last");
+        });
+
+        lane.shutdown();
+        Assert.assertTrue(lane.awaitTermination(10, TimeUnit.SECONDS));
+        synchronized (disposed) {
+            Assert.assertEquals(1, disposed.size());
+            Assert.assertEquals("last", disposed.get(0));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void notOnLane() {
+        new LaneLocal<String>().get();
+    }
+
+    @Test
+    public void lanePool() throws InterruptedException, ExecutionException {
+        AtomicInteger created = new AtomicInteger();
+        LaneLocal<int[]> counter = LaneLocal.withInitial(() -> {
+            created.incrementAndGet();
+            return new int[1];
+        });
+        LanePool pool = new LanePool("pool", 2);
+        try {
+            List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            for(int i = 0; i < 100; i++)
+                futures.add(pool.<Integer>getHandbackFutureCompletion().supplier(() -> ++counter.get()[0]).runAsync().future());
+            int highest = 0;
+            for(CompletableFuture<Integer> future : futures)
+                highest = Math.max(highest, future.get());
+            // one value per worker
+            Assert.assertTrue(created.get() >= 1 && created.get() <= 2);
+            Assert.assertTrue(highest >= 50);
+        }
+        finally {
+            pool.getExecutor().shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.objectscape.colanes.metrics.LaneMetrics;
+import org.objectscape.colanes.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Test cases for the runtime metrics of lanes.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class LaneMetricsTest extends AbstractTest {
+
+    @Test
+    public void metricsDisabled() {
+        CoLane lane = new CoLane();
+        Assert.assertNull(lane.getMetrics());
+    }
+
+    @Test
+    public void serviceTimeAndQueueingDelay() throws InterruptedException {
+        CoLane lane = new CoLane("measured").enableMetrics();
+        LaneMetrics metrics = lane.getMetrics();
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicLong tasksExecuted = new AtomicLong();
+
+        for(int i = 0; i < 5; i++)
+            lane.run(() -> { sleep(20); });
+        // the metrics of a lambda are recorded after it has been executed
+        lane.run(() -> {
+            tasksExecuted.set(metrics.getTasksExecuted());
+            latch.countDown();
+        });
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        // wait till the metrics of the last lambda have been recorded as well
+        CountDownLatch recorded = new CountDownLatch(1);
+        lane.run(() -> { recorded.countDown(); });
+        Assert.assertTrue(recorded.await(10, TimeUnit.SECONDS));
+
+        Assert.assertEquals("measured", metrics.getLabel());
+        Assert.assertEquals(5, tasksExecuted.get());
+        Assert.assertEquals(0, metrics.getQueueDepth());
+        // the last lambda waited for the 5 sleeping ones
+        Assert.assertTrue(metrics.getQueueingDelay().getMax(TimeUnit.MILLISECONDS) >= 90);
+        Assert.assertTrue(metrics.getServiceTime().getValueAtPercentile(50, TimeUnit.MILLISECONDS) >= 17);
+        Assert.assertTrue(metrics.getServiceTime().getMax(TimeUnit.MILLISECONDS) >= 20);
+    }
+
+    @Test
+    public void runAll() throws InterruptedException {
+        CoLane lane = new CoLane().enableMetrics();
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicLong tasksExecuted = new AtomicLong();
+        List<Runnable> runnables = new ArrayList<>();
+        for(int i = 0; i < 99; i++)
+            runnables.add(() -> { });
+        runnables.add(() -> {
+            tasksExecuted.set(lane.getMetrics().getTasksExecuted());
+            latch.countDown();
+        });
+
+        lane.runAll(runnables);
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(99, tasksExecuted.get());
+    }
+
+    @Test
+    public void queueDepthAndSuspendedTime() throws InterruptedException {
+        CoLane lane = new CoLane().enableMetrics();
+        LaneMetrics metrics = lane.getMetrics();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        lane.suspend();
+        lane.run(() -> { });
+        lane.run(() -> { latch.countDown(); });
+        Assert.assertEquals(2, metrics.getQueueDepth());
+        Thread.sleep(100);
+        Assert.assertTrue(metrics.getSuspendedTime(TimeUnit.MILLISECONDS) >= 100);
+        lane.resume();
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        long suspendedTime = metrics.getSuspendedTime(TimeUnit.MILLISECONDS);
+        Assert.assertTrue(suspendedTime >= 100);
+        Assert.assertTrue(metrics.getQueueingDelay().getValueAtPercentile(0, TimeUnit.MILLISECONDS) >= 90);
+        Thread.sleep(50);
+        Assert.assertEquals(suspendedTime, metrics.getSuspendedTime(TimeUnit.MILLISECONDS));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void enableMetricsStartedLane() {
+        CoLane lane = new CoLane();
+        lane.run(() -> { });
+        lane.enableMetrics();
+    }
+
+    @Test
+    public void histogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getValueAtPercentile(99, TimeUnit.NANOSECONDS));
+        for(int i = 1; i <= 1000; i++)
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(1000, histogram.getMax(TimeUnit.MICROSECONDS));
+        Assert.assertEquals(500.5, histogram.getMean(TimeUnit.MICROSECONDS), 0.01);
+        long median = histogram.getValueAtPercentile(50, TimeUnit.MICROSECONDS);
+        Assert.assertTrue(median >= 500 && median <= 500 * 1.125);
+        long p99 = histogram.getValueAtPercentile(99, TimeUnit.MICROSECONDS);
+        Assert.assertTrue(p99 >= 990 && p99 <= 1000);
+        Assert.assertEquals(1000, histogram.getValueAtPercentile(100, TimeUnit.MICROSECONDS));
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
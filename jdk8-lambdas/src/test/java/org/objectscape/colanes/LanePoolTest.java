@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.objectscape.colanes.coreceivers.Calculator;
+import org.objectscape.colanes.mailbox.EnqueueStatus;
+import org.objectscape.colanes.mailbox.OverflowPolicy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test cases for <code>LanePool</code>.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class LanePoolTest extends AbstractTest {
+
+    @Test
+    public void parallelExecution() throws InterruptedException {
+        LanePool pool = new LanePool("parallel", 4);
+        CyclicBarrier barrier = new CyclicBarrier(4);
+        CountDownLatch latch = new CountDownLatch(4);
+
+        // only completes if all 4 lambdas are executed at the same time
+        for(int i = 0; i < 4; i++) {
+            pool.run(() -> {
+                try {
+                    barrier.await(10, TimeUnit.SECONDS);
+                    latch.countDown();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(4, pool.getWorkers());
+        pool.getExecutor().shutdown();
+    }
+
+    @Test
+    public void handbackFutureCompletion() throws InterruptedException, ExecutionException {
+        LanePool pool = new LanePool("calculator", 4);
+        Calculator calculator = new Calculator() {
+            @Override
+            protected CoLane getLane() {
+                return pool;
+            }
+        };
+
+        List<HandbackFutureCompletion<Long>> handbacks = new ArrayList<>();
+        for(int i = 0; i < 100; i++)
+            handbacks.add(calculator.calculateFactorial(i % 20).runAsync());
+        for(int i = 0; i < 100; i++)
+            Assert.assertEquals(factorial(i % 20), handbacks.get(i).future().get().longValue());
+        Assert.assertEquals(0, pool.getQueueDepth());
+        pool.getExecutor().shutdown();
+    }
+
+    @Test
+    public void handback() throws InterruptedException {
+        LanePool pool = new LanePool("handback", 2);
+        CountDownLatch latch = new CountDownLatch(3);
+
+        pool.getHandback()
+                .runnable(() -> { latch.countDown(); })
+                .callback(() -> { latch.countDown(); })
+                .whenDone(() -> { latch.countDown(); })
+                .runAsync();
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertNull(pool.sender());
+        pool.getExecutor().shutdown();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void suspend() {
+        LanePool pool = new LanePool("suspend", 1);
+        try {
+            pool.suspend();
+        }
+        finally {
+            pool.getExecutor().shutdown();
+        }
+    }
+
+    @Test
+    public void unsupportedSettings() {
+        LanePool pool = new LanePool("unsupported", 1);
+        List<Runnable> settings = Arrays.asList(
+                () -> { pool.priorities(2); },
+                () -> { pool.poolHandbacks(10); },
+                () -> { pool.mailboxCapacity(10, OverflowPolicy.BLOCK); },
+                () -> { pool.captureCallSites(); },
+                () -> { pool.shutdown(); });
+        try {
+            for(Runnable setting : settings) {
+                try {
+                    setting.run();
+                    Assert.fail();
+                } catch (UnsupportedOperationException e) { }
+            }
+        }
+        finally {
+            pool.getExecutor().shutdown();
+        }
+    }
+
+    @Test
+    public void rejectedAfterExecutorShutdown() throws InterruptedException {
+        LanePool pool = new LanePool("rejected", 1);
+        pool.getExecutor().shutdown();
+
+        Assert.assertEquals(EnqueueStatus.REJECTED, pool.run(() -> { }));
+        Assert.assertEquals(0, pool.runAll(Arrays.asList(() -> { }, () -> { })));
+        Assert.assertTrue(CoLane.awaitQuiescence(Arrays.asList(pool), 10, TimeUnit.SECONDS));
+    }
+
+    private long factorial(int n) {
+        long result = 1;
+        for(int i = 2; i <= n; i++)
+            result *= i;
+        return result;
+    }
+
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.objectscape.colanes.executor.DedicatedThreadLaneExecutor;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test cases for <code>LaneWatchdog</code>. The slow lambdas are executed by a thread of their own so
+ * that they do not hold up other lanes.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class LaneWatchdogTest extends AbstractTest {
+
+    private final List<LaneStall> stalls = new CopyOnWriteArrayList<>();
+    private final LaneWatchdog watchdog = new LaneWatchdog(50, TimeUnit.MILLISECONDS, (LaneStall stall) -> { stalls.add(stall); });
+    private final DedicatedThreadLaneExecutor executor = new DedicatedThreadLaneExecutor();
+
+    @Override
+    public void tearDown() throws InterruptedException {
+        watchdog.stop();
+        executor.shutdown();
+        super.tearDown();
+    }
+
+    @Test
+    public void stall() throws InterruptedException {
+        CoLane lane = new CoLane("slow", executor).watchdog(watchdog).captureCallSites().enableMetrics();
+
+        runSlowLambda(lane);
+        awaitEmpty(lane);
+
+        // reported once although the lambda exceeded the threshold several times over
+        Assert.assertEquals(1, stalls.size());
+        LaneStall stall = stalls.get(0);
+        Assert.assertSame(lane, stall.getLane());
+        Assert.assertEquals("slow", stall.getLabel());
+        Assert.assertTrue(stall.getElapsed(TimeUnit.MILLISECONDS) >= 50);
+        Assert.assertTrue(contains(stall.getStackTrace(), "sleep"));
+        Assert.assertNotNull(stall.getCallSite());
+        Assert.assertTrue(contains(stall.getCallSite().getStackTrace(), "runSlowLambda"));
+        Assert.assertTrue(stall.toString().contains("slow"));
+        Assert.assertEquals(1, lane.getStallCount());
+        Assert.assertEquals(1, lane.getMetrics().getStallCount());
+        Assert.assertEquals(1, watchdog.getStallCount());
+    }
+
+    @Test
+    public void lanesHeldWeakly() throws InterruptedException {
+        WeakReference<CoLane> reference = new WeakReference<>(new CoLane("unused").watchdog(watchdog));
+        for(int i = 0; i < 100 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertNull(reference.get());
+    }
+
+    @Test
+    public void noCallSite() throws InterruptedException {
+        CoLane lane = new CoLane("slow", executor).watchdog(watchdog);
+
+        runSlowLambda(lane);
+        runSlowLambda(lane);
+        awaitEmpty(lane);
+
+        Assert.assertEquals(2, stalls.size());
+        Assert.assertNull(stalls.get(0).getCallSite());
+        Assert.assertEquals(2, lane.getStallCount());
+    }
+
+    @Test
+    public void noStall() throws InterruptedException {
+        CoLane lane = new CoLane("fast", executor).watchdog(watchdog);
+
+        for(int i = 0; i < 1000; i++)
+            lane.run(() -> { });
+        awaitEmpty(lane);
+        Thread.sleep(100);
+
+        Assert.assertEquals(0, stalls.size());
+        Assert.assertEquals(0, lane.getStallCount());
+    }
+
+    @Test
+    public void unwatch() throws InterruptedException {
+        CoLane lane = new CoLane("slow", executor).watchdog(watchdog);
+        watchdog.unwatch(lane);
+
+        runSlowLambda(lane);
+        awaitEmpty(lane);
+
+        Assert.assertEquals(0, stalls.size());
+    }
+
+    private void runSlowLambda(CoLane lane) {
+        lane.run(() -> { sleep(250); });
+    }
+
+    private static boolean contains(StackTraceElement[] stackTrace, String methodName) {
+        for(StackTraceElement element : stackTrace)
+            if(element.getMethodName().contains(methodName))
+                return true;
+        return false;
+    }
+
+    /**
+     * Wait till all lambdas enqueued on the lane so far have been executed.
+     */
+    private static void awaitEmpty(CoLane lane) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        lane.run(() -> { latch.countDown(); });
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+}
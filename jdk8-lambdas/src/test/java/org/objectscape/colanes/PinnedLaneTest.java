@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.objectscape.colanes.executor.IdleStrategy;
+import org.objectscape.colanes.executor.PinnedThreadLaneExecutor;
+import org.objectscape.colanes.mailbox.SingleConsumerMailbox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Test cases for lanes drained by a thread of their own and the single consumer mailbox they use.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class PinnedLaneTest extends AbstractTest {
+
+    @Test
+    public void executesInOrder() throws InterruptedException {
+        for(IdleStrategy idleStrategy : IdleStrategy.values()) {
+            PinnedLane lane = new PinnedLane("pinned", idleStrategy);
+            Assert.assertEquals(idleStrategy, lane.getIdleStrategy());
+            List<Integer> executed = new ArrayList<>();
+            AtomicBoolean otherThread = new AtomicBoolean();
+            for(int i = 0; i < 1000; i++) {
+                int value = i;
+                lane.run(() -> {
+                    if(Thread.currentThread() != lane.getThread())
+                        otherThread.set(true);
+                    executed.add(value);
+                });
+            }
+            lane.shutdown();
+            Assert.assertTrue(lane.awaitTermination(10, TimeUnit.SECONDS));
+            Assert.assertFalse(otherThread.get());
+            Assert.assertEquals(1000, executed.size());
+            for(int i = 0; i < 1000; i++)
+                Assert.assertEquals(i, executed.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void wakesUpWhenParked() throws InterruptedException {
+        PinnedLane lane = new PinnedLane("pinned", IdleStrategy.SPIN_PARK, 10);
+        for(int i = 0; i < 10; i++) {
+            // give the thread time to park
+            sleep(20);
+            CountDownLatch latch = new CountDownLatch(1);
+            lane.run(() -> { latch.countDown(); });
+            Assert.assertTrue(latch.await(1, TimeUnit.SECONDS));
+        }
+        lane.shutdown();
+    }
+
+    @Test
+    public void severalProducers() throws InterruptedException {
+        PinnedLane lane = new PinnedLane("pinned", IdleStrategy.SPIN_YIELD);
+        int producerCount = 4;
+        int lambdasPerProducer = 10000;
+        int[] lastExecuted = new int[producerCount];
+        AtomicBoolean outOfOrder = new AtomicBoolean();
+        Thread[] producers = new Thread[producerCount];
+        for(int i = 0; i < producerCount; i++) {
+            int producer = i;
+            lastExecuted[producer] = -1;
+            producers[i] = new Thread(() -> {
+                for(int j = 0; j < lambdasPerProducer; j++) {
+                    int value = j;
+                    lane.run(() -> {
+                        if(lastExecuted[producer] != value - 1)
+                            outOfOrder.set(true);
+                        lastExecuted[producer] = value;
+                    });
+                }
+            });
+            producers[i].start();
+        }
+        for(Thread producer : producers)
+            producer.join();
+        lane.shutdown();
+
+        Assert.assertTrue(lane.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertFalse(outOfOrder.get());
+        for(int i = 0; i < producerCount; i++)
+            Assert.assertEquals(lambdasPerProducer - 1, lastExecuted[i]);
+    }
+
+    @Test
+    public void runAll() throws InterruptedException {
+        PinnedLane lane = new PinnedLane("pinned");
+        lane.suspend();
+        List<Integer> executed = new ArrayList<>();
+        List<Runnable> runnables = new ArrayList<>();
+        for(int i = 0; i < 100; i++) {
+            int value = i;
+            runnables.add(() -> { executed.add(value); });
+        }
+        Assert.assertEquals(100, lane.runAll(runnables));
+        lane.run(() -> { executed.add(100); });
+        Assert.assertEquals(101, lane.getQueueDepth());
+        lane.resume();
+        lane.shutdown();
+
+        Assert.assertTrue(lane.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(101, executed.size());
+        for(int i = 0; i < 101; i++)
+            Assert.assertEquals(i, executed.get(i).intValue());
+    }
+
+    @Test
+    public void shutdownStopsThread() throws InterruptedException {
+        PinnedLane lane = new PinnedLane("pinned", IdleStrategy.BUSY_SPIN);
+        Thread thread = lane.getThread();
+        Assert.assertEquals("pinned", thread.getName());
+        Assert.assertTrue(thread.isAlive());
+
+        lane.shutdown();
+        Assert.assertTrue(lane.awaitTermination(10, TimeUnit.SECONDS));
+        thread.join(10000);
+        Assert.assertFalse(thread.isAlive());
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void executorShutDown() {
+        PinnedThreadLaneExecutor executor = new PinnedThreadLaneExecutor("pinned", IdleStrategy.SPIN_PARK);
+        executor.shutdown();
+        executor.execute(() -> { });
+    }
+
+    @Test
+    public void handback() throws InterruptedException, ExecutionException {
+        PinnedLane lane = new PinnedLane("pinned");
+        Thread thread = lane.<Thread>getHandbackFutureCompletion().supplier(() -> Thread.currentThread()).runAsync().future().get();
+        Assert.assertSame(lane.getThread(), thread);
+        lane.shutdown();
+    }
+
+    @Test
+    public void singleConsumerMailbox() {
+        SingleConsumerMailbox mailbox = new SingleConsumerMailbox();
+        Assert.assertTrue(mailbox.isEmpty());
+        Assert.assertNull(mailbox.poll());
+
+        Runnable first = () -> { };
+        Runnable second = () -> { };
+        mailbox.offer(first);
+        mailbox.offer(second);
+        Assert.assertFalse(mailbox.isEmpty());
+        Assert.assertEquals(2, mailbox.size());
+        Assert.assertSame(first, mailbox.poll());
+        Assert.assertSame(second, mailbox.poll());
+        Assert.assertNull(mailbox.poll());
+        Assert.assertTrue(mailbox.isEmpty());
+        Assert.assertEquals(0, mailbox.size());
+    }
+
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.objectscape.colanes.mailbox.MailboxFullException;
+import org.objectscape.colanes.mailbox.OverflowPolicy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test cases for <code>IntHandback</code>, <code>LongHandback</code> and <code>DoubleHandback</code>.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class PrimitiveHandbackTest extends AbstractTest {
+
+    @Test
+    public void intGet() throws InterruptedException, ExecutionException {
+        CoLane lane = new CoLane();
+        Assert.assertEquals(6765, lane.getIntHandback().supplier(() -> fibonacci(20)).runAsync().get());
+    }
+
+    @Test
+    public void longCallbackAndWhenDone() throws InterruptedException {
+        CoLane lane = new CoLane();
+        AtomicLong callbackResult = new AtomicLong();
+        AtomicLong whenDoneResult = new AtomicLong();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        lane.getLongHandback()
+                .supplier(() -> factorial(15))
+                .callback((long result) -> { callbackResult.set(result); })
+                .runAsyncWhenDone((long result) -> {
+                    whenDoneResult.set(result);
+                    latch.countDown();
+                });
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1307674368000L, callbackResult.get());
+        Assert.assertEquals(1307674368000L, whenDoneResult.get());
+    }
+
+    @Test
+    public void doubleGetWithTimeout() throws InterruptedException, ExecutionException, TimeoutException {
+        CoLane lane = new CoLane();
+        Assert.assertEquals(0.5, lane.getDoubleHandback().supplier(() -> 1.0 / 2).runAsync().get(10, TimeUnit.SECONDS), 0.0);
+    }
+
+    @Test
+    public void whenDoneOnCallerLane() throws InterruptedException {
+        CoLane caller = new CoLane("caller");
+        CoLane callee = new CoLane("callee");
+        AtomicReference<CoLane> whenDoneLane = new AtomicReference<>();
+        AtomicInteger result = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        caller.run(() -> {
+            callee.getIntHandback().supplier(() -> 42).runAsyncWhenDone((int reply) -> {
+                whenDoneLane.set(CoLane.current());
+                result.set(reply);
+                latch.countDown();
+            });
+        });
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertSame(caller, whenDoneLane.get());
+        Assert.assertEquals(42, result.get());
+    }
+
+    @Test
+    public void supplierFails() throws InterruptedException {
+        CoLane lane = new CoLane();
+        IntHandback handback = lane.getIntHandback().supplier(() -> { throw new IllegalArgumentException("failed"); }).runAsync();
+        try {
+            handback.get(10, TimeUnit.SECONDS);
+            Assert.fail();
+        }
+        catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        catch (TimeoutException e) {
+            Assert.fail();
+        }
+        Assert.assertTrue(handback.isCompletedExceptionally());
+    }
+
+    @Test
+    public void notEnqueued() throws InterruptedException {
+        CoLane lane = new CoLane().mailboxCapacity(1, OverflowPolicy.SIGNAL);
+        lane.suspend();
+        lane.run(() -> { });
+
+        LongHandback handback = lane.getLongHandback().supplier(() -> 1L).runAsync();
+        Assert.assertTrue(handback.isDone());
+        try {
+            handback.get();
+            Assert.fail();
+        }
+        catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof MailboxFullException);
+        }
+        lane.resume();
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void getTimesOut() throws InterruptedException, ExecutionException, TimeoutException {
+        CoLane lane = new CoLane();
+        CountDownLatch proceed = new CountDownLatch(1);
+        try {
+            lane.getIntHandback().supplier(() -> {
+                try {
+                    proceed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 1;
+            }).runAsync().get(50, TimeUnit.MILLISECONDS);
+        }
+        finally {
+            proceed.countDown();
+        }
+    }
+
+    private static int fibonacci(int n) {
+        return n <= 1 ? n : fibonacci(n - 1) + fibonacci(n - 2);
+    }
+
+    private static long factorial(int n) {
+        return n <= 1 ? 1 : n * factorial(n - 1);
+    }
+
+}
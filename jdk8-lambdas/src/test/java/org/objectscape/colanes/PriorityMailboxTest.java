@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.objectscape.colanes.mailbox.PriorityMailbox;
+import org.objectscape.colanes.metrics.LaneMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test cases for lanes with priorities and <code>PriorityMailbox</code>. The lanes are suspended while
+ * being filled so that the order of execution only depends on the priorities.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class PriorityMailboxTest extends AbstractTest {
+
+    @Test
+    public void urgentFirst() throws InterruptedException {
+        CoLane lane = new CoLane().priorities(2);
+        List<String> executed = new ArrayList<>();
+
+        lane.suspend();
+        for(int i = 0; i < 3; i++) {
+            int n = i;
+            lane.run(() -> { executed.add("data" + n); });
+        }
+        lane.runUrgent(() -> { executed.add("control0"); });
+        lane.runUrgent(() -> { executed.add("control1"); });
+        Assert.assertEquals(5, lane.getQueueDepth());
+        Assert.assertEquals(3, lane.getQueueDepth(0));
+        Assert.assertEquals(2, lane.getQueueDepth(1));
+        lane.resume();
+
+        awaitEmpty(lane);
+        Assert.assertEquals("[control0, control1, data0, data1, data2]", executed.toString());
+    }
+
+    @Test
+    public void severalPriorities() throws InterruptedException {
+        CoLane lane = new CoLane().priorities(3);
+        List<Integer> executed = new ArrayList<>();
+
+        lane.suspend();
+        for(int i = 0; i < 9; i++) {
+            int priority = i % 3;
+            lane.run(() -> { executed.add(priority); }, priority);
+        }
+        lane.resume();
+
+        awaitEmpty(lane);
+        Assert.assertEquals("[2, 2, 2, 1, 1, 1, 0, 0, 0]", executed.toString());
+    }
+
+    @Test
+    public void starvationGuard() {
+        PriorityMailbox mailbox = new PriorityMailbox(3, 2);
+        List<String> polled = new ArrayList<>();
+        mailbox.offer(() -> { polled.add("low"); }, 0);
+        mailbox.offer(() -> { polled.add("middle"); }, 1);
+        for(int i = 0; i < 6; i++)
+            mailbox.offer(() -> { polled.add("high"); }, 2);
+
+        Runnable runnable;
+        while((runnable = mailbox.poll()) != null)
+            runnable.run();
+
+        // every third lambda is one of a lower priority, the one not polled from for the longest time first
+        Assert.assertEquals("[high, high, low, high, high, middle, high, high]", polled.toString());
+        Assert.assertTrue(mailbox.isEmpty());
+        Assert.assertEquals(0, mailbox.size());
+    }
+
+    @Test
+    public void metricsPerPriority() throws InterruptedException {
+        CoLane lane = new CoLane().enableMetrics().priorities(2);
+        LaneMetrics metrics = lane.getMetrics();
+        Assert.assertEquals(2, metrics.getPriorityCount());
+
+        lane.suspend();
+        for(int i = 0; i < 4; i++)
+            lane.run(() -> { });
+        lane.runUrgent(() -> { });
+        Assert.assertEquals(4, metrics.getQueueDepth(0));
+        Assert.assertEquals(1, metrics.getQueueDepth(1));
+        // the metrics of a lambda are recorded after it has been executed
+        CountDownLatch latch = new CountDownLatch(1);
+        long[] counts = new long[3];
+        lane.run(() -> {
+            counts[0] = metrics.getQueueingDelay(0).getCount();
+            counts[1] = metrics.getQueueingDelay(1).getCount();
+            counts[2] = metrics.getQueueingDelay().getCount();
+            latch.countDown();
+        });
+        lane.resume();
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(4, counts[0]);
+        Assert.assertEquals(1, counts[1]);
+        Assert.assertEquals(5, counts[2]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void urgentWithoutPriorities() {
+        new CoLane().runUrgent(() -> { });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void priorityOutOfRange() {
+        new CoLane().priorities(2).run(() -> { }, 2);
+    }
+
+    /**
+     * Wait till all lambdas enqueued on the lane so far have been executed.
+     */
+    private static void awaitEmpty(CoLane lane) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        lane.run(() -> { latch.countDown(); });
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.objectscape.colanes.coreceivers.Spock;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test cases for delivering the whenDone lambdas of Handbacks to the lane that sent the request.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class ReplyToTest extends AbstractTest {
+
+    @Test
+    public void current() throws InterruptedException {
+        CoLane lane = new CoLane();
+        AtomicReference<CoLane> current = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        Assert.assertNull(CoLane.current());
+        lane.run(() -> {
+            current.set(CoLane.current());
+            latch.countDown();
+        });
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertSame(lane, current.get());
+    }
+
+    @Test
+    public void whenDoneOnCallerLane() throws InterruptedException {
+        CoLane caller = new CoLane("caller");
+        CoLane callee = new CoLane("callee");
+        AtomicReference<CoLane> whenDoneLane = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        caller.run(() -> {
+            callee.getHandback().runnable(() -> { }).whenDone(() -> {
+                whenDoneLane.set(CoLane.current());
+                latch.countDown();
+            }).runAsync();
+        });
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertSame(caller, whenDoneLane.get());
+    }
+
+    @Test
+    public void runAsyncWhenDoneOnCallerLane() throws InterruptedException {
+        CoLane caller = new CoLane("caller");
+        CoLane callee = new CoLane("callee");
+        AtomicReference<CoLane> whenDoneLane = new AtomicReference<>();
+        AtomicReference<String> result = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        caller.run(() -> {
+            callee.<String>getHandbackFutureCompletion().supplier(() -> "done").runAsyncWhenDone((String reply) -> {
+                whenDoneLane.set(CoLane.current());
+                result.set(reply);
+                latch.countDown();
+            });
+        });
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertSame(caller, whenDoneLane.get());
+        Assert.assertEquals("done", result.get());
+    }
+
+    @Test
+    public void whenDoneOnCalleeLaneIfNotSentFromLane() throws InterruptedException {
+        CoLane callee = new CoLane("callee");
+        AtomicReference<CoLane> whenDoneLane = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        Handback handback = callee.getHandback().runnable(() -> { }).whenDone(() -> {
+            whenDoneLane.set(CoLane.current());
+            latch.countDown();
+        }).runAsync();
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertSame(callee, whenDoneLane.get());
+        Assert.assertSame(callee, handback.replyTo());
+    }
+
+    @Test
+    public void explicitReplyTo() throws InterruptedException {
+        CoLane caller = new CoLane("caller");
+        CoLane callee = new CoLane("callee");
+        CoLane replyTo = new CoLane("replyTo");
+        AtomicReference<CoLane> whenDoneLane = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        caller.run(() -> {
+            callee.<Integer>getHandbackFutureCompletion().supplier(() -> 1).replyTo(replyTo).runAsyncWhenDone((Integer reply) -> {
+                whenDoneLane.set(CoLane.current());
+                latch.countDown();
+            });
+        });
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertSame(replyTo, whenDoneLane.get());
+    }
+
+    @Test
+    public void replyToShutDownLane() throws InterruptedException {
+        CoLane callee = new CoLane("callee");
+        CoLane replyTo = new CoLane("replyTo");
+        replyTo.shutdown();
+        Assert.assertTrue(replyTo.awaitTermination(10, TimeUnit.SECONDS));
+        List<CoLane> whenDoneLanes = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(2);
+
+        callee.<Integer>getHandbackFutureCompletion().supplier(() -> 1).replyTo(replyTo).runAsyncWhenDone((Integer reply) -> {
+            whenDoneLanes.add(CoLane.current());
+            latch.countDown();
+        });
+        callee.getIntHandback().supplier(() -> 1).replyTo(replyTo).runAsyncWhenDone((int reply) -> {
+            whenDoneLanes.add(CoLane.current());
+            latch.countDown();
+        });
+
+        // delivered to the lane of the Handback instead of getting lost
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertSame(callee, whenDoneLanes.get(0));
+        Assert.assertSame(callee, whenDoneLanes.get(1));
+    }
+
+    @Test
+    public void chainedRequestsFromCoReceiverLane() throws InterruptedException {
+        Spock spock = new Spock();
+        CoLane caller = new CoLane("caller");
+        List<CoLane> replyLanes = new CopyOnWriteArrayList<>();
+        AtomicReference<Long> result = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        caller.run(() -> {
+            spock.calculateFactorial(5).runAsyncWhenDone((Long first) -> {
+                replyLanes.add(CoLane.current());
+                // sent from the caller lane again without a hop, so its reply is delivered there as well
+                spock.calculateFactorial(6).runAsyncWhenDone((Long second) -> {
+                    replyLanes.add(CoLane.current());
+                    result.set(second);
+                    latch.countDown();
+                });
+            });
+        });
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(720L, result.get().longValue());
+        Assert.assertEquals(2, replyLanes.size());
+        Assert.assertSame(caller, replyLanes.get(0));
+        Assert.assertSame(caller, replyLanes.get(1));
+    }
+
+}
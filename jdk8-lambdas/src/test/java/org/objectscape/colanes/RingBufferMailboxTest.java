@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.objectscape.colanes.mailbox.EnqueueStatus;
+import org.objectscape.colanes.mailbox.MailboxFullException;
+import org.objectscape.colanes.mailbox.OverflowPolicy;
+import org.objectscape.colanes.mailbox.RingBufferMailbox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Test cases for lanes with a ring buffer mailbox. Like in <code>BoundedMailboxTest</code> the lanes
+ * are suspended while being filled.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class RingBufferMailboxTest extends AbstractTest {
+
+    @Test
+    public void dropNewest() throws InterruptedException {
+        List<Integer> results = new ArrayList<>();
+        CoLane lane = fill(OverflowPolicy.DROP_NEWEST, results);
+
+        Assert.assertEquals(EnqueueStatus.DROPPED, lane.run(() -> { results.add(2); }));
+        Assert.assertEquals(2, lane.getQueueDepth());
+
+        drain(lane);
+        Assert.assertEquals(Arrays.asList(0, 1), results);
+    }
+
+    @Test
+    public void signal() throws InterruptedException {
+        List<Integer> results = new ArrayList<>();
+        CoLane lane = fill(OverflowPolicy.SIGNAL, results);
+        Assert.assertEquals(EnqueueStatus.REJECTED, lane.run(() -> { results.add(2); }));
+        drain(lane);
+        Assert.assertEquals(2, results.size());
+    }
+
+    @Test(expected = MailboxFullException.class)
+    public void fail() {
+        CoLane lane = fill(OverflowPolicy.FAIL, new ArrayList<>());
+        lane.run(() -> { });
+    }
+
+    @Test
+    public void block() throws InterruptedException {
+        List<Integer> results = new ArrayList<>();
+        CoLane lane = fill(OverflowPolicy.BLOCK, results);
+        CountDownLatch enqueued = new CountDownLatch(1);
+
+        new Thread(() -> {
+            lane.run(() -> { results.add(2); });
+            enqueued.countDown();
+        }).start();
+
+        Assert.assertFalse(enqueued.await(200, TimeUnit.MILLISECONDS));
+        lane.resume();
+        Assert.assertTrue(enqueued.await(10, TimeUnit.SECONDS));
+
+        lane.suspend();
+        drain(lane);
+        Assert.assertEquals(Arrays.asList(0, 1, 2), results);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void dropOldestNotSupported() {
+        new RingBufferMailbox(2, OverflowPolicy.DROP_OLDEST);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityNotPowerOfTwo() {
+        new CoLane().ringBuffer(3, OverflowPolicy.BLOCK);
+    }
+
+    @Test
+    public void runAll() throws InterruptedException {
+        List<Integer> results = new ArrayList<>();
+        CoLane lane = new CoLane().ringBuffer(4, OverflowPolicy.SIGNAL);
+        lane.suspend();
+        lane.run(() -> { results.add(0); });
+
+        // claimed at once
+        Assert.assertEquals(2, lane.runAll(Arrays.asList(() -> { results.add(1); }, () -> { results.add(2); })));
+        // only room for the first one left
+        Assert.assertEquals(1, lane.runAll(Arrays.asList(() -> { results.add(3); }, () -> { results.add(4); })));
+        Assert.assertEquals(4, lane.getQueueDepth());
+
+        drain(lane);
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3), results);
+    }
+
+    @Test
+    public void wrapAroundSeveralProducers() throws InterruptedException {
+        CoLane lane = new CoLane().ringBuffer(8, OverflowPolicy.BLOCK);
+        int producerCount = 4;
+        int lambdasPerProducer = 10000;
+        int[] lastExecuted = new int[producerCount];
+        AtomicBoolean outOfOrder = new AtomicBoolean();
+        Thread[] producers = new Thread[producerCount];
+        for(int i = 0; i < producerCount; i++) {
+            int producer = i;
+            lastExecuted[producer] = -1;
+            producers[i] = new Thread(() -> {
+                for(int j = 0; j < lambdasPerProducer; j++) {
+                    int value = j;
+                    lane.run(() -> {
+                        if(lastExecuted[producer] != value - 1)
+                            outOfOrder.set(true);
+                        lastExecuted[producer] = value;
+                    });
+                }
+            });
+            producers[i].start();
+        }
+        for(Thread producer : producers)
+            producer.join();
+        lane.shutdown();
+
+        Assert.assertTrue(lane.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertFalse(outOfOrder.get());
+        for(int i = 0; i < producerCount; i++)
+            Assert.assertEquals(lambdasPerProducer - 1, lastExecuted[i]);
+    }
+
+    private CoLane fill(OverflowPolicy overflowPolicy, List<Integer> results) {
+        CoLane lane = new CoLane().ringBuffer(2, overflowPolicy);
+        lane.suspend();
+        Assert.assertEquals(EnqueueStatus.ENQUEUED, lane.run(() -> { results.add(0); }));
+        Assert.assertEquals(EnqueueStatus.ENQUEUED, lane.run(() -> { results.add(1); }));
+        Assert.assertEquals(2, lane.getQueueDepth());
+        return lane;
+    }
+
+    private void drain(CoLane lane) throws InterruptedException {
+        lane.resume();
+        lane.shutdown();
+        Assert.assertTrue(lane.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.objectscape.colanes.mailbox.MailboxFullException;
+import org.objectscape.colanes.mailbox.OverflowPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test cases for enqueuing batches of lambdas and Handbacks.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class RunAllTest extends AbstractTest {
+
+    @Test
+    public void runAll() throws InterruptedException {
+        CoLane lane = new CoLane();
+        List<Integer> results = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        lane.run(() -> { results.add(-1); });
+        List<Runnable> runnables = new ArrayList<>();
+        for(int i = 0; i < 1000; i++) {
+            int value = i;
+            runnables.add(() -> { results.add(value); });
+        }
+        runnables.add(() -> { latch.countDown(); });
+
+        Assert.assertEquals(1001, lane.runAll(runnables));
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1001, results.size());
+        for(int i = 0; i < results.size(); i++)
+            Assert.assertEquals(i - 1, results.get(i).intValue());
+    }
+
+    @Test
+    public void runAllBounded() throws InterruptedException {
+        CoLane lane = new CoLane().mailboxCapacity(2, OverflowPolicy.DROP_NEWEST);
+        lane.suspend();
+        List<Runnable> runnables = new ArrayList<>();
+        for(int i = 0; i < 5; i++)
+            runnables.add(() -> { });
+        Assert.assertEquals(2, lane.runAll(runnables));
+        lane.resume();
+    }
+
+    @Test
+    public void handbackBatch() throws InterruptedException, ExecutionException {
+        CoLane lane1 = new CoLane();
+        CoLane lane2 = new CoLane();
+        List<HandbackFutureCompletion<Integer>> handbacks = new ArrayList<>();
+        List<Integer> order = new ArrayList<>();
+        HandbackBatch batch = new HandbackBatch();
+
+        for(int i = 0; i < 100; i++) {
+            int value = i;
+            CoLane lane = i % 2 == 0 ? lane1 : lane2;
+            HandbackFutureCompletion<Integer> handback = lane.<Integer>getHandbackFutureCompletion().supplier(() -> {
+                if(value % 2 == 0)
+                    order.add(value);
+                return value;
+            });
+            handbacks.add(handback);
+            batch.add(handback);
+        }
+
+        batch.runAsync();
+        for(int i = 0; i < 100; i++) {
+            Assert.assertTrue(handbacks.get(i).isEnqueued());
+            Assert.assertEquals(i, handbacks.get(i).future().get().intValue());
+        }
+        for(int i = 0; i < order.size(); i++)
+            Assert.assertEquals(i * 2, order.get(i).intValue());
+    }
+
+    @Test
+    public void handbackBatchRejected() throws InterruptedException {
+        CoLane lane = new CoLane().mailboxCapacity(1, OverflowPolicy.SIGNAL);
+        lane.suspend();
+        HandbackFutureCompletion<String> first = lane.<String>getHandbackFutureCompletion().supplier(() -> "first");
+        HandbackFutureCompletion<String> second = lane.<String>getHandbackFutureCompletion().supplier(() -> "second");
+
+        new HandbackBatch().add(first).add(second).runAsync();
+
+        Assert.assertFalse(first.future().isDone());
+        try {
+            second.future().get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof MailboxFullException);
+        }
+        lane.resume();
+    }
+
+    @Test
+    public void handbackBatchInvalid() throws InterruptedException {
+        CoLane lane = new CoLane();
+        HandbackFutureCompletion<String> first = lane.<String>getHandbackFutureCompletion().supplier(() -> "first");
+        HandbackFutureCompletion<String> second = lane.<String>getHandbackFutureCompletion().supplier(() -> "second").runAsync();
+        HandbackBatch batch = new HandbackBatch().add(first).add(second);
+
+        try {
+            batch.runAsync();
+            Assert.fail();
+        } catch (IllegalStateException e) { }
+
+        Assert.assertFalse(batch.isEnqueued());
+        Assert.assertFalse(first.isEnqueued());
+        Assert.assertFalse(first.isDone());
+    }
+
+    @Test
+    public void handbackBatchShutDown() throws InterruptedException {
+        CoLane lane = new CoLane();
+        lane.shutdown();
+        HandbackFutureCompletion<String> handback = lane.<String>getHandbackFutureCompletion().supplier(() -> "hello");
+
+        new HandbackBatch().add(handback).runAsync();
+
+        Assert.assertTrue(handback.isDone());
+        try {
+            handback.future().get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void handbackBatchFail() throws InterruptedException, ExecutionException {
+        CoLane lane = new CoLane().mailboxCapacity(1, OverflowPolicy.FAIL);
+        lane.suspend();
+        HandbackFutureCompletion<String> first = lane.<String>getHandbackFutureCompletion().supplier(() -> "first");
+        HandbackFutureCompletion<String> second = lane.<String>getHandbackFutureCompletion().supplier(() -> "second");
+
+        try {
+            new HandbackBatch().add(first).add(second).runAsync();
+            Assert.fail();
+        } catch (MailboxFullException e) { }
+
+        Assert.assertTrue(second.isDone());
+        Assert.assertTrue(second.future().isCompletedExceptionally());
+        lane.resume();
+        Assert.assertEquals("first", first.future().get());
+    }
+
+}
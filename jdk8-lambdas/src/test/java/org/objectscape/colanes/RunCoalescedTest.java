@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.objectscape.colanes.executor.DedicatedThreadLaneExecutor;
+import org.objectscape.colanes.mailbox.EnqueueStatus;
+import org.objectscape.colanes.mailbox.OverflowPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test cases for <code>CoLane.runCoalesced()</code>.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class RunCoalescedTest extends AbstractTest {
+
+    @Test
+    public void replace() throws InterruptedException {
+        CoLane lane = new CoLane();
+        List<Integer> executed = new ArrayList<>();
+
+        lane.suspend();
+        Assert.assertEquals(EnqueueStatus.ENQUEUED, lane.runCoalesced("refresh", () -> { executed.add(1); }));
+        Assert.assertEquals(EnqueueStatus.REPLACED, lane.runCoalesced("refresh", () -> { executed.add(2); }));
+        Assert.assertEquals(EnqueueStatus.REPLACED, lane.runCoalesced("refresh", () -> { executed.add(3); }));
+        lane.resume();
+
+        awaitEmpty(lane);
+        Assert.assertEquals(1, executed.size());
+        Assert.assertEquals(3, executed.get(0).intValue());
+        Assert.assertEquals(2, lane.getCoalescedCount());
+    }
+
+    @Test
+    public void keepPending() throws InterruptedException {
+        CoLane lane = new CoLane();
+        List<Integer> executed = new ArrayList<>();
+
+        lane.suspend();
+        Assert.assertEquals(EnqueueStatus.ENQUEUED, lane.runCoalesced("refresh", () -> { executed.add(1); }, CoalescePolicy.KEEP_PENDING));
+        Assert.assertEquals(EnqueueStatus.COALESCED, lane.runCoalesced("refresh", () -> { executed.add(2); }, CoalescePolicy.KEEP_PENDING));
+        lane.resume();
+
+        awaitEmpty(lane);
+        Assert.assertEquals(1, executed.size());
+        Assert.assertEquals(1, executed.get(0).intValue());
+        Assert.assertEquals(1, lane.getCoalescedCount());
+    }
+
+    @Test
+    public void keepsPositionInMailbox() throws InterruptedException {
+        CoLane lane = new CoLane();
+        List<String> executed = new ArrayList<>();
+
+        lane.suspend();
+        lane.runCoalesced("refresh", () -> { executed.add("first refresh"); });
+        lane.run(() -> { executed.add("other"); });
+        lane.runCoalesced("refresh", () -> { executed.add("second refresh"); });
+        lane.resume();
+
+        awaitEmpty(lane);
+        Assert.assertEquals(2, executed.size());
+        Assert.assertEquals("second refresh", executed.get(0));
+        Assert.assertEquals("other", executed.get(1));
+    }
+
+    @Test
+    public void differentKeys() throws InterruptedException {
+        CoLane lane = new CoLane();
+        AtomicInteger executed = new AtomicInteger();
+
+        lane.suspend();
+        for(int i = 0; i < 10; i++)
+            lane.runCoalesced(i % 2, () -> { executed.incrementAndGet(); });
+        lane.resume();
+
+        awaitEmpty(lane);
+        Assert.assertEquals(2, executed.get());
+        Assert.assertEquals(8, lane.getCoalescedCount());
+    }
+
+    @Test
+    public void enqueuedAgainOnceStarted() throws InterruptedException {
+        DedicatedThreadLaneExecutor executor = new DedicatedThreadLaneExecutor();
+        CoLane lane = new CoLane(executor);
+        AtomicInteger executed = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+
+        lane.runCoalesced("refresh", () -> {
+            executed.incrementAndGet();
+            started.countDown();
+            await(proceed);
+        });
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        // the first lambda is running and must not be replaced
+        Assert.assertEquals(EnqueueStatus.ENQUEUED, lane.runCoalesced("refresh", () -> { executed.incrementAndGet(); }));
+        proceed.countDown();
+
+        awaitEmpty(lane);
+        Assert.assertEquals(2, executed.get());
+        Assert.assertEquals(0, lane.getCoalescedCount());
+        executor.shutdown();
+    }
+
+    @Test
+    public void rejectedNotPending() throws InterruptedException {
+        CoLane lane = new CoLane().mailboxCapacity(2, OverflowPolicy.DROP_NEWEST);
+        AtomicInteger executed = new AtomicInteger();
+
+        CountDownLatch drained = new CountDownLatch(1);
+
+        lane.suspend();
+        lane.run(() -> { });
+        lane.run(() -> { drained.countDown(); });
+        Assert.assertEquals(EnqueueStatus.DROPPED, lane.runCoalesced("refresh", () -> { executed.incrementAndGet(); }));
+        lane.resume();
+        Assert.assertTrue(drained.await(10, TimeUnit.SECONDS));
+
+        // the dropped lambda must not keep its key pending
+        Assert.assertEquals(EnqueueStatus.ENQUEUED, lane.runCoalesced("refresh", () -> { executed.incrementAndGet(); }));
+        awaitEmpty(lane);
+        Assert.assertEquals(1, executed.get());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void dropOldestNotSupported() {
+        CoLane lane = new CoLane().mailboxCapacity(10, OverflowPolicy.DROP_OLDEST);
+        lane.runCoalesced("refresh", () -> { });
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wait till all lambdas enqueued on the lane so far have been executed.
+     */
+    private static void awaitEmpty(CoLane lane) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        lane.run(() -> { latch.countDown(); });
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test cases for lanes that execute lambdas run on themselves inline.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class RunInlineTest extends AbstractTest {
+
+    @Test
+    public void inline() throws InterruptedException {
+        CoLane lane = new CoLane().runInlineIfCurrent(10);
+        List<String> order = new ArrayList<>();
+        List<Integer> queueDepths = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        lane.run(() -> {
+            order.add("first");
+            lane.run(() -> {
+                order.add("inlined");
+                latch.countDown();
+            });
+            queueDepths.add(lane.getQueueDepth());
+        });
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, queueDepths.get(0).intValue());
+        Assert.assertEquals("first", order.get(0));
+        Assert.assertEquals("inlined", order.get(1));
+    }
+
+    @Test
+    public void fifoWithEnqueuedLambdas() throws InterruptedException {
+        CoLane lane = new CoLane().runInlineIfCurrent(10);
+        List<String> order = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        lane.suspend();
+        lane.run(() -> {
+            order.add("first");
+            lane.run(() -> {
+                order.add("third");
+                latch.countDown();
+            });
+        });
+        lane.run(() -> { order.add("second"); });
+        lane.resume();
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(3, order.size());
+        Assert.assertEquals("first", order.get(0));
+        Assert.assertEquals("second", order.get(1));
+        Assert.assertEquals("third", order.get(2));
+    }
+
+    @Test
+    public void maxDepth() throws InterruptedException {
+        CoLane lane = new CoLane().runInlineIfCurrent(3);
+        List<Integer> queueDepths = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        lane.run(new Runnable() {
+            int steps = 0;
+            @Override
+            public void run() {
+                if(++steps == 6) {
+                    latch.countDown();
+                    return;
+                }
+                lane.run(this);
+                queueDepths.add(lane.getQueueDepth());
+            }
+        });
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        // the 4th lambda in a row is enqueued, after which inlining starts over
+        Assert.assertEquals(5, queueDepths.size());
+        Assert.assertEquals(0, queueDepths.get(0).intValue());
+        Assert.assertEquals(0, queueDepths.get(1).intValue());
+        Assert.assertEquals(0, queueDepths.get(2).intValue());
+        Assert.assertEquals(1, queueDepths.get(3).intValue());
+        Assert.assertEquals(0, queueDepths.get(4).intValue());
+    }
+
+    @Test
+    public void suspendedWithInlinedLambdas() throws InterruptedException {
+        CoLane lane = new CoLane().runInlineIfCurrent(10);
+        CountDownLatch suspended = new CountDownLatch(1);
+        CountDownLatch inlined = new CountDownLatch(1);
+
+        lane.run(() -> {
+            lane.run(() -> { inlined.countDown(); });
+            lane.suspend();
+            suspended.countDown();
+        });
+
+        Assert.assertTrue(suspended.await(10, TimeUnit.SECONDS));
+        Assert.assertFalse(CoLane.awaitQuiescence(Arrays.asList(lane), 100, TimeUnit.MILLISECONDS));
+        lane.shutdown();
+        Assert.assertFalse(lane.isTerminated());
+
+        lane.resume();
+        Assert.assertTrue(inlined.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(lane.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void disabledByDefault() throws InterruptedException {
+        CoLane lane = new CoLane();
+        List<Integer> queueDepths = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        lane.run(() -> {
+            lane.run(() -> { latch.countDown(); });
+            queueDepths.add(lane.getQueueDepth());
+        });
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, queueDepths.get(0).intValue());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void configureStartedLane() {
+        CoLane lane = new CoLane();
+        lane.run(() -> { });
+        lane.runInlineIfCurrent(10);
+    }
+
+}
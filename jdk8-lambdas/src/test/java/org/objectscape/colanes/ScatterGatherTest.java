@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.objectscape.colanes.executor.DedicatedThreadLaneExecutor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Test cases for <code>ScatterGather</code>.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class ScatterGatherTest extends AbstractTest {
+
+    @Test
+    public void allResults() throws InterruptedException, ExecutionException, TimeoutException {
+        ScatterGather<Integer, List<Integer>> scatterGather = ScatterGather.collecting();
+        for(int i = 1; i <= 5; i++) {
+            int value = i;
+            scatterGather.add(new CoLane(), () -> value);
+        }
+
+        List<Integer> results = new ArrayList<>(scatterGather.runAsync().future().get(10, TimeUnit.SECONDS));
+        Collections.sort(results);
+        Assert.assertEquals(5, results.size());
+        Assert.assertEquals(Integer.valueOf(1), results.get(0));
+        Assert.assertEquals(Integer.valueOf(5), results.get(4));
+        Assert.assertTrue(scatterGather.isQuorumReached());
+        Assert.assertFalse(scatterGather.isDeadlineExpired());
+    }
+
+    @Test
+    public void combineOnCallerLane() throws InterruptedException {
+        CoLane caller = new CoLane("caller");
+        AtomicInteger combinedOnOtherLane = new AtomicInteger();
+        AtomicReference<Integer> sum = new AtomicReference<>();
+        AtomicReference<CoLane> whenDoneLane = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        caller.run(() -> {
+            ScatterGather<Integer, Integer> scatterGather = new ScatterGather<>(0, (Integer total, Integer result) -> {
+                if(CoLane.current() != caller)
+                    combinedOnOtherLane.incrementAndGet();
+                return total + result;
+            });
+            for(int i = 1; i <= 10; i++) {
+                int value = i;
+                scatterGather.add(new CoLane(), () -> value);
+            }
+            scatterGather.runAsyncWhenDone((Integer total) -> {
+                whenDoneLane.set(CoLane.current());
+                sum.set(total);
+                latch.countDown();
+            });
+        });
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(Integer.valueOf(55), sum.get());
+        Assert.assertEquals(0, combinedOnOtherLane.get());
+        Assert.assertSame(caller, whenDoneLane.get());
+    }
+
+    @Test
+    public void quorum() throws InterruptedException, ExecutionException, TimeoutException {
+        CountDownLatch proceed = new CountDownLatch(1);
+        // the blocked target gets its own thread so that it does not block the threads of the other lanes
+        CoLane blockedLane = new CoLane(new DedicatedThreadLaneExecutor());
+        ScatterGather<String, List<String>> scatterGather = ScatterGather.<String>collecting()
+                .add(new CoLane(), () -> "first")
+                .add(new CoLane(), () -> "second")
+                .add(blockedLane, blockingSupplier(proceed, "blocked"))
+                .quorum(2);
+
+        try {
+            List<String> results = scatterGather.runAsync().future().get(10, TimeUnit.SECONDS);
+            Assert.assertEquals(2, results.size());
+            Assert.assertFalse(results.contains("blocked"));
+            Assert.assertTrue(scatterGather.isQuorumReached());
+        }
+        finally {
+            proceed.countDown();
+            blockedLane.getExecutor().shutdown();
+        }
+    }
+
+    @Test
+    public void partialResultsAfterDeadline() throws InterruptedException, ExecutionException, TimeoutException {
+        CountDownLatch proceed = new CountDownLatch(1);
+        // the blocked target gets its own thread so that it does not block the threads of the other lanes
+        CoLane blockedLane = new CoLane(new DedicatedThreadLaneExecutor());
+        ScatterGather<String, List<String>> scatterGather = ScatterGather.<String>collecting()
+                .add(new CoLane(), () -> "answered")
+                .add(blockedLane, blockingSupplier(proceed, "blocked"))
+                .deadline(50, TimeUnit.MILLISECONDS);
+
+        try {
+            List<String> results = scatterGather.runAsync().future().get(10, TimeUnit.SECONDS);
+            Assert.assertEquals(Collections.singletonList("answered"), results);
+            Assert.assertTrue(scatterGather.isDeadlineExpired());
+            Assert.assertFalse(scatterGather.isQuorumReached());
+            Assert.assertEquals(1, scatterGather.getResultCount());
+        }
+        finally {
+            proceed.countDown();
+            blockedLane.getExecutor().shutdown();
+        }
+    }
+
+    @Test
+    public void quorumUnreachable() throws InterruptedException, ExecutionException, TimeoutException {
+        ScatterGather<String, List<String>> scatterGather = ScatterGather.<String>collecting()
+                .add(new CoLane(), () -> "answered")
+                .add(new CoLane(), () -> { throw new IllegalStateException("failed"); })
+                .add(new CoLane(), () -> { throw new IllegalStateException("failed"); })
+                .quorum(2)
+                .deadline(1, TimeUnit.HOURS);
+
+        List<String> results = scatterGather.runAsync().future().get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(Collections.singletonList("answered"), results);
+        Assert.assertFalse(scatterGather.isQuorumReached());
+        Assert.assertFalse(scatterGather.isDeadlineExpired());
+        Assert.assertEquals(2, scatterGather.getFailureCount());
+        Assert.assertTrue(scatterGather.getFailures().get(0) instanceof IllegalStateException);
+        try {
+            scatterGather.getFailures().clear();
+            Assert.fail();
+        } catch (UnsupportedOperationException e) { }
+    }
+
+    @Test
+    public void cancelReachesTargets() throws InterruptedException {
+        CoLane first = new CoLane("first");
+        CoLane second = new CoLane("second");
+        AtomicInteger executed = new AtomicInteger();
+        first.suspend();
+        second.suspend();
+
+        ScatterGather<Integer, List<Integer>> scatterGather = ScatterGather.<Integer>collecting()
+                .add(first, () -> executed.incrementAndGet())
+                .add(second, () -> executed.incrementAndGet())
+                .runAsync();
+        Assert.assertTrue(scatterGather.future().cancel(false));
+
+        first.resume();
+        second.resume();
+        Assert.assertTrue(CoLane.awaitQuiescence(Arrays.asList(first, second), 10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, executed.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void quorumGreaterThanTargets() {
+        ScatterGather.<String>collecting().add(new CoLane(), () -> "answered").quorum(2).runAsync();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addAfterEnqueue() {
+        ScatterGather<String, List<String>> scatterGather = ScatterGather.<String>collecting().add(new CoLane(), () -> "answered").runAsync();
+        scatterGather.add(new CoLane(), () -> "too late");
+    }
+
+    private static Supplier<String> blockingSupplier(CountDownLatch proceed, String result) {
+        return () -> {
+            try {
+                proceed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return result;
+        };
+    }
+
+}
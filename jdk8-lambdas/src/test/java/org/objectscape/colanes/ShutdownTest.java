@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.objectscape.colanes.mailbox.EnqueueStatus;
+import org.objectscape.colanes.registry.Registry;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test cases for shutting down lanes and waiting for lanes to become quiescent.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class ShutdownTest extends AbstractTest {
+
+    @Test
+    public void shutdownExecutesPending() throws InterruptedException {
+        CoLane lane = new CoLane();
+        AtomicInteger executed = new AtomicInteger();
+
+        lane.suspend();
+        for(int i = 0; i < 100; i++)
+            lane.run(() -> { executed.incrementAndGet(); });
+        lane.shutdown();
+        Assert.assertTrue(lane.isShutdown());
+        Assert.assertEquals(EnqueueStatus.SHUT_DOWN, lane.run(() -> { executed.incrementAndGet(); }));
+        Assert.assertFalse(lane.awaitTermination(50, TimeUnit.MILLISECONDS));
+        lane.resume();
+
+        Assert.assertTrue(lane.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue(lane.isTerminated());
+        Assert.assertEquals(100, executed.get());
+    }
+
+    @Test
+    public void shutdownIdle() throws InterruptedException {
+        CoLane lane = new CoLane();
+        lane.shutdown();
+        Assert.assertTrue(lane.isTerminated());
+        Assert.assertTrue(lane.awaitTermination(0, TimeUnit.SECONDS));
+        Assert.assertEquals(0, lane.runAll(Arrays.asList(() -> { })));
+    }
+
+    @Test
+    public void handbackAfterShutdown() throws InterruptedException {
+        CoLane lane = new CoLane();
+        lane.shutdown();
+        try {
+            lane.<String>getHandbackFutureCompletion().supplier(() -> "shut down").runAsync().future().get();
+            Assert.fail();
+        }
+        catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void shutdownWhileEnqueuing() throws InterruptedException {
+        CoLane lane = new CoLane();
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger executed = new AtomicInteger();
+        AtomicBoolean executedAfterTermination = new AtomicBoolean();
+        Thread[] producers = new Thread[4];
+        for(int i = 0; i < producers.length; i++) {
+            producers[i] = new Thread(() -> {
+                while(true) {
+                    EnqueueStatus status = lane.run(() -> {
+                        if(lane.isTerminated())
+                            executedAfterTermination.set(true);
+                        executed.incrementAndGet();
+                    });
+                    if(!status.isEnqueued())
+                        return;
+                    accepted.incrementAndGet();
+                }
+            });
+            producers[i].start();
+        }
+
+        Thread.sleep(50);
+        lane.shutdown();
+        Assert.assertTrue(lane.awaitTermination(10, TimeUnit.SECONDS));
+        for(Thread producer : producers)
+            producer.join();
+
+        Assert.assertEquals(accepted.get(), executed.get());
+        Assert.assertFalse(executedAfterTermination.get());
+    }
+
+    @Test
+    public void awaitQuiescence() throws InterruptedException {
+        CoLane first = new CoLane();
+        CoLane second = new CoLane();
+        CoLane third = new CoLane();
+        AtomicInteger executed = new AtomicInteger();
+
+        for(int i = 0; i < 10; i++) {
+            first.run(() -> {
+                sleep(1);
+                second.run(() -> {
+                    sleep(1);
+                    third.run(() -> { executed.incrementAndGet(); });
+                });
+            });
+        }
+
+        Assert.assertTrue(Registry.getDefault().awaitQuiescence(10, TimeUnit.SECONDS));
+        Assert.assertEquals(10, executed.get());
+    }
+
+    @Test
+    public void awaitQuiescenceBusyReceiver() throws InterruptedException {
+        AtomicInteger executed = new AtomicInteger();
+        SlowReceiver receiver = new SlowReceiver();
+        for(int i = 0; i < 10; i++)
+            receiver.work(executed);
+
+        Assert.assertTrue(Registry.getDefault().awaitQuiescence(10, TimeUnit.SECONDS));
+        Assert.assertEquals(10, executed.get());
+    }
+
+    @Test
+    public void awaitQuiescenceSuspended() throws InterruptedException {
+        CoLane lane = new CoLane();
+        lane.suspend();
+        lane.run(() -> { });
+
+        Assert.assertFalse(CoLane.awaitQuiescence(Arrays.asList(lane), 50, TimeUnit.MILLISECONDS));
+        lane.resume();
+        Assert.assertTrue(CoLane.awaitQuiescence(Arrays.asList(lane), 10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void laneCreatedByRegistry() throws InterruptedException {
+        Registry registry = Registry.get("shutdown");
+        CoLane lane = registry.newLane("tracked");
+        AtomicInteger executed = new AtomicInteger();
+
+        for(int i = 0; i < 10; i++)
+            lane.run(() -> {
+                sleep(5);
+                executed.incrementAndGet();
+            });
+
+        Assert.assertTrue(registry.awaitQuiescence(10, TimeUnit.SECONDS));
+        Assert.assertEquals(10, executed.get());
+    }
+
+    @Test
+    public void clearKeepsTrackedLanes() throws InterruptedException {
+        Registry registry = Registry.get("shutdownClear");
+        CoLane lane = registry.newLane();
+        AtomicInteger executed = new AtomicInteger();
+
+        for(int i = 0; i < 10; i++)
+            lane.run(() -> {
+                sleep(5);
+                executed.incrementAndGet();
+            });
+        registry.clear();
+
+        Assert.assertTrue(registry.awaitQuiescence(10, TimeUnit.SECONDS));
+        Assert.assertEquals(10, executed.get());
+    }
+
+    private class SlowReceiver extends AbstractCoReceiver {
+
+        public void work(AtomicInteger executed) {
+            run(() -> {
+                sleep(5);
+                executed.incrementAndGet();
+            });
+        }
+
+    }
+
+}
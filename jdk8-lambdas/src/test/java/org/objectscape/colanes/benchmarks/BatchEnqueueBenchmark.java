@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.benchmarks;
+
+import org.objectscape.colanes.CoLane;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost per lambda of enqueuing a batch of small lambdas on a lane with a single call
+ * to <code>CoLane.runAll()</code> compared to calling <code>CoLane.run()</code> for every lambda.
+ * The time until the lane has executed the whole batch is included.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchEnqueueBenchmark {
+
+    private static final int BatchSize = 1000;
+
+    private CoLane lane = null;
+    private List<Runnable> runnables = null;
+    private long counter = 0;
+
+    @Setup
+    public void setUp() {
+        lane = new CoLane("batch");
+        runnables = new ArrayList<>(BatchSize);
+        for(int i = 0; i < BatchSize; i++)
+            runnables.add(() -> { counter++; });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BatchSize)
+    public void loopRun() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        for(Runnable runnable : runnables)
+            lane.run(runnable);
+        lane.run(() -> { latch.countDown(); });
+        latch.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BatchSize)
+    public void runAll() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        lane.runAll(runnables);
+        lane.run(() -> { latch.countDown(); });
+        latch.await();
+    }
+
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.benchmarks;
+
+import org.objectscape.colanes.CoLane;
+import org.objectscape.colanes.executor.DedicatedThreadLaneExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the latency distribution of requests to 16 lightly loaded lanes that share a single thread
+ * with a flood lane, which every 20 ms is sent a burst of 5000 lambdas of about a microsecond each. Without
+ * a drain budget a request sent during a burst waits till the flood lane has drained its whole backlog.
+ * With a drain budget of 64 lambdas or 100 microseconds per turn the flood lane hands the thread back
+ * regularly, which the 99th percentile reported by the sample time mode shows. Requests are sent after a
+ * random pause outside of the measured time, so that they arrive independently of the bursts instead of
+ * piling up behind a single request that waits for a burst to be drained.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DrainBudgetBenchmark {
+
+    private static final int LatencyLaneCount = 16;
+    private static final int BurstSize = 5000;
+    private static final long BurstPeriodNanos = TimeUnit.MILLISECONDS.toNanos(20);
+
+    @Param({ "none", "tasks", "time" })
+    public String budget;
+
+    private DedicatedThreadLaneExecutor executor = null;
+    private CoLane flood = null;
+    private CoLane[] lanes = null;
+    private Thread floodThread = null;
+    private volatile boolean flooding = true;
+    private int next = 0;
+
+    private final Runnable floodTask = () -> { Blackhole.consumeCPU(1000); };
+
+    @Setup
+    public void setUp() {
+        executor = new DedicatedThreadLaneExecutor("shared");
+        flood = withBudget(new CoLane("flood", executor));
+        lanes = new CoLane[LatencyLaneCount];
+        for(int i = 0; i < LatencyLaneCount; i++)
+            lanes[i] = withBudget(new CoLane("latency-" + i, executor));
+        floodThread = new Thread(() -> {
+            while(flooding) {
+                for(int i = 0; i < BurstSize; i++)
+                    flood.run(floodTask);
+                LockSupport.parkNanos(BurstPeriodNanos);
+            }
+        }, "flood");
+        floodThread.setDaemon(true);
+        floodThread.start();
+    }
+
+    private CoLane withBudget(CoLane lane) {
+        if(budget.equals("tasks"))
+            return lane.drainBudget(64);
+        if(budget.equals("time"))
+            return lane.drainBudget(Integer.MAX_VALUE, 100, TimeUnit.MICROSECONDS);
+        return lane;
+    }
+
+    @Setup(Level.Invocation)
+    public void pause() {
+        LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(100000, 300000));
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        flooding = false;
+        floodThread.join();
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public Integer request() throws ExecutionException, InterruptedException {
+        CoLane lane = lanes[next++ & (LatencyLaneCount - 1)];
+        return lane.<Integer>getHandbackFutureCompletion().supplier(() -> 42).runAsync().future().get();
+    }
+
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.benchmarks;
+
+import org.objectscape.colanes.CoLane;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures request/reply through Handbacks with and without the pool of recycled Handbacks of the
+ * lane. The lambdas are created once so that the Handbacks and the mailbox are all that allocates.
+ * Run with <tt>-prof gc</tt> to see the bytes allocated per request in <tt>gc.alloc.rate.norm</tt>.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandbackAllocationBenchmark {
+
+    private static final int BatchSize = 1000;
+
+    @Param({ "false", "true" })
+    public boolean pooled;
+
+    private CoLane server = null;
+    private final AtomicInteger replies = new AtomicInteger();
+    private final Object lock = new Object();
+    private final Runnable request = () -> { };
+    private final Runnable whenDone = () -> {
+        if(replies.incrementAndGet() == BatchSize) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        server = new CoLane("server");
+        if(pooled)
+            server.poolHandbacks(BatchSize);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BatchSize)
+    public void requestReply() throws InterruptedException {
+        replies.set(0);
+        for(int i = 0; i < BatchSize; i++)
+            server.getPooledHandback().runnable(request).whenDone(whenDone).runAsync();
+        synchronized (lock) {
+            while(replies.get() < BatchSize)
+                lock.wait();
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.benchmarks;
+
+import org.objectscape.colanes.CoLane;
+import org.objectscape.colanes.HandbackFutureCompletion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Measures request/reply round trips through Handbacks: a single request whose result is waited
+ * for, and a batch of requests whose replies are delivered by callback and whenDone lambdas. The
+ * replies to a client lane are either delivered to the client lane directly or, as done before
+ * Handbacks could reply to the lane they were sent from, to the server lane first which then hands
+ * them on to the client lane.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandbackRoundTripBenchmark {
+
+    private static final int BatchSize = 1000;
+
+    private CoLane server = null;
+    private CoLane client = null;
+    private int value = 0;
+
+    @Setup
+    public void setUp() {
+        server = new CoLane("server");
+        client = new CoLane("client");
+    }
+
+    @Benchmark
+    public Integer futureGet() throws ExecutionException, InterruptedException {
+        return server.<Integer>getHandbackFutureCompletion().supplier(() -> value++).runAsync().future().get();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BatchSize)
+    public void callbackAndWhenDone() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger replies = new AtomicInteger();
+        for(int i = 0; i < BatchSize; i++) {
+            server.<Integer>getHandbackFutureCompletion()
+                    .supplier(() -> value++)
+                    .callback((Integer result) -> { })
+                    .whenDone((Integer result) -> {
+                        if(replies.incrementAndGet() == BatchSize)
+                            latch.countDown();
+                    })
+                    .runAsync();
+        }
+        latch.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BatchSize)
+    public void replyToClient() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger replies = new AtomicInteger();
+        Consumer<Integer> reply = (Integer result) -> {
+            if(replies.incrementAndGet() == BatchSize)
+                latch.countDown();
+        };
+        for(int i = 0; i < BatchSize; i++)
+            server.<Integer>getHandbackFutureCompletion().supplier(() -> value++).replyTo(client).runAsyncWhenDone(reply);
+        latch.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BatchSize)
+    public void replyToServerAndHandOn() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger replies = new AtomicInteger();
+        Consumer<Integer> reply = (Integer result) -> {
+            client.run(() -> {
+                if(replies.incrementAndGet() == BatchSize)
+                    latch.countDown();
+            });
+        };
+        for(int i = 0; i < BatchSize; i++)
+            server.<Integer>getHandbackFutureCompletion().supplier(() -> value++).replyTo(server).runAsyncWhenDone(reply);
+        latch.await();
+    }
+
+}
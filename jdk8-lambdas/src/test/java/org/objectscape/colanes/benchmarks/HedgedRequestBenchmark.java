@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.benchmarks;
+
+import org.objectscape.colanes.CoLane;
+import org.objectscape.colanes.HedgedHandback;
+import org.objectscape.colanes.executor.DedicatedThreadLaneExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Measures the latency distribution of requests to replicas that stall for 10 ms on 1 percent of the
+ * requests, sent to a single replica or hedged across two replicas with a hedge delay of 1 ms. The
+ * percentiles reported by the sample time mode show how hedging cuts the tail latency.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HedgedRequestBenchmark {
+
+    @Param({ "1", "2" })
+    public int replicas;
+
+    private CoLane[] lanes = null;
+
+    private final Supplier<Integer> lookup = () -> {
+        if(ThreadLocalRandom.current().nextInt(100) == 0) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return 42;
+    };
+
+    @Setup
+    public void setUp() {
+        lanes = new CoLane[replicas];
+        for(int i = 0; i < replicas; i++)
+            lanes[i] = new CoLane("replica-" + i, new DedicatedThreadLaneExecutor("replica-" + i));
+    }
+
+    @TearDown
+    public void tearDown() {
+        for(CoLane lane : lanes)
+            lane.getExecutor().shutdown();
+    }
+
+    @Benchmark
+    public Integer request() throws ExecutionException, InterruptedException {
+        return new HedgedHandback<Integer>(lanes).supplier(lookup).hedgeAfter(1, TimeUnit.MILLISECONDS).runAsync().future().get();
+    }
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.benchmarks;
+
+import org.objectscape.colanes.CoLane;
+import org.objectscape.colanes.LaneLocal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of looking up a scratch buffer from a lambda executing on a lane with a
+ * <code>ThreadLocal</code>, which is only correct as long as the lane is never drained by another thread,
+ * compared to a <code>LaneLocal</code> handed the lane and a <code>LaneLocal</code> looking the lane up
+ * with <code>CoLane.current()</code>. The lookups are done in a loop within a single lambda, so that the
+ * cost of enqueuing the lambda is spread over all of them.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LaneLocalBenchmark {
+
+    private static final int LookupsPerLambda = 10000;
+
+    private static final ThreadLocal<int[]> ThreadBuffer = ThreadLocal.withInitial(() -> new int[1]);
+    private static final LaneLocal<int[]> LaneBuffer = LaneLocal.withInitial(() -> new int[1]);
+
+    @Param({ "threadLocal", "laneLocal", "laneLocalCurrent" })
+    public String lookup;
+
+    private CoLane lane = null;
+
+    @Setup
+    public void setUp() {
+        lane = new CoLane("lane");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LookupsPerLambda)
+    public Integer lookup() throws ExecutionException, InterruptedException {
+        return lane.<Integer>getHandbackFutureCompletion().supplier(() -> { return lookupAll(); }).runAsync().future().get();
+    }
+
+    private int lookupAll() {
+        int[] buffer = null;
+        for(int i = 0; i < LookupsPerLambda; i++) {
+            if(lookup.equals("threadLocal"))
+                buffer = ThreadBuffer.get();
+            else if(lookup.equals("laneLocal"))
+                buffer = LaneBuffer.get(lane);
+            else
+                buffer = LaneBuffer.get();
+            buffer[0]++;
+        }
+        return buffer[0];
+    }
+
+}
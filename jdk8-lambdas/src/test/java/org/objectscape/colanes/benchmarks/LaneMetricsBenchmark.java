@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.benchmarks;
+
+import org.objectscape.colanes.CoLane;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost per lambda of enqueuing and executing small lambdas on a lane with metrics
+ * disabled and enabled. With metrics disabled the cost should be the same as before metrics were
+ * introduced.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LaneMetricsBenchmark {
+
+    private static final int BatchSize = 1000;
+
+    @Param({ "false", "true" })
+    private boolean metrics;
+
+    private CoLane lane = null;
+    private Runnable runnable = null;
+    private long counter = 0;
+
+    @Setup
+    public void setUp() {
+        lane = new CoLane("metrics");
+        if(metrics)
+            lane.enableMetrics();
+        runnable = () -> { counter++; };
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BatchSize)
+    public void run() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        for(int i = 0; i < BatchSize; i++)
+            lane.run(runnable);
+        lane.run(() -> { latch.countDown(); });
+        latch.await();
+    }
+
+}
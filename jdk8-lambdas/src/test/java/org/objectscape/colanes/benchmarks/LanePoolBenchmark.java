@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.benchmarks;
+
+import org.objectscape.colanes.CoLane;
+import org.objectscape.colanes.HandbackFutureCompletion;
+import org.objectscape.colanes.LanePool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of a stateless receiver answering requests through Handbacks on a
+ * <code>LanePool</code> with 1 worker up to one worker per available processor. A single <code>CoLane</code>
+ * is included for comparison. The parameter value 0 stands for the number of available processors.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LanePoolBenchmark {
+
+    private static final int BatchSize = 1000;
+
+    @Param({ "1", "2", "4", "8", "0" })
+    private int workers;
+
+    private LanePool pool = null;
+    private CoLane lane = null;
+
+    @Setup
+    public void setUp() {
+        int count = workers == 0 ? Runtime.getRuntime().availableProcessors() : workers;
+        pool = new LanePool("pool", count);
+        lane = new CoLane("lane");
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.getExecutor().shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BatchSize)
+    public void lanePool() {
+        request(pool);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BatchSize)
+    public void singleLane() {
+        request(lane);
+    }
+
+    private void request(CoLane lane) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[BatchSize];
+        for(int i = 0; i < BatchSize; i++) {
+            HandbackFutureCompletion<Long> handback = lane.<Long>getHandbackFutureCompletion().supplier(() -> {
+                Blackhole.consumeCPU(2000);
+                return 1L;
+            });
+            futures[i] = handback.runAsync().future();
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+}
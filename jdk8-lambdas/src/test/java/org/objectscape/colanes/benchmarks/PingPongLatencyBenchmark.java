@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.benchmarks;
+
+import org.objectscape.colanes.CoLane;
+import org.objectscape.colanes.PinnedLane;
+import org.objectscape.colanes.executor.IdleStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency distribution of a ping-pong exchange between two lanes like the one of the
+ * <code>Ping</code> and <code>Pong</code> coreceivers: the ping lane sends "ping" to the pong lane, which
+ * answers "pong" to the ping lane. The lanes are either plain lanes on the global HawtDispatch queue or
+ * pinned lanes with each of the idle strategies, whose percentiles are reported by the sample time mode.
+ *
+ * The pinned lanes poll on threads of their own, so that with busy spinning the benchmark needs at least
+ * three cores, one for each lane and one for the benchmark thread waiting for the answer. With fewer cores
+ * the spinning threads take turns by time slices and the busy spin figures are meaningless.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PingPongLatencyBenchmark {
+
+    @Param({ "shared", "BUSY_SPIN", "SPIN_YIELD", "SPIN_PARK" })
+    public String idleStrategy;
+
+    private CoLane ping = null;
+    private CoLane pong = null;
+
+    private volatile String received = null;
+
+    @Setup
+    public void setUp() {
+        if(idleStrategy.equals("shared")) {
+            ping = new CoLane("ping");
+            pong = new CoLane("pong");
+            return;
+        }
+        ping = new PinnedLane("ping", IdleStrategy.valueOf(idleStrategy));
+        pong = new PinnedLane("pong", IdleStrategy.valueOf(idleStrategy));
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        ping.shutdown();
+        pong.shutdown();
+        ping.awaitTermination(1, TimeUnit.SECONDS);
+        pong.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public String pingPong() {
+        received = null;
+        ping.run(() -> { sendPing(); });
+        String answer;
+        while((answer = received) == null)
+            Thread.yield();
+        return answer;
+    }
+
+    private void sendPing() {
+        String message = "ping";
+        pong.run(() -> { acceptPing(message); });
+    }
+
+    private void acceptPing(String message) {
+        String answer = message.equals("ping") ? "pong" : message;
+        ping.run(() -> { received = answer; });
+    }
+
+}
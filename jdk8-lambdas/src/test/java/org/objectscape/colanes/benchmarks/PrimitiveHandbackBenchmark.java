@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.benchmarks;
+
+import org.objectscape.colanes.CoLane;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Compares request/reply of <tt>long</tt> results through a <code>HandbackFutureCompletion&lt;Long&gt;</code>,
+ * which boxes the result, and through a <code>LongHandback</code>. The results are large enough not to
+ * be taken from the cache of boxed values. Run with <tt>-prof gc</tt> to see the bytes allocated per
+ * request in <tt>gc.alloc.rate.norm</tt>.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveHandbackBenchmark {
+
+    private static final int BatchSize = 1000;
+
+    private CoLane server = null;
+    private long value = 1000000;
+    private long sum = 0;
+    private final AtomicInteger replies = new AtomicInteger();
+    private CountDownLatch latch = null;
+
+    private final Supplier<Long> boxedSupplier = () -> value++;
+    private final Consumer<Long> boxedReply = (Long result) -> { reply(result); };
+    private final LongSupplier supplier = () -> value++;
+    private final LongConsumer reply = (long result) -> { reply(result); };
+
+    @Setup
+    public void setUp() {
+        server = new CoLane("server");
+    }
+
+    private void reply(long result) {
+        sum += result;
+        if(replies.incrementAndGet() == BatchSize)
+            latch.countDown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BatchSize)
+    public long boxed() throws InterruptedException {
+        replies.set(0);
+        latch = new CountDownLatch(1);
+        for(int i = 0; i < BatchSize; i++)
+            server.<Long>getHandbackFutureCompletion().supplier(boxedSupplier).runAsyncWhenDone(boxedReply);
+        latch.await();
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BatchSize)
+    public long unboxed() throws InterruptedException {
+        replies.set(0);
+        latch = new CountDownLatch(1);
+        for(int i = 0; i < BatchSize; i++)
+            server.getLongHandback().supplier(supplier).runAsyncWhenDone(reply);
+        latch.await();
+        return sum;
+    }
+
+}
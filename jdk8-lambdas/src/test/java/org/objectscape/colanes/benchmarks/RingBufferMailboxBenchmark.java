@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.benchmarks;
+
+import org.fusesource.hawtdispatch.Dispatch;
+import org.fusesource.hawtdispatch.DispatchQueue;
+import org.objectscape.colanes.CoLane;
+import org.objectscape.colanes.mailbox.OverflowPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of <tt>producers</tt> threads enqueuing small lambdas on a single consumer,
+ * which is either a serial HawtDispatch queue or a lane with the default <code>UnboundedMailbox</code> or
+ * with a <code>RingBufferMailbox</code> large enough to never block the producers. The time until all
+ * lambdas have been executed is included. Run with <tt>-prof gc</tt> to compare the allocation per lambda,
+ * where the serial queue and the unbounded mailbox allocate a queue node for every lambda and the ring
+ * buffer allocates nothing.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RingBufferMailboxBenchmark {
+
+    private static final int LambdasPerInvocation = 16384;
+
+    @Param({ "hawtdispatch", "unbounded", "ringBuffer" })
+    public String mailbox;
+
+    @Param({ "1", "4", "16" })
+    public int producers;
+
+    private DispatchQueue queue = null;
+    private CoLane lane = null;
+    private ExecutorService producerPool = null;
+    private long counter = 0;
+
+    private final Runnable task = () -> { counter++; };
+
+    @Setup
+    public void setUp() {
+        if(mailbox.equals("hawtdispatch"))
+            queue = Dispatch.createQueue("consumer");
+        else if(mailbox.equals("ringBuffer"))
+            lane = new CoLane("consumer").ringBuffer(1 << 16, OverflowPolicy.BLOCK);
+        else
+            lane = new CoLane("consumer");
+        producerPool = Executors.newFixedThreadPool(producers);
+    }
+
+    @TearDown
+    public void tearDown() {
+        producerPool.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LambdasPerInvocation)
+    public void enqueue() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(producers);
+        int lambdasPerProducer = LambdasPerInvocation / producers;
+        for(int i = 0; i < producers; i++) {
+            producerPool.execute(() -> {
+                for(int j = 0; j < lambdasPerProducer; j++)
+                    enqueue(task);
+                enqueue(() -> { done.countDown(); });
+            });
+        }
+        done.await();
+    }
+
+    private void enqueue(Runnable runnable) {
+        if(queue != null)
+            queue.execute(runnable);
+        else
+            lane.run(runnable);
+    }
+
+}
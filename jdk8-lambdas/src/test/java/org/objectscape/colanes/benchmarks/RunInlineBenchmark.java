@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.benchmarks;
+
+import org.objectscape.colanes.CoLane;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost per step of a lambda that runs itself on its own lane again, like the state
+ * loop of the traffic light example, with and without inline execution of such lambdas.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RunInlineBenchmark {
+
+    private static final int Steps = 1000;
+
+    @Param({ "0", "64" })
+    private int maxInlineDepth;
+
+    private CoLane lane = null;
+
+    @Setup
+    public void setUp() {
+        lane = new CoLane("inline").runInlineIfCurrent(maxInlineDepth);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Steps)
+    public void selfRun() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        lane.run(new Runnable() {
+            int steps = 0;
+            @Override
+            public void run() {
+                if(++steps == Steps)
+                    latch.countDown();
+                else
+                    lane.run(this);
+            }
+        });
+        latch.await();
+    }
+
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.benchmarks;
+
+import org.objectscape.colanes.timer.HashedTimerWheel;
+import org.objectscape.colanes.timer.Timeout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures scheduling, cancelling and firing of lambdas on a <code>HashedTimerWheel</code> that
+ * already holds one million pending lambdas, as for example lanes with many outstanding delayed
+ * lambdas would produce. Scheduling and cancelling are expected to be independent of the number
+ * of pending lambdas.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class TimerWheelBenchmark {
+
+    private static final int PendingCount = 1000000;
+    private static final int BatchSize = 10000;
+
+    @State(Scope.Benchmark)
+    public static class PendingTimers {
+
+        HashedTimerWheel wheel = null;
+
+        @Setup
+        public void setUp() {
+            wheel = new HashedTimerWheel();
+            for(int i = 0; i < PendingCount; i++)
+                wheel.schedule(() -> { }, 3600 + i % 3600, TimeUnit.SECONDS);
+        }
+
+        @TearDown
+        public void tearDown() {
+            wheel.stop();
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class ScheduledBatch {
+
+        final Timeout[] timeouts = new Timeout[BatchSize];
+
+        /**
+         * Cancel the lambdas scheduled by the benchmark so that the number of pending lambdas stays constant.
+         */
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            for(Timeout timeout : timeouts)
+                timeout.cancel();
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class CancellableBatch {
+
+        final Timeout[] timeouts = new Timeout[BatchSize];
+
+        @Setup(Level.Invocation)
+        public void setUp(PendingTimers timers) {
+            for(int i = 0; i < BatchSize; i++)
+                timeouts[i] = timers.wheel.schedule(() -> { }, 60 + i % 60, TimeUnit.SECONDS);
+        }
+
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BatchSize)
+    public Timeout[] schedule(PendingTimers timers, ScheduledBatch batch) {
+        Timeout[] timeouts = batch.timeouts;
+        for(int i = 0; i < BatchSize; i++)
+            timeouts[i] = timers.wheel.schedule(() -> { }, 60 + i % 60, TimeUnit.SECONDS);
+        return timeouts;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BatchSize)
+    public int cancel(CancellableBatch batch) {
+        int cancelled = 0;
+        for(Timeout timeout : batch.timeouts)
+            if(timeout.cancel())
+                cancelled++;
+        return cancelled;
+    }
+
+    /**
+     * Schedules a batch of lambdas due within the next tick and waits till all of them have fired.
+     * The result includes the wait for the next tick.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BatchSize)
+    public void fire(PendingTimers timers) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(BatchSize);
+        Runnable runnable = () -> { latch.countDown(); };
+        for(int i = 0; i < BatchSize; i++)
+            timers.wheel.schedule(runnable, 0, TimeUnit.MILLISECONDS);
+        latch.await();
+    }
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.benchmarks;
+
+import org.objectscape.colanes.CoLane;
+import org.objectscape.colanes.executor.HawtDispatchLaneExecutor;
+import org.objectscape.colanes.executor.LaneExecutor;
+import org.objectscape.colanes.executor.VirtualThreadLaneExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares lanes drained by the HawtDispatch global queue with lanes drained by virtual threads
+ * under a workload where every <tt>blockEveryNth</tt> lambda blocks for a millisecond and all others
+ * burn some CPU. With HawtDispatch a blocking lambda holds on to one of the few pooled threads and
+ * stalls all lanes waiting for it, whereas with virtual threads only the blocking lane is parked.
+ *
+ * The virtual thread variant requires running the benchmark with Java 21 or later.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VirtualThreadLaneBenchmark {
+
+    private static final int Lanes = 64;
+    private static final int LambdasPerLane = 20;
+
+    @Param({"hawtdispatch", "virtual"})
+    private String executor;
+
+    @Param({"10"})
+    private int blockEveryNth;
+
+    private LaneExecutor laneExecutor = null;
+    private CoLane[] lanes = null;
+
+    @Setup
+    public void setUp() {
+        if(executor.equals("virtual"))
+            laneExecutor = new VirtualThreadLaneExecutor();
+        else
+            laneExecutor = new HawtDispatchLaneExecutor();
+
+        lanes = new CoLane[Lanes];
+        for(int i = 0; i < Lanes; i++)
+            lanes[i] = new CoLane("lane-" + i, laneExecutor);
+    }
+
+    @TearDown
+    public void tearDown() {
+        laneExecutor.shutdown();
+    }
+
+    @Benchmark
+    public void mixedWorkload() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(Lanes);
+        for(CoLane lane : lanes) {
+            for(int i = 0; i < LambdasPerLane; i++) {
+                if(i % blockEveryNth == 0)
+                    lane.run(() -> { block(); });
+                else
+                    lane.run(() -> { Blackhole.consumeCPU(10000); });
+            }
+            lane.run(() -> { latch.countDown(); });
+        }
+        latch.await();
+    }
+
+    private void block() {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) { }
+    }
+
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2013 Oliver Plohmann
+ * http://www.objectscape.org/colanes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.objectscape.colanes.timer;
+
+import junit.framework.Assert;
+import org.junit.Test;
+import org.objectscape.colanes.CoLane;
+import org.objectscape.colanes.executor.ForkJoinLaneExecutor;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test cases for <code>HashedTimerWheel</code> and the delayed and periodic lambdas of <code>CoLane</code>.
+ *
+ * @author <a href="http://www.objectscape.org/">Oliver Plohmann</a>
+ *
+ */
+public class HashedTimerWheelTest {
+
+    @Test
+    public void schedule() throws InterruptedException {
+        HashedTimerWheel wheel = new HashedTimerWheel();
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        Timeout timeout = wheel.schedule(() -> { latch.countDown(); }, 50, TimeUnit.MILLISECONDS);
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        Assert.assertTrue(timeout.isExpired());
+        Assert.assertFalse(timeout.cancel());
+        Assert.assertEquals(0, wheel.getPendingCount());
+        wheel.stop();
+    }
+
+    @Test
+    public void cancel() throws InterruptedException {
+        HashedTimerWheel wheel = new HashedTimerWheel();
+        AtomicInteger count = new AtomicInteger();
+
+        Timeout timeout = wheel.schedule(() -> { count.incrementAndGet(); }, 50, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(1, wheel.getPendingCount());
+        Assert.assertTrue(timeout.cancel());
+        Assert.assertFalse(timeout.cancel());
+        Assert.assertTrue(timeout.isCancelled());
+        Assert.assertEquals(0, wheel.getPendingCount());
+
+        Thread.sleep(200);
+        Assert.assertEquals(0, count.get());
+        Assert.assertFalse(timeout.isExpired());
+        wheel.stop();
+    }
+
+    @Test
+    public void cascade() throws InterruptedException {
+        // with a tick of 5 microseconds level 1 starts at 2.56 ms and level 2 at 1.31 seconds
+        HashedTimerWheel wheel = new HashedTimerWheel("cascade", 5, TimeUnit.MICROSECONDS);
+        long[] delays = new long[] { 1, 20, 300, 1500 };
+        CountDownLatch latch = new CountDownLatch(delays.length);
+        AtomicInteger early = new AtomicInteger();
+        long start = System.nanoTime();
+
+        for(long delay : delays) {
+            wheel.schedule(() -> {
+                if(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(delay))
+                    early.incrementAndGet();
+                latch.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, early.get());
+        wheel.stop();
+    }
+
+    @Test
+    public void manyTimeouts() throws InterruptedException {
+        int count = 100000;
+        HashedTimerWheel wheel = new HashedTimerWheel();
+        CountDownLatch latch = new CountDownLatch(count / 2);
+        AtomicInteger early = new AtomicInteger();
+        AtomicInteger cancelledExecuted = new AtomicInteger();
+        Random random = new Random(42);
+
+        for(int i = 0; i < count; i++) {
+            long delay = random.nextInt(1000);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            boolean cancel = i % 2 == 1;
+            Timeout timeout = wheel.schedule(() -> {
+                if(cancel)
+                    cancelledExecuted.incrementAndGet();
+                if(System.nanoTime() < deadline)
+                    early.incrementAndGet();
+                latch.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+            if(cancel)
+                Assert.assertTrue(timeout.cancel());
+        }
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, early.get());
+        Assert.assertEquals(0, cancelledExecuted.get());
+        Assert.assertEquals(0, wheel.getPendingCount());
+        wheel.stop();
+    }
+
+    @Test
+    public void scheduleAtFixedRate() throws InterruptedException {
+        HashedTimerWheel wheel = new HashedTimerWheel();
+        AtomicInteger count = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(5);
+
+        Timeout timeout = wheel.scheduleAtFixedRate(() -> {
+            count.incrementAndGet();
+            latch.countDown();
+        }, 0, 10, TimeUnit.MILLISECONDS);
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertFalse(timeout.isExpired());
+        Assert.assertTrue(timeout.cancel());
+        Thread.sleep(20);
+        int countAfterCancel = count.get();
+        Thread.sleep(100);
+        Assert.assertEquals(countAfterCancel, count.get());
+        wheel.stop();
+    }
+
+    @Test
+    public void laneRunEvery() throws InterruptedException {
+        CoLane lane = new CoLane(new ForkJoinLaneExecutor(2));
+        CountDownLatch latch = new CountDownLatch(3);
+        AtomicInteger cancelled = new AtomicInteger();
+
+        Timeout timeout = lane.runAfter(50, TimeUnit.MILLISECONDS, () -> { cancelled.incrementAndGet(); });
+        Timeout periodic = lane.runEvery(10, TimeUnit.MILLISECONDS, () -> { latch.countDown(); });
+        Assert.assertTrue(timeout.cancel());
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(periodic.cancel());
+        Thread.sleep(100);
+        Assert.assertEquals(0, cancelled.get());
+        lane.getExecutor().shutdown();
+    }
+
+    @Test
+    public void parkWhileIdle() throws InterruptedException {
+        HashedTimerWheel wheel = new HashedTimerWheel("idle-timer", 1, TimeUnit.MILLISECONDS);
+        Thread worker = null;
+        for(Thread thread : Thread.getAllStackTraces().keySet())
+            if(thread.getName().equals("idle-timer"))
+                worker = thread;
+        Assert.assertNotNull(worker);
+        long waitUntil = System.currentTimeMillis() + 10000;
+        while(worker.getState() != Thread.State.WAITING && System.currentTimeMillis() < waitUntil)
+            Thread.sleep(10);
+        Assert.assertEquals(Thread.State.WAITING, worker.getState());
+
+        Thread.sleep(100);
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        wheel.schedule(() -> { latch.countDown(); }, 20, TimeUnit.MILLISECONDS);
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        wheel.stop();
+    }
+
+}